@@ -0,0 +1,204 @@
+import tester.*;
+
+//Represents the tiles on a board of any shape
+//subclasses choose how the values are stored, and keep the index of the space
+//and the number of misplaced cells up to date as tiles are swapped
+abstract class ABoard {
+  // the dimensions of the board
+  BoardShape shape;
+  // the index of the space
+  int blank;
+  // the number of cells (the space included) not holding their correct value
+  int misplaced;
+  // the Zobrist hash of the values, kept up to date by swap
+  long hash;
+
+  // makes the smallest board that holds the given values, row by row
+  // boards of at most 16 cells are packed into a long
+  // the values must hold each of 0 to size - 1 once
+  static ABoard create(BoardShape shape, int[] values) {
+    if (values.length != shape.size) {
+      throw new IllegalArgumentException("Board must have " + shape.size + " values");
+    }
+    boolean[] seen = new boolean[shape.size];
+    for (int value : values) {
+      if (value < 0 || value >= shape.size || seen[value]) {
+        throw new IllegalArgumentException(
+            "Board must hold each value from 0 to " + (shape.size - 1) + " once");
+      }
+      seen[value] = true;
+    }
+    if (shape.fitsInLong()) {
+      long cells = 0;
+      for (int index = 0; index < values.length; index++) {
+        cells |= (long) values[index] << (index * 4);
+      }
+      return new PackedBoard(shape, cells);
+    }
+    else {
+      return new ByteBoard(shape, values);
+    }
+  }
+
+  // returns the value at the given index
+  abstract int get(int index);
+
+  // swaps the values at two indexes
+  abstract void swap(int index1, int index2);
+
+  // returns a board with the same shape and values that changes independently
+  abstract ABoard copy();
+
+  // makes this board hold the same values as the given one, which must be of the
+  // same class and shape, without allocating
+  abstract void setTo(ABoard other);
+
+  // counts the cells that do not hold their correct value, finds the space and
+  // hashes the board
+  // used once when a board is built
+  void countMisplaced() {
+    this.misplaced = 0;
+    this.blank = -1;
+    this.hash = Zobrist.hash(this);
+    for (int index = 0; index < this.shape.size; index++) {
+      int value = this.get(index);
+      if (value != this.shape.goal(index)) {
+        this.misplaced++;
+      }
+      if (value == 0) {
+        this.blank = index;
+      }
+    }
+  }
+
+  // updates the space, the misplaced count and the hash after the given values
+  // were swapped
+  // only the two cells that changed are checked
+  void swapped(int index1, int index2, int value1, int value2) {
+    if (index1 != index2) {
+      int goal1 = this.shape.goal(index1);
+      int goal2 = this.shape.goal(index2);
+      this.misplaced += (value2 != goal1 ? 1 : 0) + (value1 != goal2 ? 1 : 0)
+          - (value1 != goal1 ? 1 : 0) - (value2 != goal2 ? 1 : 0);
+      this.hash ^= Zobrist.key(value1, index1) ^ Zobrist.key(value2, index2)
+          ^ Zobrist.key(value1, index2) ^ Zobrist.key(value2, index1);
+    }
+
+    if (this.blank == index1) {
+      this.blank = index2;
+    }
+    else if (this.blank == index2) {
+      this.blank = index1;
+    }
+  }
+
+  // slides the tile next to the space in the given direction
+  // returns whether there was a tile to slide
+  boolean move(Direction d) {
+    int other = this.shape.neighbors[(this.blank << 2) | d.ordinal()];
+    if (other < 0) {
+      return false;
+    }
+    else {
+      this.swap(this.blank, other);
+      return true;
+    }
+  }
+
+  // returns whether every tile is at its correct position
+  boolean isSolved() {
+    return this.misplaced == 0;
+  }
+
+  // returns whether this board can reach the solved board
+  // with an odd number of columns a vertical move changes the number of
+  // inversions by an even amount, so their parity never changes; with an even
+  // number it changes by an odd amount and the row of the space changes by one,
+  // so the parity of their sum never changes
+  boolean isSolvable() {
+    int inversions = 0;
+    for (int i = 0; i < this.shape.size; i++) {
+      int value = this.get(i);
+      for (int j = i + 1; j < this.shape.size && value != 0; j++) {
+        int other = this.get(j);
+        if (other != 0 && other < value) {
+          inversions++;
+        }
+      }
+    }
+
+    if (this.shape.cols % 2 == 1) {
+      return inversions % 2 == 0;
+    }
+    else {
+      return (inversions + this.blank / this.shape.cols) % 2 == (this.shape.rows - 1) % 2;
+    }
+  }
+}
+
+class ExamplesABoard {
+  // tests for create
+  void testCreate(Tester t) {
+    ABoard small = ABoard.create(new BoardShape(3, 3), new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 0 });
+    t.checkExpect(small instanceof PackedBoard, true);
+    t.checkExpect(small.isSolved(), true);
+    t.checkExpect(small.blank, 8);
+
+    ABoard large = ABoard.create(new BoardShape(5, 5), new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9,
+        10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 0, 24 });
+    t.checkExpect(large instanceof ByteBoard, true);
+    t.checkExpect(large.misplaced, 2);
+    t.checkExpect(large.blank, 23);
+
+    t.checkException(new IllegalArgumentException("Board must have 9 values"), this, "create",
+        new BoardShape(3, 3), new int[] { 1, 2, 3, 0 });
+    t.checkException(new IllegalArgumentException("Board must hold each value from 0 to 8 once"),
+        this, "create", new BoardShape(3, 3), new int[] { 1, 1, 3, 4, 5, 6, 7, 8, 0 });
+    t.checkException(new IllegalArgumentException("Board must hold each value from 0 to 8 once"),
+        this, "create", new BoardShape(3, 3), new int[] { 1, 2, 3, 4, 5, 6, 7, 9, 0 });
+    t.checkException(new IllegalArgumentException("Board must hold each value from 0 to 8 once"),
+        this, "create", new BoardShape(3, 3), new int[] { 1, 2, 3, 4, 5, 6, 7, -1, 0 });
+    t.checkException(new IllegalArgumentException("Board must hold each value from 0 to 24 once"),
+        this, "create", new BoardShape(5, 5), new int[25]);
+  }
+
+  // returns the board made by ABoard.create
+  ABoard create(BoardShape shape, int[] values) {
+    return ABoard.create(shape, values);
+  }
+
+  // tests for isSolvable
+  void testIsSolvable(Tester t) {
+    BoardShape three = new BoardShape(3, 3);
+    t.checkExpect(ABoard.create(three, new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 0 }).isSolvable(),
+        true);
+    t.checkExpect(ABoard.create(three, new int[] { 2, 1, 3, 4, 5, 6, 7, 8, 0 }).isSolvable(),
+        false);
+    t.checkExpect(ABoard.create(three, new int[] { 1, 2, 3, 4, 0, 6, 7, 5, 8 }).isSolvable(),
+        true);
+    t.checkExpect(new PackedBoard(PackedBoard.SOLVED).isSolvable(), true);
+    t.checkExpect(new PackedBoard(PackedBoard.ALL_VALUES).isSolvable(), false);
+    t.checkExpect(new PackedBoard(0xCFED0BA987654321L).isSolvable(), true);
+
+    // a 2x4 board with the space moved up once
+    BoardShape wide = new BoardShape(2, 4);
+    t.checkExpect(ABoard.create(wide, new int[] { 1, 2, 3, 0, 5, 6, 7, 4 }).isSolvable(), true);
+    t.checkExpect(ABoard.create(wide, new int[] { 1, 2, 3, 0, 6, 5, 7, 4 }).isSolvable(), false);
+  }
+
+  // tests for move on boards of other shapes
+  void testMove(Tester t) {
+    ABoard b = ABoard.create(new BoardShape(2, 3), new int[] { 1, 2, 3, 4, 5, 0 });
+    t.checkExpect(b.move(Direction.UP), false);
+    t.checkExpect(b.move(Direction.DOWN), true);
+    t.checkExpect(b.blank, 2);
+    t.checkExpect(b.get(5), 3);
+    t.checkExpect(b.misplaced, 2);
+    t.checkExpect(b.move(Direction.RIGHT), true);
+    t.checkExpect(b.move(Direction.UP), true);
+    t.checkExpect(b.move(Direction.LEFT), true);
+    t.checkExpect(b.get(4), 3);
+    t.checkExpect(b.blank, 5);
+    t.checkExpect(b.misplaced, 3);
+  }
+}
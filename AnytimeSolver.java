@@ -0,0 +1,391 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import tester.*;
+
+//Finds a solution to a board quickly and keeps improving it until a deadline
+//runs weighted A* again and again, each time trusting the estimate less: the
+//first pass is nearly greedy and finishes in a few milliseconds, and the last
+//one is plain A*, whose answer is optimal
+//every pass skips the states that cannot beat the best solution so far, and
+//the cheapest state left unexplored when a pass stops bounds the optimal length
+//from below, so the answer always comes with how far from optimal it may be
+//boards of at most 16 cells are packed into longs; the estimate is Manhattan
+//distance, plus linear conflict on 4x4 boards
+class AnytimeSolver {
+  // the most states kept unless another number is given, about 100 MB
+  static final int DEFAULT_MAX_STATES = 1 << 21;
+  // the most states that fit in a key of the open list
+  static final int MAX_STATES = 1 << 26;
+  // the weight of the estimate in each pass, in eighths: 5, 3, 2, 1.5, 1.25 and 1
+  static final int[] WEIGHTS = { 40, 24, 16, 12, 10, 8 };
+
+  // the most states a pass may keep
+  int maxStates;
+  // the shape of the board being solved
+  BoardShape shape;
+  // the Manhattan distance of every value from every index of the shape
+  int[] distances;
+
+  // the states reached by the current pass, indexed by node
+  long[] states;
+  // the node each state was reached from, or -1 for the start
+  int[] parents;
+  // the moves from the start to each state
+  short[] depths;
+  // the Manhattan distance of each state
+  byte[] manhattans;
+  // the direction of the move that reached each state
+  byte[] moves;
+  // the number of nodes of the current pass
+  int count;
+  // the node of every state reached by the current pass, the cheapest way
+  LongLongMap seen = new LongLongMap();
+  // the nodes left to expand, as a binary heap of keys made by key
+  long[] open = new long[1024];
+  // the number of keys in the open list
+  int openCount;
+
+  // the number of states expanded by the last solve
+  long nodes;
+
+  // Constructor for a solver that keeps at most DEFAULT_MAX_STATES states
+  AnytimeSolver() {
+    this(DEFAULT_MAX_STATES);
+  }
+
+  // Constructor that takes in the most states a pass may keep
+  AnytimeSolver(int maxStates) {
+    if (maxStates < 1 || maxStates > MAX_STATES) {
+      throw new IllegalArgumentException("The most states must be from 1 to " + MAX_STATES);
+    }
+    this.maxStates = maxStates;
+    this.states = new long[1024];
+    this.parents = new int[1024];
+    this.depths = new short[1024];
+    this.manhattans = new byte[1024];
+    this.moves = new byte[1024];
+  }
+
+  // returns the best solution to the board of the game found in the given number
+  // of milliseconds
+  AnytimeResult solve(FifteenGame game, long millis) {
+    return this.solve(game.core.board, millis);
+  }
+
+  // returns the best solution to the given board found in the given number of
+  // milliseconds
+  AnytimeResult solve(ABoard board, long millis) {
+    return this.search(board, System.nanoTime() + millis * 1000000);
+  }
+
+  // returns the best solution to the given board found before System.nanoTime
+  // reaches the given deadline
+  // the first pass always runs to the end, so there is an answer even if the
+  // deadline has already passed
+  AnytimeResult search(ABoard board, long deadline) {
+    if (!board.shape.fitsInLong()) {
+      throw new IllegalArgumentException("Board has more than 16 cells");
+    }
+    if (!board.isSolvable()) {
+      throw new IllegalArgumentException("Board is not solvable");
+    }
+
+    long start = GameMetrics.ENABLED ? System.nanoTime() : 0;
+    if (this.shape == null || !this.shape.sameShape(board.shape)) {
+      this.shape = board.shape.canonical();
+      this.distances = GridSolver.buildDistances(board.shape);
+    }
+    long cells = PackedBoard.pack(board);
+
+    this.nodes = 0;
+    AnytimeResult result = new AnytimeResult();
+    result.lowerBound = this.estimate(cells, this.manhattan(cells));
+    for (int pass = 0; pass < WEIGHTS.length && !result.isOptimal(); pass++) {
+      if (pass > 0 && System.nanoTime() - deadline >= 0) {
+        break;
+      }
+      this.pass(cells, WEIGHTS[pass], deadline, result);
+      if (result.keys == null) {
+        throw new IllegalStateException("Ran out of room before finding a solution");
+      }
+    }
+
+    result.nodes = this.nodes;
+    if (GameMetrics.ENABLED) {
+      GameMetrics.GLOBAL.solved(board.shape, result.keys.size(), this.nodes, start);
+    }
+    return result;
+  }
+
+  // runs one pass of weighted A* from the given board, with the estimate weighted
+  // by the given number of eighths, and records in the result any better solution
+  // and lower bound it finds
+  // the pass stops early when it runs out of room, or at the deadline if the
+  // result already has a solution
+  void pass(long cells, int weight, long deadline, AnytimeResult result) {
+    boolean timed = result.keys != null;
+    int best = timed ? result.keys.size() : Integer.MAX_VALUE;
+    this.count = 0;
+    this.openCount = 0;
+    this.seen.clear();
+    this.add(cells, -1, 0, this.manhattan(cells), -1, weight);
+
+    long expanded = 0;
+    while (this.openCount > 0) {
+      if (timed && (expanded & 1023) == 1023 && System.nanoTime() - deadline >= 0) {
+        this.bound(best, result);
+        return;
+      }
+      int node = (int) (this.pop() & (MAX_STATES - 1));
+      long state = this.states[node];
+      int g = this.depths[node];
+      // skip nodes whose state was since reached a cheaper way
+      if (this.seen.getOrDefault(state, -1) != node
+          || g + this.estimate(state, this.manhattans[node]) >= best) {
+        continue;
+      }
+      if (state == this.shape.packedSolved) {
+        result.keys = this.path(node);
+        this.bound(g, result);
+        return;
+      }
+
+      expanded++;
+      this.nodes++;
+      int blank = PackedBoard.indexOf(state, 0);
+      int back = this.moves[node] ^ 1;
+      for (int d = 0; d < 4; d++) {
+        int tile = this.shape.neighbors[(blank << 2) | d];
+        if (tile < 0 || d == back) {
+          continue;
+        }
+        long next = PackedBoard.slide(state, blank, tile);
+        int value = (int) (state >>> (tile * 4)) & 0xF;
+        int manhattan = this.manhattans[node] + this.distances[value * this.shape.size + blank]
+            - this.distances[value * this.shape.size + tile];
+        if (g + 1 + this.estimate(next, manhattan) >= best) {
+          continue;
+        }
+        long other = this.seen.getOrDefault(next, -1);
+        if (other >= 0 && this.depths[(int) other] <= g + 1) {
+          continue;
+        }
+        if (this.count == this.maxStates) {
+          // the states that were not kept are lost, so nothing is known of what is left
+          return;
+        }
+        this.add(next, node, g + 1, manhattan, d, weight);
+      }
+    }
+    // every path shorter than the best solution was ruled out
+    result.lowerBound = Math.max(result.lowerBound, best);
+  }
+
+  // raises the lower bound of the result to the smallest estimated length of the
+  // paths through the open nodes, or the given length if that is smaller
+  void bound(int length, AnytimeResult result) {
+    int min = length;
+    for (int i = 0; i < this.openCount; i++) {
+      int node = (int) (this.open[i] & (MAX_STATES - 1));
+      if (this.seen.getOrDefault(this.states[node], -1) == node) {
+        min = Math.min(min,
+            this.depths[node] + this.estimate(this.states[node], this.manhattans[node]));
+      }
+    }
+    result.lowerBound = Math.max(result.lowerBound, min);
+  }
+
+  // adds a node for the given state and puts it on the open list
+  void add(long state, int parent, int g, int manhattan, int move, int weight) {
+    if (this.count == this.states.length) {
+      int capacity = (int) Math.min((long) this.count * 2, this.maxStates);
+      this.states = Arrays.copyOf(this.states, capacity);
+      this.parents = Arrays.copyOf(this.parents, capacity);
+      this.depths = Arrays.copyOf(this.depths, capacity);
+      this.manhattans = Arrays.copyOf(this.manhattans, capacity);
+      this.moves = Arrays.copyOf(this.moves, capacity);
+    }
+    int node = this.count;
+    this.count++;
+    this.states[node] = state;
+    this.parents[node] = parent;
+    this.depths[node] = (short) g;
+    this.manhattans[node] = (byte) manhattan;
+    this.moves[node] = (byte) move;
+    this.seen.put(state, node);
+    this.push(AnytimeSolver.key(g * 8 + weight * this.estimate(state, manhattan), g, node));
+  }
+
+  // returns the key of a node on the open list: the smallest priority comes first,
+  // then the deepest node
+  static long key(int priority, int g, int node) {
+    return ((long) priority << 42) | ((long) (0xFFFF - g) << 26) | node;
+  }
+
+  // returns the estimate of the given state, which has the given Manhattan distance
+  int estimate(long state, int manhattan) {
+    if (this.shape == BoardShape.FOUR_BY_FOUR) {
+      int conflicts = 0;
+      for (int line = 0; line < 4; line++) {
+        conflicts += Solver.ROW_CONFLICTS[line * 65536 + ((int) (state >>> (line * 16)) & 0xFFFF)]
+            + Solver.COLUMN_CONFLICTS[line * 65536 + Solver.columnBits(state, line)];
+      }
+      return manhattan + conflicts;
+    }
+    else {
+      return manhattan;
+    }
+  }
+
+  // returns the Manhattan distance of the given state
+  int manhattan(long state) {
+    int sum = 0;
+    for (int index = 0; index < this.shape.size; index++) {
+      sum += this.distances[((int) (state >>> (index * 4)) & 0xF) * this.shape.size + index];
+    }
+    return sum;
+  }
+
+  // returns the keys from the start to the given node
+  ArrayList<String> path(int node) {
+    String[] keys = new String[this.depths[node]];
+    for (int n = node; this.parents[n] >= 0; n = this.parents[n]) {
+      keys[this.depths[n] - 1] = Direction.ALL[this.moves[n]].key;
+    }
+    return new ArrayList<String>(Arrays.asList(keys));
+  }
+
+  // adds the given key to the open list
+  void push(long key) {
+    if (this.openCount == this.open.length) {
+      this.open = Arrays.copyOf(this.open, this.openCount * 2);
+    }
+    int i = this.openCount;
+    this.openCount++;
+    while (i > 0 && this.open[(i - 1) / 2] > key) {
+      this.open[i] = this.open[(i - 1) / 2];
+      i = (i - 1) / 2;
+    }
+    this.open[i] = key;
+  }
+
+  // removes and returns the smallest key on the open list
+  long pop() {
+    long top = this.open[0];
+    this.openCount--;
+    long last = this.open[this.openCount];
+    int i = 0;
+    int child = 1;
+    while (child < this.openCount) {
+      if (child + 1 < this.openCount && this.open[child + 1] < this.open[child]) {
+        child++;
+      }
+      if (this.open[child] >= last) {
+        break;
+      }
+      this.open[i] = this.open[child];
+      i = child;
+      child = i * 2 + 1;
+    }
+    this.open[i] = last;
+    return top;
+  }
+}
+
+//The best solution an AnytimeSolver found in time, and how good it is
+class AnytimeResult {
+  // the keys that solve the board, which FifteenGame.onKeyEvent can play
+  ArrayList<String> keys;
+  // the fewest moves any solution could have, as far as is known
+  int lowerBound;
+  // the number of states expanded
+  long nodes;
+
+  // returns how many times longer than optimal the solution may be, at least 1
+  double bound() {
+    if (this.lowerBound == 0) {
+      return 1;
+    }
+    return (double) this.keys.size() / this.lowerBound;
+  }
+
+  // returns whether the solution is known to be optimal
+  boolean isOptimal() {
+    return this.keys != null && this.keys.size() == this.lowerBound;
+  }
+}
+
+class ExamplesAnytimeSolver {
+  // tests that enough time gives optimal solutions
+  void testOptimal(Tester t) {
+    AnytimeSolver solver = new AnytimeSolver();
+    Solver ida = new Solver();
+    PuzzleGenerator generator = new PuzzleGenerator(20);
+    BoardShape[] shapes = { new BoardShape(3, 3), new BoardShape(2, 4), new BoardShape(3, 4),
+        BoardShape.FOUR_BY_FOUR };
+    int[] walks = { 200, 200, 40, 30 };
+
+    for (int s = 0; s < shapes.length; s++) {
+      for (int i = 0; i < 3; i++) {
+        ABoard board = generator.walk(shapes[s], walks[s] + i);
+        AnytimeResult result = solver.solve(board, 60000);
+        t.checkExpect(result.isOptimal(), true);
+        t.checkExpect(result.bound(), 1.0);
+        t.checkExpect(result.keys.size(), ida.solve(board).size());
+        t.checkExpect(MoveSequence.solves(board, result.keys), true);
+      }
+    }
+    AnytimeResult solved = solver.solve(new PackedBoard(PackedBoard.SOLVED), 0);
+    t.checkExpect(solved.keys, new ArrayList<String>());
+    t.checkExpect(solved.isOptimal(), true);
+  }
+
+  // tests that a deadline that has passed still gives a solution within its bound
+  void testDeadline(Tester t) {
+    AnytimeSolver solver = new AnytimeSolver();
+    PuzzleGenerator generator = new PuzzleGenerator(21);
+    for (int i = 0; i < 5; i++) {
+      int optimal = 32 + i * 2;
+      PackedBoard board = new PackedBoard(generator.nextWithLength(optimal));
+      AnytimeResult result = solver.search(board, System.nanoTime());
+      t.checkExpect(MoveSequence.solves(board, result.keys), true);
+      t.checkExpect(result.lowerBound <= optimal, true);
+      t.checkExpect(result.keys.size() >= optimal, true);
+      t.checkExpect(result.bound() >= 1, true);
+      t.checkExpect(result.nodes > 0, true);
+    }
+  }
+
+  // tests that a hint can be played on the game with onKeyEvent
+  void testGame(Tester t) {
+    FifteenGame game = new FifteenGame(new PuzzleGenerator(22));
+    AnytimeResult result = new AnytimeSolver().solve(game, 50);
+    for (String k : result.keys) {
+      game.onKeyEvent(k);
+    }
+    t.checkExpect(game.core.board.isSolved(), true);
+    t.checkExpect(result.bound() >= 1, true);
+  }
+
+  // tests that passes that run out of room keep the best solution found
+  void testRoom(Tester t) {
+    AnytimeSolver small = new AnytimeSolver(20000);
+    PackedBoard board = new PackedBoard(new PuzzleGenerator(4).nextWithLength(40));
+    AnytimeResult result = small.solve(board, 60000);
+    t.checkExpect(MoveSequence.solves(board, result.keys), true);
+    t.checkExpect(result.lowerBound <= 40, true);
+    t.checkExpect(result.keys.size() >= 40, true);
+  }
+
+  // tests for errors
+  void testErrors(Tester t) {
+    AnytimeSolver solver = new AnytimeSolver();
+    t.checkException(new IllegalArgumentException("Board is not solvable"), solver, "solve",
+        new PackedBoard(0x0FEDCBA987654312L), 10L);
+    t.checkException(new IllegalArgumentException("Board has more than 16 cells"), solver,
+        "solve", new PuzzleGenerator(1).walk(new BoardShape(5, 5), 10), 10L);
+    t.checkConstructorException(
+        new IllegalArgumentException("The most states must be from 1 to 67108864"),
+        "AnytimeSolver", 0);
+  }
+}
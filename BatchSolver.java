@@ -0,0 +1,201 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import tester.*;
+
+//Solves a file of boards in parallel
+//usage: java BatchSolver <input> <output> [workers] [pattern database file|none]
+//           [ida|bidirectional]
+//every line of the input holds one board as 16 numbers, row by row, with 0 for
+//the space. Every line of the output holds, for the board on the same line:
+//  <moves> <nodes> <microseconds> <keys...>
+//or "unsolvable". Blank input lines are copied through as blank output lines.
+//boards are read and written as a stream, and at most a few per worker are
+//in flight at once, so the corpus never has to fit in memory
+class BatchSolver {
+  // the number of boards in flight for every worker
+  static final int WINDOW_PER_WORKER = 8;
+
+  // the number of workers solving boards
+  int workers;
+  // a solver for every worker thread
+  ThreadLocal<ISolver> solvers;
+
+  // the number of boards solved, and the states they expanded in total
+  AtomicLong boards = new AtomicLong();
+  AtomicLong nodes = new AtomicLong();
+
+  // Constructor that takes in the number of workers and the pattern database to use
+  BatchSolver(int workers, PatternDatabase patterns) {
+    this(workers, ISolver.named("ida", patterns));
+  }
+
+  // Constructor that takes in the number of workers and how to make a solver for
+  // every worker
+  BatchSolver(int workers, Supplier<ISolver> solvers) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("There must be at least one worker");
+    }
+    this.workers = workers;
+    this.solvers = ThreadLocal.withInitial(solvers);
+  }
+
+  // runs the batch solver from the command line
+  public static void main(String[] args)
+      throws IOException, InterruptedException, ExecutionException {
+    if (args.length < 2) {
+      System.err.println("usage: java BatchSolver <input> <output> [workers]"
+          + " [pattern database|none] [ida|bidirectional]");
+      System.exit(2);
+    }
+
+    int workers = args.length > 2 ? Integer.parseInt(args[2])
+        : Runtime.getRuntime().availableProcessors();
+    PatternDatabase patterns = args.length > 3 && !args[3].equals("none")
+        ? PatternDatabase.loadOrBuild(Paths.get(args[3]), PatternDatabase.GROUPS_663)
+        : null;
+    String strategy = args.length > 4 ? args[4] : "ida";
+    BatchSolver batch = new BatchSolver(workers, ISolver.named(strategy, patterns));
+
+    long start = System.nanoTime();
+    batch.run(Paths.get(args[0]), Paths.get(args[1]));
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    System.err.printf("%d boards, %d nodes in %.3f s on %d workers: %.1f boards/s, %.0f nodes/s%n",
+        batch.boards.get(), batch.nodes.get(), seconds, workers, batch.boards.get() / seconds,
+        batch.nodes.get() / seconds);
+  }
+
+  // solves every board in the input file and writes the results to the output file
+  void run(Path input, Path output) throws IOException, InterruptedException, ExecutionException {
+    try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+        BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+      this.run(in, out);
+    }
+  }
+
+  // solves every board read from in and writes the results to out, in input order
+  void run(BufferedReader in, Writer out)
+      throws IOException, InterruptedException, ExecutionException {
+    ExecutorService pool = Executors.newFixedThreadPool(this.workers);
+    ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>();
+    int window = this.workers * WINDOW_PER_WORKER;
+    int lineNumber = 0;
+
+    try {
+      String line = in.readLine();
+      while (line != null) {
+        lineNumber++;
+        if (line.trim().isEmpty()) {
+          pending.add(CompletableFuture.completedFuture(""));
+        }
+        else {
+          long cells;
+          try {
+            cells = PackedBoard.parse(line);
+          }
+          catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage());
+          }
+          pending.add(pool.submit(() -> this.solve(cells)));
+        }
+
+        // write out finished boards in order once the window is full
+        while (pending.size() >= window) {
+          out.write(pending.poll().get());
+          out.write('\n');
+        }
+        line = in.readLine();
+      }
+
+      while (!pending.isEmpty()) {
+        out.write(pending.poll().get());
+        out.write('\n');
+      }
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  // solves one board and returns its output line
+  String solve(long cells) {
+    if (!PackedBoard.isSolvable(cells)) {
+      return "unsolvable";
+    }
+
+    ISolver solver = this.solvers.get();
+    long start = System.nanoTime();
+    ArrayList<String> keys = solver.solve(new PackedBoard(cells));
+    long micros = (System.nanoTime() - start) / 1000;
+    this.boards.incrementAndGet();
+    this.nodes.addAndGet(solver.nodes());
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(keys.size()).append(' ').append(solver.nodes()).append(' ').append(micros);
+    for (String k : keys) {
+      sb.append(' ').append(k);
+    }
+    return sb.toString();
+  }
+}
+
+class ExamplesBatchSolver {
+  // tests for run
+  void testRun(Tester t) throws Exception {
+    String input = "1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 0\n"
+        + "1 2 3 4 5 6 7 8 9 10 11 0 13 14 15 12\n"
+        + "\n"
+        + "2 1 3 4 5 6 7 8 9 10 11 12 13 14 15 0\n"
+        + "5 1 2 3 9 6 7 4 13 10 11 8 0 14 15 12\n";
+    StringWriter out = new StringWriter();
+    BatchSolver batch = new BatchSolver(3, (PatternDatabase) null);
+    batch.run(new BufferedReader(new StringReader(input)), out);
+
+    String[] lines = out.toString().split("\n", -1);
+    t.checkExpect(lines.length, 6);
+    t.checkExpect(lines[0].startsWith("0 "), true);
+    t.checkExpect(lines[1].startsWith("1 "), true);
+    t.checkExpect(lines[1].endsWith(" up"), true);
+    t.checkExpect(lines[2], "");
+    t.checkExpect(lines[3], "unsolvable");
+    t.checkExpect(lines[4].startsWith("9 "), true);
+    t.checkExpect(lines[4].split(" ").length, 12);
+    t.checkExpect(batch.boards.get(), 3L);
+
+    // another strategy finds solutions of the same length
+    StringWriter bidirectional = new StringWriter();
+    new BatchSolver(2, ISolver.named("bidirectional", null))
+        .run(new BufferedReader(new StringReader(input)), bidirectional);
+    String[] other = bidirectional.toString().split("\n", -1);
+    t.checkExpect(other.length, 6);
+    t.checkExpect(other[3], "unsolvable");
+    t.checkExpect(other[4].startsWith("9 "), true);
+  }
+
+  // tests for errors
+  void testErrors(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException("There must be at least one worker"),
+        "BatchSolver", 0, null);
+    t.checkException(new IllegalArgumentException("Line 2: Unexpected character in board: x"),
+        new BatchSolver(1, (PatternDatabase) null), "run",
+        new BufferedReader(new StringReader("1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 0\nx")),
+        new StringWriter());
+  }
+}
@@ -0,0 +1,270 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import tester.*;
+
+//Finds optimal solutions by searching breadth-first from the board and from the
+//goal at once, until the two searches meet in the middle
+//each search only has to go half as deep, so it reaches far fewer states than one
+//search from the board would, but it keeps every state it reaches: boards of at
+//most 16 cells are packed into longs and kept in LongLongMaps, and once they hold
+//more than maxStates the search gives up and IDA* solves the board instead
+//boards of more than 16 cells always go to IDA*
+class BidirectionalSolver implements ISolver {
+  // the most states kept unless another number is given, about 160 MB
+  static final int DEFAULT_MAX_STATES = 1 << 22;
+
+  // the most states both searches may keep together
+  int maxStates;
+  // solves the boards this search cannot
+  Solver fallback;
+  // the number of states expanded by the last solve
+  long nodes;
+  // whether the last solve gave up and used the fallback
+  boolean fellBack;
+
+  // Constructor for a solver that keeps at most DEFAULT_MAX_STATES states and falls
+  // back to IDA* with the given pattern database, or null
+  BidirectionalSolver(PatternDatabase patterns) {
+    this(DEFAULT_MAX_STATES, patterns);
+  }
+
+  // Constructor that takes in the most states to keep and the pattern database to
+  // fall back on, or null
+  BidirectionalSolver(int maxStates, PatternDatabase patterns) {
+    if (maxStates < 2) {
+      throw new IllegalArgumentException("There must be room for at least two states");
+    }
+    this.maxStates = maxStates;
+    this.fallback = new Solver(patterns);
+  }
+
+  // returns an optimal list of keys that solves the given board
+  public ArrayList<String> solve(ABoard board) {
+    if (!board.isSolvable()) {
+      throw new IllegalArgumentException("Board is not solvable");
+    }
+
+    long start = GameMetrics.ENABLED ? System.nanoTime() : 0;
+    this.nodes = 0;
+    this.fellBack = false;
+    ArrayList<String> keys = null;
+    if (board.shape.fitsInLong()) {
+      keys = this.search(PackedBoard.pack(board), board.shape, GridSolver.estimate(board));
+    }
+
+    if (keys == null) {
+      this.fellBack = true;
+      keys = this.fallback.solve(board);
+      this.nodes += this.fallback.nodes;
+    }
+    else if (GameMetrics.ENABLED) {
+      GameMetrics.GLOBAL.solved(board.shape, keys.size(), this.nodes, start);
+    }
+    return keys;
+  }
+
+  // returns the number of states expanded by the last solve
+  public long nodes() {
+    return this.nodes;
+  }
+
+  // returns an optimal list of keys that solves the given packed board, or null if
+  // the searches would need more than maxStates states
+  // the given estimate must never be more than the moves needed, and tells how many
+  // more levels must at least be searched
+  // both maps hold, for every state reached, its depth times 4 plus the direction
+  // of the move that reached it
+  ArrayList<String> search(long cells, BoardShape shape, int estimate) {
+    long goal = shape.packedSolved;
+    if (cells == goal) {
+      return new ArrayList<String>();
+    }
+
+    LongLongMap forward = new LongLongMap();
+    LongLongMap backward = new LongLongMap();
+    forward.put(cells, 0);
+    backward.put(goal, 0);
+    long[] forwardFrontier = { cells };
+    long[] backwardFrontier = { goal };
+    int forwardCount = 1;
+    int backwardCount = 1;
+    // the levels searched from each end, and how much each end grew at its last level
+    int levels = 0;
+    double forwardGrowth = 2;
+    double backwardGrowth = 2;
+
+    while (true) {
+      // expand the smaller frontier by one level
+      boolean fromBoard = forwardCount <= backwardCount;
+      LongLongMap own = fromBoard ? forward : backward;
+      LongLongMap other = fromBoard ? backward : forward;
+      long[] frontier = fromBoard ? forwardFrontier : backwardFrontier;
+      int count = fromBoard ? forwardCount : backwardCount;
+
+      long[] next = new long[Math.max(16, count * 2)];
+      int nextCount = 0;
+      int best = Integer.MAX_VALUE;
+      long meeting = 0;
+
+      for (int i = 0; i < count; i++) {
+        long state = frontier[i];
+        long value = own.getOrDefault(state, 0);
+        long depth = value >>> 2;
+        int back = (int) (value & 3) ^ 1;
+        int blank = PackedBoard.indexOf(state, 0);
+
+        for (int d = 0; d < 4; d++) {
+          int tile = shape.neighbors[(blank << 2) | d];
+          if (tile < 0 || (depth > 0 && d == back)) {
+            continue;
+          }
+          long after = PackedBoard.slide(state, blank, tile);
+          if (own.containsKey(after)) {
+            continue;
+          }
+          own.put(after, ((depth + 1) << 2) | d);
+          this.nodes++;
+          if (nextCount == next.length) {
+            next = Arrays.copyOf(next, nextCount * 2);
+          }
+          next[nextCount] = after;
+          nextCount++;
+
+          long met = other.getOrDefault(after, -1);
+          if (met >= 0 && depth + 1 + (met >>> 2) < best) {
+            best = (int) (depth + 1 + (met >>> 2));
+            meeting = after;
+          }
+          if (forward.size() + backward.size() > this.maxStates) {
+            return null;
+          }
+        }
+      }
+
+      // every state of the level was checked, so the shortest meeting is optimal
+      if (best != Integer.MAX_VALUE) {
+        return BidirectionalSolver.path(meeting, forward, backward, shape);
+      }
+      if (fromBoard) {
+        forwardGrowth = (double) nextCount / count;
+        forwardFrontier = next;
+        forwardCount = nextCount;
+      }
+      else {
+        backwardGrowth = (double) nextCount / count;
+        backwardFrontier = next;
+        backwardCount = nextCount;
+      }
+      levels++;
+
+      // give up now, rather than after filling memory, if the levels still needed
+      // would not fit if each end kept growing as it did
+      double f = forwardCount;
+      double b = backwardCount;
+      double more = 0;
+      for (int level = levels; level < estimate; level++) {
+        if (f <= b) {
+          f *= forwardGrowth;
+          more += f;
+        }
+        else {
+          b *= backwardGrowth;
+          more += b;
+        }
+      }
+      if (forward.size() + backward.size() + more > this.maxStates) {
+        return null;
+      }
+    }
+  }
+
+  // returns the keys from the board to the goal through the given state, following
+  // the moves recorded by both searches back to where they started
+  static ArrayList<String> path(long meeting, LongLongMap forward, LongLongMap backward,
+      BoardShape shape) {
+    ArrayList<String> keys = new ArrayList<String>();
+
+    long state = meeting;
+    long value = forward.getOrDefault(state, 0);
+    while (value >>> 2 > 0) {
+      int d = (int) (value & 3);
+      keys.add(Direction.ALL[d].key);
+      int blank = PackedBoard.indexOf(state, 0);
+      state = PackedBoard.slide(state, blank, shape.neighbors[(blank << 2) | (d ^ 1)]);
+      value = forward.getOrDefault(state, 0);
+    }
+    for (int i = 0, j = keys.size() - 1; i < j; i++, j--) {
+      String k = keys.get(i);
+      keys.set(i, keys.get(j));
+      keys.set(j, k);
+    }
+
+    state = meeting;
+    value = backward.getOrDefault(state, 0);
+    while (value >>> 2 > 0) {
+      int d = (int) (value & 3) ^ 1;
+      keys.add(Direction.ALL[d].key);
+      int blank = PackedBoard.indexOf(state, 0);
+      state = PackedBoard.slide(state, blank, shape.neighbors[(blank << 2) | d]);
+      value = backward.getOrDefault(state, 0);
+    }
+    return keys;
+  }
+}
+
+class ExamplesBidirectionalSolver {
+  // tests that solutions are as short as the ones IDA* finds
+  void testOptimal(Tester t) {
+    BidirectionalSolver solver = new BidirectionalSolver(null);
+    Solver ida = new Solver();
+    PuzzleGenerator generator = new PuzzleGenerator(17);
+    BoardShape[] shapes = { new BoardShape(3, 3), new BoardShape(2, 4), new BoardShape(3, 4),
+        BoardShape.FOUR_BY_FOUR };
+    int[] walks = { 200, 200, 40, 30 };
+
+    for (int s = 0; s < shapes.length; s++) {
+      for (int i = 0; i < 5; i++) {
+        ABoard board = generator.walk(shapes[s], walks[s] + i);
+        ArrayList<String> keys = solver.solve(board);
+        t.checkExpect(keys.size(), ida.solve(board).size());
+        t.checkExpect(MoveSequence.solves(board, keys), true);
+        t.checkExpect(solver.fellBack, false);
+      }
+    }
+    t.checkExpect(solver.solve(new PackedBoard(PackedBoard.SOLVED)), new ArrayList<String>());
+  }
+
+  // tests that a search that runs out of room falls back to IDA*
+  void testFallBack(Tester t) {
+    BidirectionalSolver small = new BidirectionalSolver(1000, null);
+    PackedBoard board = new PackedBoard(new PuzzleGenerator(4).nextWithLength(30));
+    ArrayList<String> keys = small.solve(board);
+    t.checkExpect(small.fellBack, true);
+    t.checkExpect(keys.size(), 30);
+    t.checkExpect(MoveSequence.solves(board, keys), true);
+    // the states the search reached before giving up are counted too
+    t.checkExpect(small.nodes() > small.fallback.nodes, true);
+
+    ABoard large = new PuzzleGenerator(4).walk(new BoardShape(5, 5), 20);
+    t.checkExpect(MoveSequence.solves(large, small.solve(large)), true);
+    t.checkExpect(small.fellBack, true);
+  }
+
+  // tests for errors
+  void testErrors(Tester t) {
+    t.checkException(new IllegalArgumentException("Board is not solvable"),
+        new BidirectionalSolver(null), "solve", new PackedBoard(0x0FEDCBA987654312L));
+    t.checkConstructorException(
+        new IllegalArgumentException("There must be room for at least two states"),
+        "BidirectionalSolver", 1, null);
+    t.checkException(new IllegalArgumentException("Unknown solver: dfs"), this, "named", "dfs");
+    t.checkExpect(ISolver.named("bidirectional", null).get() instanceof BidirectionalSolver,
+        true);
+    t.checkExpect(ISolver.named("ida", null).get() instanceof Solver, true);
+  }
+
+  // returns the solver with the given name
+  ISolver named(String name) {
+    return ISolver.named(name, null).get();
+  }
+}
@@ -0,0 +1,530 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.stream.LongStream;
+import tester.*;
+
+//Writes a corpus of boards, and optionally their solutions, to a binary file
+//usage: java BoardCorpus <file> <count> [seed] [ida|bidirectional|parallel]
+//the file has four parts, each starting where the last ends:
+//  header     MAGIC, VERSION, rows, cols (ints), count (long), flags (int), 0 (int)
+//  boards     one packed board per long, as PackedBoard holds them
+//  index      with SOLUTIONS only: count + 1 longs, the move at which each
+//             solution starts in the moves, and the number of moves in all
+//  moves      with SOLUTIONS only: two bits per move, the Direction's ordinal,
+//             four to a byte with the first move lowest
+//boards and solutions are streamed to the file and to two files beside it, which
+//are appended on close, so a corpus of any size is written in constant memory
+class BoardCorpus implements AutoCloseable {
+  // the first bytes of every corpus file, "FBCP"
+  static final int MAGIC = 0x46424350;
+  // the version of the file format
+  static final int VERSION = 1;
+  // the number of bytes before the first board
+  static final int HEADER_SIZE = 32;
+  // the flag set when every board has a solution
+  static final int SOLUTIONS = 1;
+  // the number of bytes gathered for each part before they are written
+  static final int BUFFER_SIZE = 1 << 16;
+
+  // the file being written
+  Path file;
+  // the shape of every board
+  BoardShape shape;
+  // whether every board has a solution
+  boolean solutions;
+  // the number of boards added
+  long count;
+
+  // the file, which the boards are written to after the header
+  FileChannel boards;
+  ByteBuffer boardBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+  // the files the index and the moves are written to until close, or null
+  Path indexFile;
+  Path movesFile;
+  FileChannel index;
+  FileChannel moves;
+  ByteBuffer indexBuffer;
+  ByteBuffer movesBuffer;
+  // the moves that do not fill a byte yet, and how many there are
+  int pendingMoves;
+  int pendingCount;
+  // the number of moves in all the solutions added
+  long moveCount;
+
+  // Constructor that creates the given file for boards of the given shape, with a
+  // solution for every board or none
+  BoardCorpus(Path file, BoardShape shape, boolean solutions) throws IOException {
+    if (!shape.fitsInLong()) {
+      throw new IllegalArgumentException("Packed boards can hold at most 16 cells");
+    }
+    this.file = file;
+    this.shape = shape;
+    this.solutions = solutions;
+    this.boards = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    // the count is filled in on close, so a corpus that was never closed is not read
+    this.boards.write(BoardCorpus.header(shape, -1, solutions));
+
+    if (solutions) {
+      this.indexFile = file.resolveSibling(file.getFileName() + ".index");
+      this.movesFile = file.resolveSibling(file.getFileName() + ".moves");
+      this.index = FileChannel.open(this.indexFile, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+      this.moves = FileChannel.open(this.movesFile, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+      this.indexBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+      this.movesBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+  }
+
+  // writes a corpus of dealt 4x4 boards from the command line, solving every one
+  // with the named solver if one is given
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("usage: java BoardCorpus <file> <count> [seed]"
+          + " [ida|bidirectional|parallel]");
+      System.exit(2);
+    }
+    long count = Long.parseLong(args[1]);
+    PuzzleGenerator generator = new PuzzleGenerator(args.length > 2 ? Long.parseLong(args[2])
+        : System.nanoTime());
+    ISolver solver = args.length > 3 ? ISolver.named(args[3], null).get() : null;
+
+    long start = System.nanoTime();
+    try (BoardCorpus corpus = new BoardCorpus(Paths.get(args[0]), BoardShape.FOUR_BY_FOUR,
+        solver != null)) {
+      for (long i = 0; i < count; i++) {
+        long cells = generator.next();
+        if (solver == null) {
+          corpus.add(cells);
+        }
+        else {
+          corpus.add(cells, solver.solve(new PackedBoard(cells)));
+        }
+      }
+    }
+    System.err.printf("wrote %d boards in %.3f s%n", count, (System.nanoTime() - start) / 1e9);
+  }
+
+  // returns the header of a corpus of the given shape, count and kind, ready to write
+  static ByteBuffer header(BoardShape shape, long count, boolean solutions) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).putInt(shape.rows).putInt(shape.cols).putLong(count)
+        .putInt(solutions ? SOLUTIONS : 0).putInt(0);
+    header.flip();
+    return header;
+  }
+
+  // adds the given board, in a corpus without solutions
+  void add(ABoard board) throws IOException {
+    this.add(this.cells(board));
+  }
+
+  // adds the given packed board, in a corpus without solutions
+  void add(long cells) throws IOException {
+    if (this.solutions) {
+      throw new IllegalArgumentException("Every board of this corpus needs a solution");
+    }
+    this.addBoard(cells);
+  }
+
+  // adds the given board and the keys that solve it, in a corpus with solutions
+  void add(ABoard board, ArrayList<String> keys) throws IOException {
+    this.add(this.cells(board), keys);
+  }
+
+  // adds the given packed board and the keys that solve it, in a corpus with solutions
+  void add(long cells, ArrayList<String> keys) throws IOException {
+    if (!this.solutions) {
+      throw new IllegalArgumentException("This corpus has no solutions");
+    }
+    byte[] directions = new byte[keys.size()];
+    for (int i = 0; i < directions.length; i++) {
+      Direction d = Direction.fromKey(keys.get(i));
+      if (d == null) {
+        throw new IllegalArgumentException("Unknown key: " + keys.get(i));
+      }
+      directions[i] = (byte) d.ordinal();
+    }
+
+    this.addBoard(cells);
+    BoardCorpus.reserve(this.index, this.indexBuffer, 8);
+    this.indexBuffer.putLong(this.moveCount);
+    for (byte d : directions) {
+      this.pendingMoves |= d << (this.pendingCount * 2);
+      this.pendingCount++;
+      if (this.pendingCount == 4) {
+        BoardCorpus.reserve(this.moves, this.movesBuffer, 1);
+        this.movesBuffer.put((byte) this.pendingMoves);
+        this.pendingMoves = 0;
+        this.pendingCount = 0;
+      }
+    }
+    this.moveCount += directions.length;
+  }
+
+  // returns the cells of the given board, which must be of this corpus's shape, packed
+  long cells(ABoard board) {
+    if (!board.shape.sameShape(this.shape)) {
+      throw new IllegalArgumentException("Board is not " + this.shape.rows + "x"
+          + this.shape.cols);
+    }
+    return PackedBoard.pack(board);
+  }
+
+  // writes the given packed board
+  void addBoard(long cells) throws IOException {
+    BoardCorpus.reserve(this.boards, this.boardBuffer, 8);
+    this.boardBuffer.putLong(cells);
+    this.count++;
+  }
+
+  // makes room in the given buffer for the given number of bytes, writing what it
+  // holds to the given file if it is too full
+  static void reserve(FileChannel channel, ByteBuffer buffer, int size) throws IOException {
+    if (buffer.remaining() < size) {
+      BoardCorpus.write(channel, buffer);
+    }
+  }
+
+  // writes what the given buffer holds to the given file
+  static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  // appends the whole of the given file to the corpus file
+  void append(FileChannel part) throws IOException {
+    long size = part.size();
+    long done = 0;
+    while (done < size) {
+      done += part.transferTo(done, size - done, this.boards);
+    }
+  }
+
+  // appends the index and the moves, fills in the count and closes the file
+  public void close() throws IOException {
+    try {
+      BoardCorpus.write(this.boards, this.boardBuffer);
+      if (this.solutions) {
+        this.indexBuffer.putLong(this.moveCount);
+        BoardCorpus.write(this.index, this.indexBuffer);
+        if (this.pendingCount > 0) {
+          this.movesBuffer.put((byte) this.pendingMoves);
+        }
+        BoardCorpus.write(this.moves, this.movesBuffer);
+        this.append(this.index);
+        this.append(this.moves);
+      }
+      this.boards.write(BoardCorpus.header(this.shape, this.count, this.solutions), 0);
+    }
+    finally {
+      this.boards.close();
+      if (this.solutions) {
+        this.index.close();
+        this.moves.close();
+        Files.deleteIfExists(this.indexFile);
+        Files.deleteIfExists(this.movesFile);
+      }
+    }
+  }
+}
+
+//Reads the boards and solutions of a corpus from a memory-mapped file
+//the file is mapped in chunks, so a corpus can be larger than one buffer can
+//map; nothing is read until it is asked for, so opening a corpus of any size
+//takes no time and no heap
+class CorpusReader {
+  // the number of bytes mapped by each buffer, which a long never straddles
+  static final int CHUNK_SIZE = 1 << 30;
+
+  // the shape of every board
+  BoardShape shape;
+  // the number of boards
+  long count;
+  // whether every board has a solution
+  boolean solutions;
+  // the offsets of the index and of the moves in the file
+  long indexStart;
+  long movesStart;
+  // the bytes mapped by each buffer, a multiple of 8
+  int chunkSize;
+  // the mapped file, in order
+  MappedByteBuffer[] chunks;
+
+  // Constructor that maps the given corpus
+  CorpusReader(Path file) throws IOException {
+    this(file, CHUNK_SIZE);
+  }
+
+  // Constructor that maps the given corpus in chunks of the given size, a multiple of 8
+  CorpusReader(Path file, int chunkSize) throws IOException {
+    if (chunkSize < 8 || chunkSize % 8 != 0) {
+      throw new IllegalArgumentException("Chunk size must be a positive multiple of 8");
+    }
+    this.chunkSize = chunkSize;
+    long size;
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      size = in.size();
+      this.chunks = new MappedByteBuffer[(int) ((size + chunkSize - 1) / chunkSize)];
+      for (int i = 0; i < this.chunks.length; i++) {
+        long offset = (long) i * chunkSize;
+        this.chunks[i] = in.map(FileChannel.MapMode.READ_ONLY, offset,
+            Math.min(chunkSize, size - offset));
+      }
+    }
+
+    if (size < BoardCorpus.HEADER_SIZE || this.intAt(0) != BoardCorpus.MAGIC
+        || this.intAt(4) != BoardCorpus.VERSION) {
+      throw new IllegalArgumentException("Not a corpus file: " + file);
+    }
+    this.shape = BoardShape.of(this.intAt(8), this.intAt(12));
+    this.count = this.longAt(16);
+    this.solutions = (this.intAt(24) & BoardCorpus.SOLUTIONS) != 0;
+    // the count and the number of moves are bounded by the room the file has for
+    // them before any offset is computed, so a bad header cannot overflow one
+    boolean whole = this.count >= 0 && this.count <= (size - BoardCorpus.HEADER_SIZE) / 8;
+    if (whole) {
+      this.indexStart = BoardCorpus.HEADER_SIZE + this.count * 8;
+      this.movesStart = this.indexStart + (this.solutions ? (this.count + 1) * 8 : 0);
+      whole = this.movesStart <= size;
+    }
+    if (whole && this.solutions) {
+      long moves = this.longAt(this.movesStart - 8);
+      whole = moves >= 0 && moves <= (size - this.movesStart) * 4;
+    }
+    if (!whole) {
+      throw new IllegalArgumentException("Corpus file is truncated: " + file);
+    }
+  }
+
+  // returns the int at the given offset of the file, which is a multiple of 4
+  int intAt(long offset) {
+    return this.chunks[(int) (offset / this.chunkSize)].getInt((int) (offset % this.chunkSize));
+  }
+
+  // returns the long at the given offset of the file, which is a multiple of 8
+  long longAt(long offset) {
+    return this.chunks[(int) (offset / this.chunkSize)].getLong((int) (offset % this.chunkSize));
+  }
+
+  // returns the byte at the given offset of the file
+  int byteAt(long offset) {
+    return this.chunks[(int) (offset / this.chunkSize)].get((int) (offset % this.chunkSize))
+        & 0xFF;
+  }
+
+  // returns the number of boards
+  long size() {
+    return this.count;
+  }
+
+  // returns the given board, packed
+  long cells(long board) {
+    this.check(board);
+    return this.longAt(BoardCorpus.HEADER_SIZE + board * 8);
+  }
+
+  // returns the given board
+  ABoard board(long board) {
+    return new PackedBoard(this.shape, this.cells(board));
+  }
+
+  // returns every board in order, packed
+  LongStream stream() {
+    return LongStream.range(0, this.count)
+        .map(board -> this.longAt(BoardCorpus.HEADER_SIZE + board * 8));
+  }
+
+  // returns the number of moves in the solution of the given board
+  int solutionLength(long board) {
+    if (!this.solutions) {
+      throw new IllegalArgumentException("This corpus has no solutions");
+    }
+    this.check(board);
+    return (int) (this.solutionStart(board + 1) - this.solutionStart(board));
+  }
+
+  // returns the move at which the solution of the given board starts, or the number
+  // of moves in all the solutions if it is count
+  long solutionStart(long board) {
+    return this.longAt(this.indexStart + board * 8);
+  }
+
+  // puts the ordinals of the Directions of the solution of the given board into the
+  // start of the given array, which must be long enough, and returns how many there are
+  int solution(long board, byte[] directions) {
+    int length = this.solutionLength(board);
+    long start = this.solutionStart(board);
+    for (int i = 0; i < length; i++) {
+      long move = start + i;
+      directions[i] = (byte) ((this.byteAt(this.movesStart + move / 4) >>> ((move % 4) * 2)) & 3);
+    }
+    return length;
+  }
+
+  // returns the keys that solve the given board
+  ArrayList<String> solution(long board) {
+    byte[] directions = new byte[this.solutionLength(board)];
+    this.solution(board, directions);
+    ArrayList<String> keys = new ArrayList<String>(directions.length);
+    for (byte d : directions) {
+      keys.add(Direction.ALL[d].key);
+    }
+    return keys;
+  }
+
+  // throws if there is no board with the given number
+  void check(long board) {
+    if (board < 0 || board >= this.count) {
+      throw new IllegalArgumentException("No board " + board);
+    }
+  }
+}
+
+class ExamplesBoardCorpus {
+  // tests a corpus of boards without solutions
+  void testBoards(Tester t) throws IOException {
+    Path file = Files.createTempFile("fifteen", ".corpus");
+    try {
+      PuzzleGenerator generator = new PuzzleGenerator(22);
+      long[] boards = new long[1000];
+      try (BoardCorpus corpus = new BoardCorpus(file, BoardShape.FOUR_BY_FOUR, false)) {
+        for (int i = 0; i < boards.length; i++) {
+          boards[i] = generator.next();
+          corpus.add(boards[i]);
+        }
+      }
+      t.checkExpect(Files.size(file), 32L + 8000);
+
+      // small chunks, so the boards are spread over many buffers
+      CorpusReader reader = new CorpusReader(file, 64);
+      t.checkExpect(reader.size(), 1000L);
+      t.checkExpect(reader.solutions, false);
+      t.checkExpect(reader.cells(0), boards[0]);
+      t.checkExpect(reader.cells(999), boards[999]);
+      t.checkExpect(reader.board(500).get(3), new PackedBoard(boards[500]).get(3));
+      t.checkExpect(reader.stream().toArray(), boards);
+      t.checkExpect(new CorpusReader(file).stream().sum(), reader.stream().sum());
+      t.checkException(new IllegalArgumentException("No board 1000"), reader, "cells", 1000L);
+      t.checkException(new IllegalArgumentException("This corpus has no solutions"), reader,
+          "solutionLength", 0L);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // tests a corpus of boards with solutions
+  void testSolutions(Tester t) throws IOException {
+    Path file = Files.createTempFile("fifteen", ".corpus");
+    try {
+      BoardShape three = new BoardShape(3, 3);
+      PuzzleGenerator generator = new PuzzleGenerator(23);
+      Solver solver = new Solver();
+      ABoard[] boards = new ABoard[50];
+      ArrayList<ArrayList<String>> keys = new ArrayList<ArrayList<String>>();
+      try (BoardCorpus corpus = new BoardCorpus(file, three, true)) {
+        for (int i = 0; i < boards.length; i++) {
+          boards[i] = generator.walk(three, i);
+          keys.add(solver.solve(boards[i]));
+          corpus.add(boards[i], keys.get(i));
+        }
+      }
+      t.checkExpect(Files.exists(file.resolveSibling(file.getFileName() + ".index")), false);
+
+      CorpusReader reader = new CorpusReader(file, 16);
+      t.checkExpect(reader.size(), 50L);
+      t.checkExpect(reader.shape.rows, 3);
+      boolean all = true;
+      for (int i = 0; i < boards.length; i++) {
+        all &= reader.cells(i) == PackedBoard.pack(boards[i]);
+        all &= reader.solution(i).equals(keys.get(i));
+        all &= MoveSequence.solves(reader.board(i), reader.solution(i));
+      }
+      t.checkExpect(all, true);
+      t.checkExpect(reader.solutionLength(0), 0);
+
+      byte[] directions = new byte[80];
+      int length = reader.solution(49, directions);
+      t.checkExpect(length, keys.get(49).size());
+      t.checkExpect(Direction.ALL[directions[length - 1]].key, keys.get(49).get(length - 1));
+      t.checkException(new IllegalArgumentException("No board 50"), reader, "solution", 50L);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // tests for errors
+  void testErrors(Tester t) throws IOException {
+    Path file = Files.createTempFile("fifteen", ".corpus");
+    try {
+      BoardCorpus corpus = new BoardCorpus(file, BoardShape.FOUR_BY_FOUR, false);
+      t.checkException(new IllegalArgumentException("This corpus has no solutions"), corpus,
+          "add", PackedBoard.SOLVED, new ArrayList<String>());
+      t.checkException(new IllegalArgumentException("Board is not 4x4"), corpus, "add",
+          new PuzzleGenerator(1).deal(new BoardShape(3, 3)));
+      corpus.add(PackedBoard.SOLVED);
+      // a corpus that was not closed has no count
+      t.checkException(new IllegalArgumentException("Corpus file is truncated: " + file), this,
+          "read", file);
+      corpus.close();
+      t.checkExpect(new CorpusReader(file).size(), 1L);
+
+      // a count too large for the file, even one whose offsets would overflow
+      byte[] bytes = Files.readAllBytes(file);
+      ByteBuffer.wrap(bytes).putLong(16, 1L << 61);
+      Files.write(file, bytes);
+      t.checkException(new IllegalArgumentException("Corpus file is truncated: " + file), this,
+          "read", file);
+      ByteBuffer.wrap(bytes).putLong(16, Long.MAX_VALUE);
+      Files.write(file, bytes);
+      t.checkException(new IllegalArgumentException("Corpus file is truncated: " + file), this,
+          "read", file);
+
+      // a number of moves too large for the file
+      BoardCorpus solutions = new BoardCorpus(file, BoardShape.FOUR_BY_FOUR, true);
+      solutions.add(PackedBoard.SOLVED, new ArrayList<String>());
+      solutions.close();
+      bytes = Files.readAllBytes(file);
+      ByteBuffer.wrap(bytes).putLong(BoardCorpus.HEADER_SIZE + 16, Long.MAX_VALUE);
+      Files.write(file, bytes);
+      t.checkException(new IllegalArgumentException("Corpus file is truncated: " + file), this,
+          "read", file);
+
+      Files.write(file, new byte[] { 1, 2, 3 });
+      t.checkException(new IllegalArgumentException("Not a corpus file: " + file), this, "read",
+          file);
+
+      BoardCorpus solved = new BoardCorpus(file, BoardShape.FOUR_BY_FOUR, true);
+      t.checkException(new IllegalArgumentException("Every board of this corpus needs a"
+          + " solution"), solved, "add", PackedBoard.SOLVED);
+      ArrayList<String> bad = new ArrayList<String>();
+      bad.add("u");
+      t.checkException(new IllegalArgumentException("Unknown key: u"), solved, "add",
+          PackedBoard.SOLVED, bad);
+      solved.close();
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // returns a reader of the given corpus
+  CorpusReader read(Path file) throws IOException {
+    return new CorpusReader(file);
+  }
+}
@@ -0,0 +1,153 @@
+import tester.*;
+
+//Represents the dimensions of a board and the tables that depend on them
+//cells are numbered row by row from 0 at the top left, and the tile with value v
+//belongs at index v - 1, with the space in the last cell
+class BoardShape {
+  // the most cells a board can have, so that every value fits in a byte
+  static final int MAX_CELLS = 256;
+  // the most rows or columns a board can have
+  static final int MAX_SIDE = 16;
+
+  // the classic 4x4 board
+  static final BoardShape FOUR_BY_FOUR = new BoardShape(4, 4);
+
+  // the number of rows and columns, and of cells
+  int rows;
+  int cols;
+  int size;
+
+  // for every index of the space and every direction, the index of the tile
+  // that slides into the space, or -1 if there is no such tile
+  // indexed by blank * 4 + direction.ordinal()
+  int[] neighbors;
+
+  // the solved board packed 4 bits per cell, if it has at most 16 cells
+  long packedSolved;
+
+  // Constructor that takes in the number of rows and columns
+  BoardShape(int rows, int cols) {
+    // each side is checked before they are multiplied, which could overflow
+    if (rows < 2 || cols < 2 || rows > MAX_SIDE || cols > MAX_SIDE
+        || rows * cols > MAX_CELLS) {
+      throw new IllegalArgumentException("Boards must have 2 to " + MAX_SIDE
+          + " rows and columns and at most " + MAX_CELLS + " cells");
+    }
+    this.rows = rows;
+    this.cols = cols;
+    this.size = rows * cols;
+    this.neighbors = BoardShape.buildNeighbors(rows, cols);
+
+    if (this.size <= 16) {
+      for (int index = 0; index < this.size; index++) {
+        this.packedSolved |= (long) this.goal(index) << (index * 4);
+      }
+    }
+  }
+
+  // returns the shape with the given number of rows and columns
+  static BoardShape of(int rows, int cols) {
+    if (rows == 4 && cols == 4) {
+      return FOUR_BY_FOUR;
+    }
+    else {
+      return new BoardShape(rows, cols);
+    }
+  }
+
+  // returns the shared shape with the same rows and columns as this one if there
+  // is one, or this shape, so identity checks against FOUR_BY_FOUR hold for every 4x4
+  BoardShape canonical() {
+    return this.sameShape(FOUR_BY_FOUR) ? FOUR_BY_FOUR : this;
+  }
+
+  // builds the table of neighbors of every index of the space
+  static int[] buildNeighbors(int rows, int cols) {
+    int[] table = new int[rows * cols * 4];
+
+    for (int blank = 0; blank < rows * cols; blank++) {
+      int row = blank / cols;
+      int col = blank % cols;
+      table[blank * 4 + Direction.UP.ordinal()] = row < rows - 1 ? blank + cols : -1;
+      table[blank * 4 + Direction.DOWN.ordinal()] = row > 0 ? blank - cols : -1;
+      table[blank * 4 + Direction.LEFT.ordinal()] = col < cols - 1 ? blank + 1 : -1;
+      table[blank * 4 + Direction.RIGHT.ordinal()] = col > 0 ? blank - 1 : -1;
+    }
+    return table;
+  }
+
+  // returns the correct value of the given index
+  int goal(int index) {
+    return index + 1 == this.size ? 0 : index + 1;
+  }
+
+  // returns the index the given value belongs at
+  int goalIndex(int value) {
+    return value == 0 ? this.size - 1 : value - 1;
+  }
+
+  // returns whether boards of this shape fit in a long, 4 bits per cell
+  boolean fitsInLong() {
+    return this.size <= 16;
+  }
+
+  // returns whether this shape has the same dimensions as the given one
+  boolean sameShape(BoardShape other) {
+    return this.rows == other.rows && this.cols == other.cols;
+  }
+}
+
+class ExamplesBoardShape {
+  BoardShape three = new BoardShape(3, 3);
+  BoardShape fiveBySix = new BoardShape(5, 6);
+
+  // tests for the constructor
+  void testConstructor(Tester t) {
+    t.checkExpect(this.three.size, 9);
+    t.checkExpect(this.three.packedSolved, 0x087654321L);
+    t.checkExpect(BoardShape.FOUR_BY_FOUR.packedSolved, PackedBoard.SOLVED);
+    t.checkExpect(this.fiveBySix.packedSolved, 0L);
+    t.checkExpect(BoardShape.of(4, 4) == BoardShape.FOUR_BY_FOUR, true);
+    t.checkExpect(BoardShape.of(3, 3).sameShape(this.three), true);
+    t.checkExpect(this.three.sameShape(this.fiveBySix), false);
+    t.checkExpect(new BoardShape(4, 4).canonical() == BoardShape.FOUR_BY_FOUR, true);
+    t.checkExpect(this.three.canonical() == this.three, true);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Boards must have 2 to 16 rows and columns and at most 256 cells"), "BoardShape", 1, 4);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Boards must have 2 to 16 rows and columns and at most 256 cells"), "BoardShape", 17, 16);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Boards must have 2 to 16 rows and columns and at most 256 cells"), "BoardShape", 2, 17);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Boards must have 2 to 16 rows and columns and at most 256 cells"), "BoardShape", 2, 100);
+    t.checkConstructorException(new IllegalArgumentException(
+        "Boards must have 2 to 16 rows and columns and at most 256 cells"), "BoardShape", 65536,
+        65536);
+  }
+
+  // tests for goal and goalIndex
+  void testGoal(Tester t) {
+    t.checkExpect(this.three.goal(0), 1);
+    t.checkExpect(this.three.goal(8), 0);
+    t.checkExpect(this.fiveBySix.goal(29), 0);
+    t.checkExpect(this.fiveBySix.goal(28), 29);
+    t.checkExpect(this.three.goalIndex(0), 8);
+    t.checkExpect(this.three.goalIndex(4), 3);
+    t.checkExpect(this.three.fitsInLong(), true);
+    t.checkExpect(this.fiveBySix.fitsInLong(), false);
+  }
+
+  // tests for the neighbor table
+  void testNeighbors(Tester t) {
+    t.checkExpect(BoardShape.FOUR_BY_FOUR.neighbors, PackedBoard.NEIGHBORS);
+    // the middle of a 3x3 board
+    t.checkExpect(this.three.neighbors[4 * 4 + Direction.UP.ordinal()], 7);
+    t.checkExpect(this.three.neighbors[4 * 4 + Direction.DOWN.ordinal()], 1);
+    t.checkExpect(this.three.neighbors[4 * 4 + Direction.LEFT.ordinal()], 5);
+    t.checkExpect(this.three.neighbors[4 * 4 + Direction.RIGHT.ordinal()], 3);
+    // the right edge of a 5x6 board
+    t.checkExpect(this.fiveBySix.neighbors[11 * 4 + Direction.LEFT.ordinal()], -1);
+    t.checkExpect(this.fiveBySix.neighbors[11 * 4 + Direction.UP.ordinal()], 17);
+    t.checkExpect(this.fiveBySix.neighbors[29 * 4 + Direction.UP.ordinal()], -1);
+  }
+}
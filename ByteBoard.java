@@ -0,0 +1,109 @@
+import tester.*;
+
+//Represents a board too large to pack into a long, one byte per cell
+class ByteBoard extends ABoard {
+  // the value of every cell, row by row
+  byte[] cells;
+
+  // Constructor that takes in the shape and the values, row by row
+  ByteBoard(BoardShape shape, int[] values) {
+    this.shape = shape;
+    this.cells = new byte[shape.size];
+    for (int index = 0; index < shape.size; index++) {
+      this.cells[index] = (byte) values[index];
+    }
+    this.countMisplaced();
+  }
+
+  // Constructor that takes in the shape and the cells, without copying them
+  ByteBoard(BoardShape shape, byte[] cells) {
+    this.shape = shape;
+    this.cells = cells;
+    this.countMisplaced();
+  }
+
+  // returns the value at the given index
+  int get(int index) {
+    return this.cells[index] & 0xFF;
+  }
+
+  // swaps the values at two indexes
+  void swap(int index1, int index2) {
+    byte value1 = this.cells[index1];
+    byte value2 = this.cells[index2];
+    this.cells[index1] = value2;
+    this.cells[index2] = value1;
+    this.swapped(index1, index2, value1 & 0xFF, value2 & 0xFF);
+  }
+
+  // returns a board with the same shape and values that changes independently
+  ABoard copy() {
+    return new ByteBoard(this.shape, this.cells.clone());
+  }
+
+  // makes this board hold the same values as the given byte board
+  void setTo(ABoard other) {
+    ByteBoard bytes = (ByteBoard) other;
+    System.arraycopy(bytes.cells, 0, this.cells, 0, this.cells.length);
+    this.blank = bytes.blank;
+    this.misplaced = bytes.misplaced;
+    this.hash = bytes.hash;
+  }
+}
+
+class ExamplesByteBoard {
+  BoardShape five = new BoardShape(5, 5);
+
+  // returns a solved 5x5 board
+  ByteBoard solved() {
+    int[] values = new int[25];
+    for (int index = 0; index < 25; index++) {
+      values[index] = this.five.goal(index);
+    }
+    return new ByteBoard(this.five, values);
+  }
+
+  // tests for the constructor
+  void testConstructor(Tester t) {
+    ByteBoard b = this.solved();
+    t.checkExpect(b.misplaced, 0);
+    t.checkExpect(b.blank, 24);
+    t.checkExpect(b.get(0), 1);
+    t.checkExpect(b.get(23), 24);
+    t.checkExpect(b.get(24), 0);
+  }
+
+  // tests for swap and move
+  void testSwap(Tester t) {
+    ByteBoard b = this.solved();
+    b.swap(0, 24);
+    t.checkExpect(b.blank, 0);
+    t.checkExpect(b.get(24), 1);
+    t.checkExpect(b.misplaced, 2);
+    b.swap(3, 3);
+    t.checkExpect(b.misplaced, 2);
+    b.swap(24, 0);
+    t.checkExpect(b.isSolved(), true);
+
+    t.checkExpect(b.move(Direction.DOWN), true);
+    t.checkExpect(b.blank, 19);
+    t.checkExpect(b.move(Direction.LEFT), false);
+    t.checkExpect(b.move(Direction.UP), true);
+    t.checkExpect(b.isSolved(), true);
+  }
+
+  // tests for copy
+  void testCopy(Tester t) {
+    ByteBoard b = this.solved();
+    ABoard c = b.copy();
+    c.move(Direction.RIGHT);
+    t.checkExpect(b.isSolved(), true);
+    t.checkExpect(c.isSolved(), false);
+    t.checkExpect(c.blank, 23);
+
+    b.setTo(c);
+    t.checkExpect(b.blank, 23);
+    t.checkExpect(b.get(24), 24);
+    t.checkExpect(b.misplaced, 2);
+  }
+}
@@ -0,0 +1,60 @@
+import tester.*;
+
+//Represents a direction a tile can slide into the space
+//the keys match the ones handled by FifteenGame.onKeyEvent
+enum Direction {
+  UP("up"), DOWN("down"), LEFT("left"), RIGHT("right");
+
+  // every direction, indexed by ordinal
+  // kept so that looking up a direction does not copy values()
+  static final Direction[] ALL = Direction.values();
+
+  // the key that moves a tile in this direction
+  final String key;
+
+  // constructor for Direction
+  Direction(String key) {
+    this.key = key;
+  }
+
+  // returns the direction for the given key, or null if the key is not a move
+  static Direction fromKey(String k) {
+    switch (k) {
+      case "up":
+        return UP;
+      case "down":
+        return DOWN;
+      case "left":
+        return LEFT;
+      case "right":
+        return RIGHT;
+      default:
+        return null;
+    }
+  }
+
+  // returns the direction that undoes a move in this direction
+  Direction opposite() {
+    return ALL[this.ordinal() ^ 1];
+  }
+}
+
+class ExamplesDirection {
+  // tests for fromKey
+  void testFromKey(Tester t) {
+    t.checkExpect(Direction.fromKey("up"), Direction.UP);
+    t.checkExpect(Direction.fromKey("down"), Direction.DOWN);
+    t.checkExpect(Direction.fromKey("left"), Direction.LEFT);
+    t.checkExpect(Direction.fromKey("right"), Direction.RIGHT);
+    t.checkExpect(Direction.fromKey("x"), null);
+    t.checkExpect(Direction.fromKey("Up"), null);
+  }
+
+  // tests for opposite
+  void testOpposite(Tester t) {
+    t.checkExpect(Direction.UP.opposite(), Direction.DOWN);
+    t.checkExpect(Direction.DOWN.opposite(), Direction.UP);
+    t.checkExpect(Direction.LEFT.opposite(), Direction.RIGHT);
+    t.checkExpect(Direction.RIGHT.opposite(), Direction.LEFT);
+  }
+}
@@ -0,0 +1,370 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import tester.*;
+
+//The fewest moves needed to solve every board of a small shape
+//usage: java DistanceTable <rows> <cols> <file>
+//every arrangement of the values is numbered by its rank in lexicographic order
+//(its Lehmer code), and the table holds one byte per rank: the number of moves
+//to the goal, or UNREACHABLE for the half of the arrangements that cannot be
+//solved. It is built once by a breadth-first search back from the goal, after
+//which a board's distance is one array read, and the best move is at most four.
+//a byte is needed because distances go past 15: 31 on 3x3 and 36 on 2x4 boards
+//shapes of up to 10 cells fit, the largest being 2x5 at 3.6 MB
+class DistanceTable implements ISolver {
+  // the first int of every distance table file
+  static final int MAGIC = 0x46445442;
+  // the format of the file
+  static final int VERSION = 1;
+  // the number of bytes before the distances
+  static final int HEADER_SIZE = 16;
+  // the most cells a shape can have
+  static final int MAX_CELLS = 10;
+  // the distance of the arrangements that cannot be solved
+  static final int UNREACHABLE = 0xFF;
+
+  // the shape of the boards
+  BoardShape shape;
+  // the distance of every arrangement, indexed by its rank
+  ByteBuffer distances;
+
+  // Constructor that takes in the shape and the distance of every arrangement
+  DistanceTable(BoardShape shape, ByteBuffer distances) {
+    if (distances.capacity() != DistanceTable.tableSize(shape)) {
+      throw new IllegalArgumentException("A " + shape.rows + "x" + shape.cols + " table must have "
+          + DistanceTable.tableSize(shape) + " entries");
+    }
+    this.shape = shape;
+    this.distances = distances;
+  }
+
+  // builds the table for the given shape and writes it to the given file
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println("usage: java DistanceTable <rows> <cols> <file>");
+      System.exit(2);
+    }
+    BoardShape shape = BoardShape.of(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+    long start = System.nanoTime();
+    DistanceTable table = DistanceTable.build(shape);
+    table.save(Paths.get(args[2]));
+
+    int[] counts = table.counts();
+    System.err.printf("%dx%d: built in %.3f s, hardest boards need %d moves%n", shape.rows,
+        shape.cols, (System.nanoTime() - start) / 1e9, counts.length - 1);
+    for (int d = 0; d < counts.length; d++) {
+      System.err.printf("%3d moves: %d boards%n", d, counts[d]);
+    }
+  }
+
+  // returns the number of arrangements of the values of the given shape
+  static int tableSize(BoardShape shape) {
+    if (shape.size > MAX_CELLS) {
+      throw new IllegalArgumentException("Distance tables hold boards of at most " + MAX_CELLS
+          + " cells");
+    }
+    int size = 1;
+    for (int i = 2; i <= shape.size; i++) {
+      size *= i;
+    }
+    return size;
+  }
+
+  // returns the rank of the given packed arrangement of the values 0 to size - 1
+  // among all of them, from 0 to size! - 1
+  static int rank(long cells, int size) {
+    int rank = 0;
+    int used = 0;
+    for (int i = 0; i < size; i++) {
+      int value = (int) (cells >>> (i * 4)) & 0xF;
+      // the number of unused values smaller than this one
+      int digit = value - Integer.bitCount(used & ((1 << value) - 1));
+      rank = rank * (size - i) + digit;
+      used |= 1 << value;
+    }
+    return rank;
+  }
+
+  // returns the packed arrangement of the values 0 to size - 1 with the given rank
+  static long unrank(int rank, int size) {
+    int[] digits = new int[size];
+    for (int i = size - 1; i >= 0; i--) {
+      digits[i] = rank % (size - i);
+      rank /= size - i;
+    }
+
+    long cells = 0;
+    int free = (1 << size) - 1;
+    for (int i = 0; i < size; i++) {
+      // find the unused value with the given number of unused values before it
+      int values = free;
+      for (int skip = digits[i]; skip > 0; skip--) {
+        values &= values - 1;
+      }
+      int value = Integer.numberOfTrailingZeros(values);
+      cells |= (long) value << (i * 4);
+      free &= ~(1 << value);
+    }
+    return cells;
+  }
+
+  // builds the table for the given shape by a breadth-first search from the goal
+  // every move can be undone, so the moves from the goal to a board, reversed,
+  // solve it
+  static DistanceTable build(BoardShape shape) {
+    byte[] table = new byte[DistanceTable.tableSize(shape)];
+    Arrays.fill(table, (byte) UNREACHABLE);
+
+    // exactly half of the arrangements can be solved
+    long[] queue = new long[table.length / 2];
+    queue[0] = shape.packedSolved;
+    table[DistanceTable.rank(shape.packedSolved, shape.size)] = 0;
+    int head = 0;
+    int tail = 1;
+
+    while (head < tail) {
+      long cells = queue[head];
+      head++;
+      int distance = table[DistanceTable.rank(cells, shape.size)] & 0xFF;
+      int blank = PackedBoard.indexOf(cells, 0);
+
+      for (int d = 0; d < 4; d++) {
+        int tile = shape.neighbors[(blank << 2) | d];
+        if (tile >= 0) {
+          long next = PackedBoard.slide(cells, blank, tile);
+          int rank = DistanceTable.rank(next, shape.size);
+          if ((table[rank] & 0xFF) == UNREACHABLE) {
+            table[rank] = (byte) (distance + 1);
+            queue[tail] = next;
+            tail++;
+          }
+        }
+      }
+    }
+    return new DistanceTable(shape, ByteBuffer.wrap(table));
+  }
+
+  // writes this table to the given file
+  // the file is written next to its destination and moved into place, so a
+  // reader never maps a partly written file
+  void save(Path file) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).putInt(this.shape.rows).putInt(this.shape.cols);
+    header.flip();
+
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (header.hasRemaining()) {
+        out.write(header);
+      }
+      ByteBuffer contents = this.distances.duplicate();
+      contents.clear();
+      while (contents.hasRemaining()) {
+        out.write(contents);
+      }
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // maps the table in the given file into memory
+  static DistanceTable load(Path file) throws IOException {
+    MappedByteBuffer data;
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+    }
+
+    if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Not a distance table file: " + file);
+    }
+    BoardShape shape = BoardShape.of(data.getInt(8), data.getInt(12));
+    int size = DistanceTable.tableSize(shape);
+    if (HEADER_SIZE + size > data.limit()) {
+      throw new IllegalArgumentException("Distance table file is truncated: " + file);
+    }
+    ByteBuffer table = data.duplicate();
+    table.position(HEADER_SIZE);
+    table.limit(HEADER_SIZE + size);
+    return new DistanceTable(shape, table.slice());
+  }
+
+  // maps the given file, building and writing it first if it does not exist yet
+  static DistanceTable loadOrBuild(Path file, BoardShape shape) throws IOException {
+    if (!Files.exists(file)) {
+      DistanceTable.build(shape).save(file);
+    }
+    return DistanceTable.load(file);
+  }
+
+  // returns the fewest moves needed to solve the given packed board, or UNREACHABLE
+  int distance(long cells) {
+    return this.distances.get(DistanceTable.rank(cells, this.shape.size)) & 0xFF;
+  }
+
+  // returns the fewest moves needed to solve the given board, or UNREACHABLE
+  int distance(ABoard board) {
+    return this.distance(this.pack(board));
+  }
+
+  // returns the cells of the given board, which must be of this table's shape, packed
+  long pack(ABoard board) {
+    if (!board.shape.sameShape(this.shape)) {
+      throw new IllegalArgumentException("Board is not " + this.shape.rows + "x"
+          + this.shape.cols);
+    }
+    return PackedBoard.pack(board);
+  }
+
+  // returns a move that starts an optimal solution of the given board, or null if
+  // it is solved or cannot be solved
+  Direction bestMove(ABoard board) {
+    long cells = this.pack(board);
+    int distance = this.distance(cells);
+    if (distance == 0 || distance == UNREACHABLE) {
+      return null;
+    }
+
+    int blank = PackedBoard.indexOf(cells, 0);
+    for (int d = 0; d < 4; d++) {
+      int tile = this.shape.neighbors[(blank << 2) | d];
+      if (tile >= 0 && this.distance(PackedBoard.slide(cells, blank, tile)) == distance - 1) {
+        return Direction.ALL[d];
+      }
+    }
+    throw new IllegalStateException("Distance table is inconsistent at " + cells);
+  }
+
+  // returns an optimal list of keys that solves the given board
+  public ArrayList<String> solve(ABoard board) {
+    if (this.distance(board) == UNREACHABLE) {
+      throw new IllegalArgumentException("Board is not solvable");
+    }
+    ABoard b = board.copy();
+    ArrayList<String> keys = new ArrayList<String>();
+    Direction d = this.bestMove(b);
+    while (d != null) {
+      keys.add(d.key);
+      b.move(d);
+      d = this.bestMove(b);
+    }
+    return keys;
+  }
+
+  // returns 0, since solving only reads the table
+  public long nodes() {
+    return 0;
+  }
+
+  // returns the number of boards that need every number of moves, up to the most
+  int[] counts() {
+    int[] counts = new int[UNREACHABLE];
+    int most = 0;
+    for (int rank = 0; rank < this.distances.capacity(); rank++) {
+      int distance = this.distances.get(rank) & 0xFF;
+      if (distance != UNREACHABLE) {
+        counts[distance]++;
+        most = Math.max(most, distance);
+      }
+    }
+    return Arrays.copyOf(counts, most + 1);
+  }
+}
+
+class ExamplesDistanceTable {
+  BoardShape three = new BoardShape(3, 3);
+  DistanceTable table = DistanceTable.build(this.three);
+
+  // tests for rank and unrank
+  void testRank(Tester t) {
+    t.checkExpect(DistanceTable.rank(0x876543210L, 9), 0);
+    t.checkExpect(DistanceTable.rank(0x012345678L, 9), 362879);
+    t.checkExpect(DistanceTable.rank(0x67543210L, 8), 1);
+    t.checkExpect(DistanceTable.unrank(1, 8), 0x67543210L);
+
+    boolean roundTrips = true;
+    for (int rank = 0; rank < 40320; rank += 7) {
+      roundTrips &= DistanceTable.rank(DistanceTable.unrank(rank, 8), 8) == rank;
+    }
+    t.checkExpect(roundTrips, true);
+    t.checkExpect(DistanceTable.tableSize(new BoardShape(2, 5)), 3628800);
+    t.checkException(new IllegalArgumentException("Distance tables hold boards of at most 10"
+        + " cells"), this, "size", 3, 4);
+  }
+
+  // returns the table size of the shape with the given rows and columns
+  int size(int rows, int cols) {
+    return DistanceTable.tableSize(new BoardShape(rows, cols));
+  }
+
+  // tests the known sizes and depths of the small shapes
+  void testCounts(Tester t) {
+    int[] counts = this.table.counts();
+    t.checkExpect(counts.length, 32);
+    t.checkExpect(counts[0], 1);
+    t.checkExpect(counts[1], 2);
+    // the two hardest 3x3 boards
+    t.checkExpect(counts[31], 2);
+    t.checkExpect(Arrays.stream(counts).sum(), 181440);
+
+    int[] wide = DistanceTable.build(new BoardShape(2, 4)).counts();
+    t.checkExpect(wide.length, 37);
+    t.checkExpect(Arrays.stream(wide).sum(), 20160);
+  }
+
+  // tests that distances and moves are optimal
+  void testDistance(Tester t) {
+    PuzzleGenerator generator = new PuzzleGenerator(8);
+    Solver solver = new Solver();
+    for (int i = 0; i < 20; i++) {
+      ABoard board = generator.deal(this.three);
+      ArrayList<String> keys = this.table.solve(board);
+      t.checkExpect(this.table.distance(board), solver.solve(board).size());
+      t.checkExpect(keys.size(), this.table.distance(board));
+
+      ABoard b = board.copy();
+      for (String k : keys) {
+        b.move(Direction.fromKey(k));
+      }
+      t.checkExpect(b.isSolved(), true);
+    }
+
+    ABoard solved = ABoard.create(this.three, new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 0 });
+    t.checkExpect(this.table.distance(solved), 0);
+    t.checkExpect(this.table.bestMove(solved), null);
+    ABoard unsolvable = ABoard.create(this.three, new int[] { 2, 1, 3, 4, 5, 6, 7, 8, 0 });
+    t.checkExpect(this.table.distance(unsolvable), DistanceTable.UNREACHABLE);
+    t.checkException(new IllegalArgumentException("Board is not solvable"), this.table, "solve",
+        unsolvable);
+    t.checkException(new IllegalArgumentException("Board is not 3x3"), this.table, "distance",
+        new PackedBoard(PackedBoard.SOLVED));
+  }
+
+  // tests for save and load
+  void testSaveLoad(Tester t) throws IOException {
+    Path file = Files.createTempFile("fifteen", ".dist");
+    try {
+      this.table.save(file);
+      t.checkExpect(Files.size(file), 16L + 362880);
+      DistanceTable mapped = DistanceTable.load(file);
+      t.checkExpect(mapped.shape.rows, 3);
+      t.checkExpect(mapped.shape.cols, 3);
+      t.checkExpect(mapped.counts(), this.table.counts());
+
+      Files.write(file, new byte[] { 1, 2, 3 });
+      t.checkException(new IllegalArgumentException("Not a distance table file: " + file),
+          this.table, "load", file);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -15,11 +15,17 @@ class CoordUtils {
 
   // method to convert row or column number to x or y coordinate
   int convertIndexToCoord(int index) {
-    if (index >= 0 && index <= 4) {
+    return this.convertIndexToCoord(index, 4);
+  }
+
+  // converts a row or column number on a board with the given number of rows or
+  // columns to an x or y coordinate
+  int convertIndexToCoord(int index, int count) {
+    if (index >= 0 && index <= count) {
       return index * 100 + 50;
     }
     else {
-      throw new IllegalArgumentException("Index should be between 0 and 4");
+      throw new IllegalArgumentException("Index should be between 0 and " + count);
     }
   }
 }
@@ -50,6 +56,21 @@ class ArrayUtils {
 
 // Represents an individual tile
 class Tile {
+  // the number of tile values that have shared tiles and images
+  // enough for every board up to 6x6
+  static final int SHARED_VALUES = 36;
+
+  // one tile of every value, shared so that drawing a board needs no new tiles
+  static final Tile[] SHARED = Tile.buildShared();
+
+  // the image of every shared tile out of and in its correct position,
+  // indexed by value * 2 + (correctPos ? 1 : 0)
+  // images are never changed once built, so every game can place the same ones
+  static final WorldImage[] SPRITES = Tile.buildSprites();
+
+  // used by every tile to place its image
+  static final CoordUtils COORDS = new CoordUtils();
+
   // The number on the tile. Use 0 to represent the space
   int value;
 
@@ -58,10 +79,56 @@ class Tile {
     this.value = value;
   }
 
+  // builds the shared tiles
+  static Tile[] buildShared() {
+    Tile[] tiles = new Tile[SHARED_VALUES];
+    for (int value = 0; value < SHARED_VALUES; value++) {
+      tiles[value] = new Tile(value);
+    }
+    return tiles;
+  }
+
+  // builds the images of the shared tiles
+  static WorldImage[] buildSprites() {
+    WorldImage[] images = new WorldImage[SHARED_VALUES * 2];
+    for (int value = 0; value < SHARED_VALUES; value++) {
+      images[value * 2] = new Tile(value).drawTile(false);
+      images[value * 2 + 1] = new Tile(value).drawTile(true);
+    }
+    return images;
+  }
+
+  // returns the shared tile with the given value
+  static Tile of(int value) {
+    if (value >= 0 && value < SHARED_VALUES) {
+      return SHARED[value];
+    }
+    else {
+      return new Tile(value);
+    }
+  }
+
+  // returns the image of the tile, from the shared images when there is one
+  WorldImage sprite(boolean correctPos) {
+    if (this.value >= 0 && this.value < SHARED_VALUES) {
+      return SPRITES[this.value * 2 + (correctPos ? 1 : 0)];
+    }
+    else {
+      return this.drawTile(correctPos);
+    }
+  }
+
   // Draws this tile onto the background at the specified logical coordinates
   WorldScene drawAt(int col, int row, WorldScene background, boolean correctPos) {
-    background.placeImageXY(this.drawTile(correctPos), new CoordUtils().convertIndexToCoord(col),
-        new CoordUtils().convertIndexToCoord(row));
+    return this.drawAt(col, row, background, correctPos, BoardShape.FOUR_BY_FOUR);
+  }
+
+  // Draws this tile onto the background at the specified logical coordinates on a
+  // board of the given shape
+  WorldScene drawAt(int col, int row, WorldScene background, boolean correctPos,
+      BoardShape shape) {
+    background.placeImageXY(this.sprite(correctPos), COORDS.convertIndexToCoord(col, shape.cols),
+        COORDS.convertIndexToCoord(row, shape.rows));
     return background;
   }
 
@@ -88,11 +155,17 @@ class Tile {
 
   // returns whether the tile is in the correct position
   boolean atCorrectPosition(int row, int column) {
+    return this.atCorrectPosition(row, column, 4, 4);
+  }
+
+  // returns whether the tile is in the correct position on a board with the given
+  // number of rows and columns
+  boolean atCorrectPosition(int row, int column, int rows, int cols) {
     if (this.value == 0) {
-      return row == 3 && column == 3;
+      return row == rows - 1 && column == cols - 1;
     }
     else {
-      return this.value == (row * 4) + column + 1;
+      return this.value == (row * cols) + column + 1;
     }
   }
 
@@ -112,26 +185,44 @@ class Tile {
   }
 }
 
+//Draws a GameCore in a javalib World
+//the rules live in the core, so this class only turns keys into moves and the
+//board into scenes
 class FifteenGame extends World {
-  // represents the rows of tiles
-  ArrayList<ArrayList<Tile>> tiles;
+  // the most images placed on a kept scene before it is rebuilt
+  // javalib scenes keep every image placed on them, so a scene that is only ever
+  // drawn over would keep growing
+  static final int MAX_PLACED_BEFORE_REBUILD = 64;
+
+  // the rules and the tiles
+  GameCore core;
+
+  // whether makeScene keeps the last scene and redraws only the cells that changed
+  boolean incrementalRendering;
+  // the scene kept between frames, or null when it must be rebuilt
+  WorldScene scene;
+  // the number of images placed on the kept scene since it was rebuilt
+  int placedSinceRebuild;
 
   // Constructor that takes in a random number
+  // the board is always solvable
   FifteenGame(Random r) {
-    ArrayList<Integer> nums = new ArrayList<Integer>(
-        Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15));
-    this.tiles = new ArrayList<ArrayList<Tile>>();
+    this(new PuzzleGenerator(r));
+  }
 
-    for (int row = 0; row < 4; row++) {
-      ArrayList<Tile> rowTiles = new ArrayList<Tile>();
+  // Constructor that takes the board from the given generator
+  FifteenGame(PuzzleGenerator generator) {
+    this(BoardShape.FOUR_BY_FOUR, generator);
+  }
 
-      for (int col = 0; col < 4; col++) {
-        // choose a random element from nums
-        int element = nums.remove(r.nextInt(nums.size()));
-        rowTiles.add(new Tile(element));
-      }
-      this.tiles.add(rowTiles);
-    }
+  // Constructor that deals a solvable board of the given shape
+  FifteenGame(BoardShape shape, Random r) {
+    this(shape, new PuzzleGenerator(r));
+  }
+
+  // Constructor that takes a board of the given shape from the given generator
+  FifteenGame(BoardShape shape, PuzzleGenerator generator) {
+    this(generator.deal(shape));
   }
 
   // Constructs a game based on a random number, unseeded
@@ -140,98 +231,222 @@ class FifteenGame extends World {
   }
 
   // Constructor that takes in an ArrayList<ArrayList<Tile>>
+  // the board has as many rows as the list, each as long as the first
   FifteenGame(ArrayList<ArrayList<Tile>> tiles) {
-    this.tiles = tiles;
+    BoardShape shape = BoardShape.of(tiles.size(), tiles.get(0).size());
+    int[] values = new int[shape.size];
+    int index = 0;
+
+    for (int i = 0; i < tiles.size(); i++) {
+      for (int j = 0; j < tiles.get(i).size(); j++) {
+        values[index] = tiles.get(i).get(j).value;
+        index++;
+      }
+    }
+    this.core = new GameCore(ABoard.create(shape, values));
   }
 
-  // draws the game
-  public WorldScene makeScene() {
-    WorldScene w = new WorldScene(400, 400);
+  // Constructor that takes in a board
+  FifteenGame(ABoard board) {
+    this(new GameCore(board));
+  }
 
-    for (int r = 0; r < 4; r++) {
-      for (int c = 0; c < 4; c++) {
-        if (this.tiles.get(r).get(c).atCorrectPosition(r, c)) {
-          // in the right position
-          w = this.tiles.get(r).get(c).drawAt(c, r, w, true);
-        }
-        else {
-          // in the wrong position
-          w = this.tiles.get(r).get(c).drawAt(c, r, w, false);
-        }
+  // Constructor that draws the given core
+  FifteenGame(GameCore core) {
+    this.core = core;
+  }
+
+  // returns the rows of tiles as an ArrayList<ArrayList<Tile>>
+  // the list is a copy, so changing it does not change the game
+  ArrayList<ArrayList<Tile>> tiles() {
+    ABoard board = this.core.board;
+    ArrayList<ArrayList<Tile>> rows = new ArrayList<ArrayList<Tile>>();
+
+    for (int row = 0; row < board.shape.rows; row++) {
+      ArrayList<Tile> rowTiles = new ArrayList<Tile>();
+
+      for (int col = 0; col < board.shape.cols; col++) {
+        rowTiles.add(new Tile(board.get(row * board.shape.cols + col)));
       }
+      rows.add(rowTiles);
     }
+    return rows;
+  }
+
+  // draws the game
+  public WorldScene makeScene() {
+    if (GameMetrics.ENABLED) {
+      return GameMetrics.GLOBAL.frame(this);
+    }
+    return this.drawScene();
+  }
+
+  // draws the game without timing it
+  // the win check comes first, so a won game draws nothing but the last scene
+  WorldScene drawScene() {
     if (this.hasWorldEnded()) {
       return this.lastScene("Over");
     }
+    if (!this.incrementalRendering) {
+      return this.drawBoard();
+    }
+
+    if (this.scene == null || this.core.changedAll
+        || this.placedSinceRebuild >= MAX_PLACED_BEFORE_REBUILD) {
+      this.scene = this.drawBoard();
+      this.core.clearChanges();
+      this.placedSinceRebuild = 0;
+    }
     else {
-      return w;
+      // each swap changed exactly two cells, so only those are drawn again
+      long changed = this.core.changedCells;
+      while (changed != 0) {
+        int index = Long.numberOfTrailingZeros(changed);
+        changed &= changed - 1;
+        this.drawCell(index, this.scene);
+        this.placedSinceRebuild++;
+      }
+      this.core.clearChanges();
     }
+    return this.scene;
+  }
+
+  // draws every cell of the board onto a new scene
+  WorldScene drawBoard() {
+    WorldScene w = new WorldScene(this.width(), this.height());
+    for (int index = 0; index < this.core.board.shape.size; index++) {
+      w = this.drawCell(index, w);
+    }
+    return w;
+  }
+
+  // draws the tile at the given index onto the scene
+  WorldScene drawCell(int index, WorldScene w) {
+    BoardShape shape = this.core.board.shape;
+    int r = index / shape.cols;
+    int c = index % shape.cols;
+    Tile tile = Tile.of(this.core.board.get(index));
+
+    if (tile.atCorrectPosition(r, c, shape.rows, shape.cols)) {
+      // in the right position
+      return tile.drawAt(c, r, w, true, shape);
+    }
+    else {
+      // in the wrong position
+      return tile.drawAt(c, r, w, false, shape);
+    }
+  }
+
+  // returns the width of the scene, 100 pixels per column
+  int width() {
+    return this.core.board.shape.cols * 100;
+  }
+
+  // returns the height of the scene, 100 pixels per row
+  int height() {
+    return this.core.board.shape.rows * 100;
+  }
+
+  // sets whether makeScene keeps the last scene and redraws only the changed cells
+  void useIncrementalRendering(boolean incremental) {
+    this.incrementalRendering = incremental;
+    this.resetScene();
+  }
+
+  // makes the next call to makeScene draw the whole board again
+  void resetScene() {
+    this.scene = null;
+    this.core.clearChanges();
+    this.placedSinceRebuild = 0;
   }
 
   // handles keystrokes
   public void onKeyEvent(String k) {
     // needs to handle up, down, left, right to move the space
-    // extra: handle "u" to undo moves
+    // handles "u" to undo moves and "r" to redo them
     // determines if the world has ended
-    ArrayUtils u = new ArrayUtils();
-    int indexOfSpace = u.findIndex(this.tiles, new Tile(0));
-    int indexOfOther = -1;
-
-    if (k.equals("right")) {
-      indexOfOther = indexOfSpace - 1;
-      if (indexOfSpace % 4 == 0) { // handles left overflow
-        indexOfOther = -1;
-      }
-    }
-    if (k.equals("left")) {
-      indexOfOther = indexOfSpace + 1;
-      if (indexOfOther % 4 == 0) { // handles right overflow
-        indexOfOther = -1;
-      }
+    if (GameMetrics.ENABLED) {
+      GameMetrics.GLOBAL.onKey(this.core, k);
     }
-    if (k.equals("up")) {
-      indexOfOther = indexOfSpace + 4;
-    }
-    if (k.equals("down")) {
-      indexOfOther = indexOfSpace - 4;
+    else {
+      this.core.onKey(k);
     }
+  }
 
-    if (indexOfOther >= 0 && indexOfOther <= 15) {
-      this.swap(indexOfSpace, indexOfOther);
-    }
+  // slides the tile next to the space in the given direction and records the move
+  // returns whether there was a tile to slide
+  boolean move(Direction d) {
+    return this.core.move(d);
+  }
+
+  // makes the moves of the given "UDLR" letters until one is not legal
+  // returns what happened, in the given result
+  MoveResult applyMoves(CharSequence letters, MoveResult result) {
+    return this.core.applyMoves(letters, result);
+  }
+
+  // makes the first given number of packed moves until one is not legal
+  // returns what happened, in the given result
+  MoveResult applyMoves(byte[] packed, int count, MoveResult result) {
+    return this.core.applyMoves(packed, count, result);
+  }
+
+  // returns the first move of an optimal solution, looked up in the given cache
+  // before solving, or null if the board is solved
+  Direction hint(HintCache hints) {
+    return HintCache.move(hints.hint(this.core.board));
+  }
+
+  // takes back the last move
+  // returns whether there was a move to take back
+  boolean undo() {
+    return this.core.undo();
+  }
+
+  // makes the last move that was taken back again
+  // returns whether there was a move to make
+  boolean redo() {
+    return this.core.redo();
+  }
+
+  // changes the board to the one after the given number of moves of the history
+  void jumpTo(long index) {
+    this.core.jumpTo(index);
+    this.resetScene();
   }
 
   // swaps two tiles by their indexes
-  // indexes are numbers from 0 to 15
+  // indexes are numbers from 0 to the number of cells - 1
   public void swap(int index1, int index2) {
-    int row1 = index1 / 4;
-    int col1 = index1 - (row1 * 4);
-    int row2 = index2 / 4;
-    int col2 = index2 - (row2 * 4);
-
-    Tile tile1 = this.tiles.get(row1).get(col1);
-    Tile tile2 = this.tiles.get(row2).get(col2);
-    this.tiles.get(row1).set(col1, tile2);
-    this.tiles.get(row2).set(col2, tile1);
+    if (GameMetrics.ENABLED) {
+      GameMetrics.GLOBAL.swap(this.core, index1, index2);
+    }
+    else {
+      this.core.swap(index1, index2);
+    }
   }
 
   // Checks whether the world has ended
   public boolean hasWorldEnded() {
-    for (int i = 0; i < this.tiles.size(); i++) {
-      for (int j = 0; j < this.tiles.get(i).size(); j++) {
-        if (!(this.tiles.get(i).get(j).atCorrectPosition(i, j))) {
-          return false;
-        }
-      }
+    if (GameMetrics.ENABLED) {
+      return GameMetrics.GLOBAL.winCheck(this.core);
     }
-    return true;
+    return this.core.isWon();
+  }
+
+  // returns how many tiles (the space included) are not at their correct position
+  // this is kept up to date by swap, so it is cheap enough to poll as a progress metric
+  int misplacedTiles() {
+    return this.core.misplacedTiles();
   }
 
   // End of world
   public WorldScene lastScene(String msg) {
-    WorldScene w = new WorldScene(400, 400);
-    w.placeImageXY(new RectangleImage(300, 200, OutlineMode.SOLID, Color.PINK), 200, 200);
-    w.placeImageXY(new TextImage("You won!", 30, Color.black), 200, 200);
+    WorldScene w = new WorldScene(this.width(), this.height());
+    w.placeImageXY(new RectangleImage(300, 200, OutlineMode.SOLID, Color.PINK), this.width() / 2,
+        this.height() / 2);
+    w.placeImageXY(new TextImage("You won!", 30, Color.black), this.width() / 2,
+        this.height() / 2);
     return w;
   }
 }
@@ -252,7 +467,7 @@ class Examples {
   WorldScene initWorld;
 
   void initData() {
-    this.fifteenGame = new FifteenGame(new Random(20));
+    this.fifteenGame = new FifteenGame(new PuzzleGenerator(new Random(20), true));
     this.tiles = new ArrayList<ArrayList<Tile>>();
 
     ArrayList<Tile> row1 = new ArrayList<Tile>(
@@ -327,9 +542,16 @@ class Examples {
       this.tiles.add(rowTiles);
     }
 
-    t.checkExpect(this.fifteenGame.tiles, this.tiles);
-    t.checkExpect(this.fifteenGame.tiles.size(), 4);
-    t.checkExpect(this.fifteenGame.tiles.get(0).size(), 4);
+    t.checkExpect(this.fifteenGame.tiles(), this.tiles);
+    t.checkExpect(this.fifteenGame.tiles().size(), 4);
+    t.checkExpect(this.fifteenGame.tiles().get(0).size(), 4);
+  }
+
+  // tests that random games can be solved
+  void testConstructorSolvable(Tester t) {
+    for (int seed = 0; seed < 100; seed++) {
+      t.checkExpect(new FifteenGame(new Random(seed)).core.board.isSolvable(), true);
+    }
   }
 
   // tests for swap
@@ -348,10 +570,10 @@ class Examples {
     ArrayList<ArrayList<Tile>> tilesAfterSwap = new ArrayList<ArrayList<Tile>>(
         Arrays.asList(row1, row2, row3, row4));
 
-    t.checkExpect(this.gameWithOrderedTiles.tiles, tilesAfterSwap);
+    t.checkExpect(this.gameWithOrderedTiles.tiles(), tilesAfterSwap);
 
     this.gameWithOrderedTiles.swap(0, 0);
-    t.checkExpect(this.gameWithOrderedTiles.tiles, tilesAfterSwap);
+    t.checkExpect(this.gameWithOrderedTiles.tiles(), tilesAfterSwap);
 
     this.gameWithOrderedTiles.swap(12, 15);
     row1 = new ArrayList<Tile>(Arrays.asList(new Tile(13), new Tile(1), new Tile(2), new Tile(3)));
@@ -361,7 +583,20 @@ class Examples {
         Arrays.asList(new Tile(15), new Tile(0), new Tile(14), new Tile(12)));
     tilesAfterSwap = new ArrayList<ArrayList<Tile>>(Arrays.asList(row1, row2, row3, row4));
 
-    t.checkExpect(this.gameWithOrderedTiles.tiles, tilesAfterSwap);
+    t.checkExpect(this.gameWithOrderedTiles.tiles(), tilesAfterSwap);
+  }
+
+  // tests for the tiles view
+  void testTiles(Tester t) {
+    this.initData();
+    t.checkExpect(this.gameComplete.tiles(), this.tiles3);
+    t.checkExpect(this.game1.tiles(), this.tiles4);
+    t.checkExpect(this.game1.core.board.blank, 1);
+
+    // changing the view does not change the game
+    this.gameComplete.tiles().get(0).set(0, new Tile(5));
+    t.checkExpect(this.gameComplete.tiles(), this.tiles3);
+    t.checkExpect(this.gameComplete.core.board.isSolved(), true);
   }
 
   // tests for convertIndexToCoord
@@ -375,6 +610,9 @@ class Examples {
         "convertIndexToCoord", -1);
     t.checkException(new IllegalArgumentException("Index should be between 0 and 4"), c,
         "convertIndexToCoord", 5);
+    t.checkExpect(c.convertIndexToCoord(5, 6), 550);
+    t.checkException(new IllegalArgumentException("Index should be between 0 and 3"), c,
+        "convertIndexToCoord", 4, 3);
   }
 
   // test drawTile
@@ -434,6 +672,20 @@ class Examples {
     t.checkExpect(new Tile(1).drawAt(1, 2, new WorldScene(400, 400), false), this.initWorld);
   }
 
+  // test the shared tiles and images
+  void testSprites(Tester t) {
+    t.checkExpect(Tile.of(9), new Tile(9));
+    t.checkExpect(Tile.of(9) == Tile.of(9), true);
+    t.checkExpect(Tile.of(20), new Tile(20));
+    t.checkExpect(new Tile(9).sprite(true), new Tile(9).drawTile(true));
+    t.checkExpect(new Tile(0).sprite(false), new Tile(0).drawTile(false));
+    t.checkExpect(new Tile(15).sprite(false), new Tile(15).drawTile(false));
+    t.checkExpect(new Tile(20).sprite(true), new Tile(20).drawTile(true));
+    // every tile with the same value and position shares one image
+    t.checkExpect(new Tile(9).sprite(true) == new Tile(9).sprite(true), true);
+    t.checkExpect(new Tile(9).sprite(true) == new Tile(9).sprite(false), false);
+  }
+
   // test atCorrectPosition
   void testAtCorrectPos(Tester t) {
     t.checkExpect(new Tile(0).atCorrectPosition(3, 3), true);
@@ -448,6 +700,10 @@ class Examples {
     t.checkExpect(new Tile(1).atCorrectPosition(1, 0), false);
     t.checkExpect(new Tile(7).atCorrectPosition(1, 2), true);
     t.checkExpect(new Tile(7).atCorrectPosition(4, 5), false);
+    t.checkExpect(new Tile(0).atCorrectPosition(2, 2, 3, 3), true);
+    t.checkExpect(new Tile(0).atCorrectPosition(3, 3, 3, 3), false);
+    t.checkExpect(new Tile(7).atCorrectPosition(1, 1, 3, 3), false);
+    t.checkExpect(new Tile(7).atCorrectPosition(1, 0, 5, 6), true);
   }
 
   // test makeScene
@@ -500,6 +756,43 @@ class Examples {
             false));
   }
 
+  // test incremental rendering
+  void testIncrementalScene(Tester t) {
+    this.initData();
+    this.game1.useIncrementalRendering(true);
+    WorldScene first = this.game1.makeScene();
+    t.checkExpect(first, new FifteenGame(this.tiles4).makeScene());
+    t.checkExpect(first, this.game1.drawBoard());
+
+    // nothing moved, so nothing is drawn
+    t.checkExpect(this.game1.makeScene() == first, true);
+    t.checkExpect(this.game1.placedSinceRebuild, 0);
+
+    // only the two swapped cells are drawn over the kept scene
+    WorldScene expected = this.game1.drawBoard();
+    this.game1.onKeyEvent("up");
+    expected = this.game1.drawCell(5, this.game1.drawCell(1, expected));
+    t.checkExpect(this.game1.makeScene() == first, true);
+    t.checkExpect(first, expected);
+    t.checkExpect(this.game1.placedSinceRebuild, 2);
+    t.checkExpect(this.game1.core.changedCells, 0L);
+
+    // the kept scene is rebuilt once it holds too many images
+    for (int i = 0; i < FifteenGame.MAX_PLACED_BEFORE_REBUILD / 2; i++) {
+      this.game1.onKeyEvent("down");
+      this.game1.onKeyEvent("up");
+      this.game1.makeScene();
+    }
+    WorldScene rebuilt = this.game1.makeScene();
+    t.checkExpect(rebuilt == first, false);
+    t.checkExpect(rebuilt, this.game1.drawBoard());
+
+    // a won game shows the last scene without drawing the board
+    this.gameComplete.useIncrementalRendering(true);
+    t.checkExpect(this.gameComplete.makeScene(), this.gameComplete.lastScene("Over"));
+    t.checkExpect(this.gameComplete.scene, null);
+  }
+
   // tests findIndex
   void testFindIndex(Tester t) {
     this.initData();
@@ -536,9 +829,9 @@ class Examples {
   void testOnKey(Tester t) {
     this.initData();
     this.gameWithOrderedTiles.onKeyEvent("right");
-    t.checkExpect(this.gameWithOrderedTiles.tiles, this.tiles2);
+    t.checkExpect(this.gameWithOrderedTiles.tiles(), this.tiles2);
     this.gameWithOrderedTiles.onKeyEvent("down");
-    t.checkExpect(this.gameWithOrderedTiles.tiles, this.tiles2);
+    t.checkExpect(this.gameWithOrderedTiles.tiles(), this.tiles2);
 
     ArrayList<Tile> row1 = new ArrayList<Tile>(
         Arrays.asList(new Tile(4), new Tile(1), new Tile(2), new Tile(3)));
@@ -551,7 +844,7 @@ class Examples {
     ArrayList<ArrayList<Tile>> tilesNew = new ArrayList<ArrayList<Tile>>(
         Arrays.asList(row1, row2, row3, row4));
     this.gameWithOrderedTiles.onKeyEvent("up");
-    t.checkExpect(this.gameWithOrderedTiles.tiles, tilesNew);
+    t.checkExpect(this.gameWithOrderedTiles.tiles(), tilesNew);
 
     row1 = new ArrayList<Tile>(Arrays.asList(new Tile(4), new Tile(1), new Tile(2), new Tile(3)));
     row2 = new ArrayList<Tile>(Arrays.asList(new Tile(5), new Tile(0), new Tile(6), new Tile(7)));
@@ -560,12 +853,12 @@ class Examples {
         Arrays.asList(new Tile(12), new Tile(13), new Tile(14), new Tile(15)));
     tilesNew = new ArrayList<ArrayList<Tile>>(Arrays.asList(row1, row2, row3, row4));
     this.gameWithOrderedTiles.onKeyEvent("left");
-    t.checkExpect(this.gameWithOrderedTiles.tiles, tilesNew);
+    t.checkExpect(this.gameWithOrderedTiles.tiles(), tilesNew);
 
     this.gameComplete.onKeyEvent("left");
-    t.checkExpect(this.gameComplete.tiles, this.tiles3);
+    t.checkExpect(this.gameComplete.tiles(), this.tiles3);
     this.gameComplete.onKeyEvent("up");
-    t.checkExpect(this.gameComplete.tiles, this.tiles3);
+    t.checkExpect(this.gameComplete.tiles(), this.tiles3);
 
     row1 = new ArrayList<Tile>(Arrays.asList(new Tile(1), new Tile(2), new Tile(3), new Tile(4)));
     row2 = new ArrayList<Tile>(Arrays.asList(new Tile(5), new Tile(6), new Tile(7), new Tile(8)));
@@ -574,7 +867,7 @@ class Examples {
         Arrays.asList(new Tile(13), new Tile(14), new Tile(15), new Tile(12)));
     tilesNew = new ArrayList<ArrayList<Tile>>(Arrays.asList(row1, row2, row3, row4));
     this.gameComplete.onKeyEvent("down");
-    t.checkExpect(this.gameComplete.tiles, tilesNew);
+    t.checkExpect(this.gameComplete.tiles(), tilesNew);
 
     row1 = new ArrayList<Tile>(Arrays.asList(new Tile(1), new Tile(2), new Tile(3), new Tile(4)));
     row2 = new ArrayList<Tile>(Arrays.asList(new Tile(5), new Tile(6), new Tile(7), new Tile(8)));
@@ -583,7 +876,114 @@ class Examples {
         Arrays.asList(new Tile(13), new Tile(14), new Tile(15), new Tile(12)));
     tilesNew = new ArrayList<ArrayList<Tile>>(Arrays.asList(row1, row2, row3, row4));
     this.gameComplete.onKeyEvent("right");
-    t.checkExpect(this.gameComplete.tiles, tilesNew);
+    t.checkExpect(this.gameComplete.tiles(), tilesNew);
+  }
+
+  // test move
+  void testMove(Tester t) {
+    this.initData();
+    t.checkExpect(this.gameComplete.move(Direction.UP), false);
+    t.checkExpect(this.gameComplete.move(Direction.LEFT), false);
+    t.checkExpect(this.gameComplete.move(Direction.DOWN), true);
+    t.checkExpect(this.gameComplete.core.board.blank, 11);
+    t.checkExpect(this.gameComplete.move(Direction.UP), true);
+    t.checkExpect(this.gameComplete.tiles(), this.tiles3);
+
+    // keys that are not moves are ignored
+    this.gameComplete.onKeyEvent("a");
+    t.checkExpect(this.gameComplete.tiles(), this.tiles3);
+  }
+
+  // tests for boards of other shapes
+  void testOtherShapes(Tester t) {
+    ArrayList<ArrayList<Tile>> three = new ArrayList<ArrayList<Tile>>(Arrays.asList(
+        new ArrayList<Tile>(Arrays.asList(new Tile(1), new Tile(2), new Tile(3))),
+        new ArrayList<Tile>(Arrays.asList(new Tile(4), new Tile(5), new Tile(6))),
+        new ArrayList<Tile>(Arrays.asList(new Tile(7), new Tile(0), new Tile(8)))));
+    FifteenGame game = new FifteenGame(three);
+    t.checkExpect(game.core.board.shape.sameShape(new BoardShape(3, 3)), true);
+    t.checkExpect(game.tiles(), three);
+    t.checkExpect(game.width(), 300);
+    t.checkExpect(game.hasWorldEnded(), false);
+    t.checkExpect(game.misplacedTiles(), 2);
+
+    WorldScene expected = new WorldScene(300, 300);
+    expected.placeImageXY(new Tile(1).drawTile(true), 50, 50);
+    expected.placeImageXY(new Tile(2).drawTile(true), 150, 50);
+    expected.placeImageXY(new Tile(3).drawTile(true), 250, 50);
+    expected.placeImageXY(new Tile(4).drawTile(true), 50, 150);
+    expected.placeImageXY(new Tile(5).drawTile(true), 150, 150);
+    expected.placeImageXY(new Tile(6).drawTile(true), 250, 150);
+    expected.placeImageXY(new Tile(7).drawTile(true), 50, 250);
+    expected.placeImageXY(new Tile(0).drawTile(false), 150, 250);
+    expected.placeImageXY(new Tile(8).drawTile(false), 250, 250);
+    t.checkExpect(game.makeScene(), expected);
+
+    t.checkExpect(game.move(Direction.DOWN), true);
+    t.checkExpect(game.core.board.blank, 4);
+    t.checkExpect(game.move(Direction.UP), true);
+    t.checkExpect(game.move(Direction.LEFT), true);
+    t.checkExpect(game.hasWorldEnded(), true);
+    t.checkExpect(game.move(Direction.LEFT), false);
+
+    WorldScene won = new WorldScene(300, 300);
+    won.placeImageXY(new RectangleImage(300, 200, OutlineMode.SOLID, Color.PINK), 150, 150);
+    won.placeImageXY(new TextImage("You won!", 30, Color.black), 150, 150);
+    t.checkExpect(game.makeScene(), won);
+
+    // a 6x6 game keeps its tiles in bytes and still redraws only the swapped cells
+    FifteenGame large = new FifteenGame(new BoardShape(6, 6), new Random(3));
+    t.checkExpect(large.core.board instanceof ByteBoard, true);
+    t.checkExpect(large.core.board.isSolvable(), true);
+    t.checkExpect(large.height(), 600);
+    large.useIncrementalRendering(true);
+    WorldScene first = large.makeScene();
+    WorldScene expectedLarge = large.drawBoard();
+    int space = large.core.board.blank;
+    large.onKeyEvent(space < 6 ? "up" : "down");
+    expectedLarge = large.drawCell(large.core.board.blank, large.drawCell(space, expectedLarge));
+    t.checkExpect(large.makeScene() == first, true);
+    t.checkExpect(first, expectedLarge);
+    t.checkExpect(large.placedSinceRebuild, 2);
+  }
+
+  // test undo and redo
+  void testUndoRedo(Tester t) {
+    this.initData();
+    t.checkExpect(this.gameComplete.undo(), false);
+    this.gameComplete.onKeyEvent("down");
+    this.gameComplete.onKeyEvent("right");
+    this.gameComplete.onKeyEvent("left");
+    // a move off the board is not recorded
+    this.gameComplete.onKeyEvent("left");
+    t.checkExpect(this.gameComplete.core.history.undoable(), 3L);
+
+    this.gameComplete.onKeyEvent("u");
+    this.gameComplete.onKeyEvent("u");
+    t.checkExpect(this.gameComplete.core.board.blank, 11);
+    this.gameComplete.onKeyEvent("u");
+    t.checkExpect(this.gameComplete.tiles(), this.tiles3);
+    t.checkExpect(this.gameComplete.undo(), false);
+
+    this.gameComplete.onKeyEvent("r");
+    t.checkExpect(this.gameComplete.tiles(), this.tilesNew);
+    t.checkExpect(this.gameComplete.redo(), true);
+    t.checkExpect(this.gameComplete.redo(), true);
+    t.checkExpect(this.gameComplete.redo(), false);
+    t.checkExpect(this.gameComplete.tiles(), this.tilesNew);
+
+    // jumping redraws the whole board
+    this.gameComplete.useIncrementalRendering(true);
+    this.gameComplete.makeScene();
+    this.gameComplete.jumpTo(0);
+    t.checkExpect(this.gameComplete.hasWorldEnded(), true);
+    t.checkExpect(this.gameComplete.scene, null);
+    this.gameComplete.jumpTo(1);
+    t.checkExpect(this.gameComplete.tiles(), this.tilesNew);
+
+    // a swap that is not a move starts the history over
+    this.gameComplete.swap(0, 1);
+    t.checkExpect(this.gameComplete.undo(), false);
   }
 
   // testing hasWorldEnded
@@ -595,6 +995,20 @@ class Examples {
     t.checkExpect(this.gameComplete.hasWorldEnded(), true);
   }
 
+  // testing misplacedTiles
+  void testMisplacedTiles(Tester t) {
+    this.initData();
+    t.checkExpect(this.gameComplete.misplacedTiles(), 0);
+    t.checkExpect(this.gameWithOrderedTiles.misplacedTiles(), 16);
+    t.checkExpect(this.game1.misplacedTiles(), 14);
+    this.gameComplete.onKeyEvent("down");
+    t.checkExpect(this.gameComplete.misplacedTiles(), 2);
+    t.checkExpect(this.gameComplete.hasWorldEnded(), false);
+    this.gameComplete.onKeyEvent("up");
+    t.checkExpect(this.gameComplete.misplacedTiles(), 0);
+    t.checkExpect(this.gameComplete.hasWorldEnded(), true);
+  }
+
   // testing lastScene
   void testLastScene(Tester t) {
     this.initData();
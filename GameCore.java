@@ -0,0 +1,260 @@
+import java.util.Random;
+import tester.*;
+
+//The rules of the game, with no drawing and no dependency on javalib
+//FifteenGame draws a core in a World; simulations drive cores directly
+//the core remembers which cells changed so a view can redraw only those
+class GameCore {
+  // the tiles
+  ABoard board;
+  // whether moves are recorded for undo and redo
+  boolean recording;
+  // the moves made so far, or null before the first recorded move
+  MoveLog history;
+
+  // the cells swapped since the last call to clearChanges, one bit per index
+  long changedCells;
+  // whether a cell the mask cannot hold changed, or the board was replaced
+  boolean changedAll;
+
+  // the journal every swap is appended to, or null
+  GameJournal journal;
+  // the id of this game in the journal
+  int journalSession;
+
+  // Constructor that takes in the board and records moves
+  GameCore(ABoard board) {
+    this(board, true);
+  }
+
+  // Constructor that takes in the board and whether to record moves
+  // simulations that never undo can skip the log
+  GameCore(ABoard board, boolean recording) {
+    this.board = board;
+    this.recording = recording;
+  }
+
+  // Constructor that deals a solvable board of the given shape from the generator
+  GameCore(BoardShape shape, PuzzleGenerator generator) {
+    this(generator.deal(shape));
+  }
+
+  // Constructor that deals a solvable 4x4 board from the given random number
+  GameCore(Random r) {
+    this(BoardShape.FOUR_BY_FOUR, new PuzzleGenerator(r));
+  }
+
+  // handles a key: a direction moves a tile, "u" undoes a move and "r" redoes one
+  // returns whether the board changed
+  boolean onKey(String k) {
+    Direction d = Direction.fromKey(k);
+    if (d != null) {
+      return this.move(d);
+    }
+    else if (k.equals("u")) {
+      return this.undo();
+    }
+    else if (k.equals("r")) {
+      return this.redo();
+    }
+    else {
+      return false;
+    }
+  }
+
+  // slides the tile next to the space in the given direction and records the move
+  // returns whether there was a tile to slide
+  boolean move(Direction d) {
+    MoveLog log = this.recording ? this.history() : null;
+    if (this.slide(d)) {
+      if (log != null) {
+        log.record(d, this.board);
+      }
+      return true;
+    }
+    else {
+      return false;
+    }
+  }
+
+  // makes the moves of the given "UDLR" letters in order, like onKey with their keys,
+  // stopping at the first letter that is not a move or has no tile to slide, and
+  // puts the outcome in the given result, which is returned
+  MoveResult applyMoves(CharSequence letters, MoveResult result) {
+    result.reset(this.isWon());
+    for (int i = 0; i < letters.length(); i++) {
+      int d = MoveSequence.direction(letters.charAt(i));
+      if (d < 0 || !this.move(Direction.ALL[d])) {
+        result.illegalAt = i;
+        break;
+      }
+      result.moved(this.isWon());
+    }
+    return result;
+  }
+
+  // makes the first given number of moves of the given packed sequence in order,
+  // stopping at the first that has no tile to slide, and puts the outcome in the
+  // given result, which is returned
+  MoveResult applyMoves(byte[] packed, int count, MoveResult result) {
+    if (count < 0 || count > packed.length * 4) {
+      throw new IllegalArgumentException("Expected from 0 to " + packed.length * 4 + " moves");
+    }
+    result.reset(this.isWon());
+    for (int i = 0; i < count; i++) {
+      if (!this.move(Direction.ALL[MoveSequence.direction(packed, i)])) {
+        result.illegalAt = i;
+        break;
+      }
+      result.moved(this.isWon());
+    }
+    return result;
+  }
+
+  // slides the tile next to the space in the given direction without recording it
+  // returns whether there was a tile to slide
+  boolean slide(Direction d) {
+    int indexOfSpace = this.board.blank;
+    int indexOfOther = this.board.shape.neighbors[(indexOfSpace << 2) | d.ordinal()];
+
+    if (indexOfOther < 0) {
+      return false;
+    }
+    else {
+      this.swapCells(indexOfSpace, indexOfOther);
+      return true;
+    }
+  }
+
+  // returns the log of moves, starting it from the current board if there is none
+  MoveLog history() {
+    if (this.history == null) {
+      this.history = new MoveLog(this.board);
+    }
+    return this.history;
+  }
+
+  // takes back the last move
+  // returns whether there was a move to take back
+  boolean undo() {
+    Direction d = this.history == null ? null : this.history.undo();
+    return d != null && this.slide(d.opposite());
+  }
+
+  // makes the last move that was taken back again
+  // returns whether there was a move to make
+  boolean redo() {
+    Direction d = this.history == null ? null : this.history.redo();
+    return d != null && this.slide(d);
+  }
+
+  // changes the board to the one after the given number of moves of the history
+  void jumpTo(long index) {
+    this.history().jumpTo(index, this.board);
+    this.changedAll = true;
+    if (this.journal != null) {
+      this.journal.start(this.journalSession, this.board);
+    }
+  }
+
+  // swaps two tiles by their indexes
+  // a swap is not a move the history can replay, so the history starts over, in
+  // the room the log already has
+  void swap(int index1, int index2) {
+    this.swapCells(index1, index2);
+    if (this.history != null) {
+      this.history.restart(this.board);
+    }
+  }
+
+  // swaps two tiles by their indexes and marks them as changed
+  void swapCells(int index1, int index2) {
+    this.board.swap(index1, index2);
+    if (index1 < 64 && index2 < 64) {
+      this.changedCells |= (1L << index1) | (1L << index2);
+    }
+    else {
+      this.changedAll = true;
+    }
+    if (this.journal != null) {
+      this.journal.swap(this.journalSession, index1, index2);
+    }
+  }
+
+  // appends the current board and every later swap to the given journal as the
+  // given session
+  void attachJournal(GameJournal journal, int session) {
+    this.journal = journal;
+    this.journalSession = session;
+    journal.start(session, this.board);
+  }
+
+  // forgets which cells changed
+  void clearChanges() {
+    this.changedCells = 0;
+    this.changedAll = false;
+  }
+
+  // returns whether every tile is at its correct position
+  boolean isWon() {
+    return this.board.misplaced == 0;
+  }
+
+  // returns how many tiles (the space included) are not at their correct position
+  int misplacedTiles() {
+    return this.board.misplaced;
+  }
+}
+
+class ExamplesGameCore {
+  GameCore core;
+
+  void initData() {
+    this.core = new GameCore(new PackedBoard(PackedBoard.SOLVED));
+  }
+
+  // tests for onKey
+  void testOnKey(Tester t) {
+    this.initData();
+    t.checkExpect(this.core.onKey("up"), false);
+    t.checkExpect(this.core.onKey("down"), true);
+    t.checkExpect(this.core.board.blank, 11);
+    t.checkExpect(this.core.isWon(), false);
+    t.checkExpect(this.core.misplacedTiles(), 2);
+    t.checkExpect(this.core.onKey("x"), false);
+    t.checkExpect(this.core.onKey("u"), true);
+    t.checkExpect(this.core.isWon(), true);
+    t.checkExpect(this.core.onKey("u"), false);
+    t.checkExpect(this.core.onKey("r"), true);
+    t.checkExpect(this.core.board.blank, 11);
+  }
+
+  // tests for the changed cells
+  void testChanges(Tester t) {
+    this.initData();
+    this.core.move(Direction.RIGHT);
+    t.checkExpect(this.core.changedCells, (1L << 15) | (1L << 14));
+    this.core.clearChanges();
+    t.checkExpect(this.core.changedCells, 0L);
+    this.core.jumpTo(0);
+    t.checkExpect(this.core.changedAll, true);
+    t.checkExpect(this.core.isWon(), true);
+  }
+
+  // tests that a core that does not record keeps no history
+  void testRecording(Tester t) {
+    GameCore quiet = new GameCore(new PackedBoard(PackedBoard.SOLVED), false);
+    t.checkExpect(quiet.move(Direction.DOWN), true);
+    t.checkExpect(quiet.history, null);
+    t.checkExpect(quiet.undo(), false);
+
+    this.initData();
+    this.core.move(Direction.DOWN);
+    MoveLog log = this.core.history;
+    this.core.swap(0, 1);
+    t.checkExpect(this.core.history == log, true);
+    t.checkExpect(this.core.history.undoable(), 0L);
+    t.checkExpect(this.core.undo(), false);
+    t.checkExpect(this.core.misplacedTiles(), 4);
+  }
+}
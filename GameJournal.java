@@ -0,0 +1,455 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import tester.*;
+
+//Appends the boards and swaps of game sessions to a binary file
+//the file starts with MAGIC and VERSION, then holds records of two kinds:
+//  START  1, session (int), rows, cols, one byte per cell    a session's board
+//  SWAP   2, session (int), index1, index2                   7 bytes per swap
+//a START for a session that already started replaces its board, which is how a
+//jump through the history is recorded
+//records are gathered in memory, so recording a swap costs a lock and a few bytes;
+//they reach the file when the buffer fills, on flush, and on every sync, and a
+//record cut short by a crash is dropped when the journal is opened again
+class GameJournal implements AutoCloseable {
+  // the first bytes of every journal file, "FJNL"
+  static final int MAGIC = 0x464A4E4C;
+  // the version of the file format
+  static final int VERSION = 1;
+  // the number of bytes before the first record
+  static final int HEADER_SIZE = 8;
+  // the kinds of record
+  static final byte START = 1;
+  static final byte SWAP = 2;
+  // the number of bytes in a swap record, and in a start record before its cells
+  static final int SWAP_SIZE = 7;
+  static final int START_SIZE = 7;
+  // the number of bytes of records gathered before they are written
+  static final int BUFFER_SIZE = 1 << 16;
+
+  // pass as the sync interval to force every record to disk before returning
+  static final long SYNC_EVERY_RECORD = 0;
+  // pass as the sync interval to leave writing to disk to the operating system
+  static final long NO_SYNC = -1;
+
+  // the file being appended to
+  FileChannel channel;
+  // the records not yet written to the file
+  ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  // the milliseconds between group commits, or SYNC_EVERY_RECORD or NO_SYNC
+  long syncMillis;
+  // forces the file to disk every syncMillis, or null
+  ScheduledExecutorService syncer;
+  // the error the syncer ran into, reported by the next record
+  volatile IOException failure;
+
+  // Constructor that opens the given journal for appending, creating it if needed
+  // with a positive interval, the records of that many milliseconds share one
+  // force to disk
+  GameJournal(Path file, long syncMillis) throws IOException {
+    this.syncMillis = syncMillis;
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+
+    if (this.channel.size() == 0) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+      header.putInt(MAGIC).putInt(VERSION).flip();
+      this.channel.write(header);
+    }
+    else {
+      // drop a record cut short by a crash, so new records follow the last whole one
+      this.channel.truncate(new JournalReader(file).end);
+    }
+    this.channel.position(this.channel.size());
+
+    if (syncMillis > 0) {
+      this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "GameJournal sync");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.syncer.scheduleWithFixedDelay(this::syncQuietly, syncMillis, syncMillis,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  // records the board a session starts from, or jumped to
+  void start(int session, ABoard board) {
+    int size = board.shape.size;
+    synchronized (this) {
+      this.reserve(START_SIZE + size);
+      this.buffer.put(START).putInt(session).put((byte) board.shape.rows)
+          .put((byte) board.shape.cols);
+      for (int index = 0; index < size; index++) {
+        this.buffer.put((byte) board.get(index));
+      }
+      this.recorded();
+    }
+  }
+
+  // records a swap of two cells of a session's board
+  void swap(int session, int index1, int index2) {
+    synchronized (this) {
+      this.reserve(SWAP_SIZE);
+      this.buffer.put(SWAP).putInt(session).put((byte) index1).put((byte) index2);
+      this.recorded();
+    }
+  }
+
+  // makes room in the buffer for a record of the given size
+  // the caller holds the lock
+  void reserve(int size) {
+    if (this.failure != null) {
+      throw new UncheckedIOException(this.failure);
+    }
+    if (this.buffer.remaining() < size) {
+      try {
+        this.write();
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  // forces the record just added to disk if every record must be
+  // the caller holds the lock
+  void recorded() {
+    if (this.syncMillis == SYNC_EVERY_RECORD) {
+      try {
+        this.write();
+        this.channel.force(false);
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  // writes the gathered records to the file
+  // the caller holds the lock
+  void write() throws IOException {
+    this.buffer.flip();
+    while (this.buffer.hasRemaining()) {
+      this.channel.write(this.buffer);
+    }
+    this.buffer.clear();
+  }
+
+  // writes the gathered records to the file, without waiting for the disk
+  synchronized void flush() throws IOException {
+    this.write();
+  }
+
+  // writes the gathered records and forces the file to disk
+  // records made while the disk catches up wait only for the lock, not the force
+  void sync() throws IOException {
+    this.flush();
+    this.channel.force(false);
+  }
+
+  // syncs on the syncer thread, keeping the error for the next record
+  void syncQuietly() {
+    try {
+      this.sync();
+    }
+    catch (IOException e) {
+      this.failure = e;
+    }
+  }
+
+  // syncs the journal and closes the file
+  public void close() throws IOException {
+    if (this.syncer != null) {
+      this.syncer.shutdown();
+      try {
+        this.syncer.awaitTermination(1, TimeUnit.MINUTES);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    try {
+      if (this.syncMillis == NO_SYNC) {
+        this.flush();
+      }
+      else {
+        this.sync();
+      }
+    }
+    finally {
+      this.channel.close();
+    }
+  }
+}
+
+//Replays the sessions of a journal from a memory-mapped file
+//opening the reader indexes the first record of every session, so replaying one
+//reads only from there on
+class JournalReader {
+  // the mapped file
+  MappedByteBuffer data;
+  // the offset just past the last whole record
+  int end;
+  // the offset of the first record of every session
+  HashMap<Integer, Integer> firstRecords = new HashMap<Integer, Integer>();
+  // the number of swaps recorded for every session
+  HashMap<Integer, Long> swapCounts = new HashMap<Integer, Long>();
+
+  // Constructor that maps and indexes the given journal
+  JournalReader(Path file) throws IOException {
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (in.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Journal is too large to map: " + file);
+      }
+      this.data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+    }
+
+    if (this.data.limit() < GameJournal.HEADER_SIZE || this.data.getInt(0) != GameJournal.MAGIC
+        || this.data.getInt(4) != GameJournal.VERSION) {
+      throw new IllegalArgumentException("Not a journal file: " + file);
+    }
+
+    int offset = GameJournal.HEADER_SIZE;
+    int size = this.recordSize(offset);
+    while (size > 0) {
+      int session = this.data.getInt(offset + 1);
+      if (this.data.get(offset) == GameJournal.SWAP) {
+        this.swapCounts.merge(session, 1L, Long::sum);
+      }
+      else {
+        this.firstRecords.putIfAbsent(session, offset);
+      }
+      offset += size;
+      size = this.recordSize(offset);
+    }
+    this.end = offset;
+  }
+
+  // returns the size of the whole record at the given offset, or 0 if there is none
+  // a record cut short, or of a kind that is not known, ends the journal
+  int recordSize(int offset) {
+    int left = this.data.limit() - offset;
+    if (left < GameJournal.SWAP_SIZE) {
+      return 0;
+    }
+    byte kind = this.data.get(offset);
+    if (kind == GameJournal.SWAP) {
+      return GameJournal.SWAP_SIZE;
+    }
+    else if (kind == GameJournal.START) {
+      int size = GameJournal.START_SIZE
+          + (this.data.get(offset + 5) & 0xFF) * (this.data.get(offset + 6) & 0xFF);
+      return size <= left ? size : 0;
+    }
+    else {
+      return 0;
+    }
+  }
+
+  // returns the ids of every session in the journal
+  Set<Integer> sessions() {
+    return this.firstRecords.keySet();
+  }
+
+  // returns the number of swaps recorded for the given session
+  long swaps(int session) {
+    return this.swapCounts.getOrDefault(session, 0L);
+  }
+
+  // returns the last board of the given session
+  ABoard replay(int session) {
+    return this.replay(session, this.swaps(session));
+  }
+
+  // returns the board of the given session after its first given number of swaps
+  // a jump recorded after the last of those swaps is included
+  ABoard replay(int session, long swaps) {
+    return this.replay(session, swaps, null);
+  }
+
+  // returns the number of different boards the given session passed through
+  // a session that keeps coming back to the same boards is going around in circles
+  int distinctBoards(int session) {
+    LongHashSet seen = new LongHashSet();
+    this.replay(session, this.swaps(session), seen);
+    return seen.size();
+  }
+
+  // returns the board of the given session after its first given number of swaps,
+  // adding the hash of every board on the way to the given set unless it is null
+  ABoard replay(int session, long swaps, LongHashSet seen) {
+    Integer first = this.firstRecords.get(session);
+    if (first == null) {
+      throw new IllegalArgumentException("No session " + session);
+    }
+    if (swaps < 0 || swaps > this.swaps(session)) {
+      throw new IllegalArgumentException("Session " + session + " has " + this.swaps(session)
+          + " swaps");
+    }
+
+    ABoard board = this.board(first);
+    if (seen != null) {
+      seen.add(board.hash);
+    }
+    long done = 0;
+    int offset = first + this.recordSize(first);
+    while (offset < this.end) {
+      byte kind = this.data.get(offset);
+      if (this.data.getInt(offset + 1) == session) {
+        if (kind != GameJournal.SWAP) {
+          board = this.board(offset);
+        }
+        else if (done == swaps) {
+          break;
+        }
+        else {
+          board.swap(this.data.get(offset + 5) & 0xFF, this.data.get(offset + 6) & 0xFF);
+          done++;
+        }
+        if (seen != null) {
+          seen.add(board.hash);
+        }
+      }
+      offset += kind == GameJournal.SWAP ? GameJournal.SWAP_SIZE : this.recordSize(offset);
+    }
+    return board;
+  }
+
+  // returns the board held by the start record at the given offset
+  ABoard board(int offset) {
+    BoardShape shape = BoardShape.of(this.data.get(offset + 5) & 0xFF,
+        this.data.get(offset + 6) & 0xFF);
+    int[] values = new int[shape.size];
+    for (int index = 0; index < shape.size; index++) {
+      values[index] = this.data.get(offset + GameJournal.START_SIZE + index) & 0xFF;
+    }
+    return ABoard.create(shape, values);
+  }
+}
+
+class ExamplesGameJournal {
+  // tests writing and replaying a game
+  void testReplay(Tester t) throws IOException {
+    Path file = Files.createTempFile("fifteen", ".journal");
+    Files.delete(file);
+    try {
+      GameCore game = new GameCore(new PackedBoard(PackedBoard.SOLVED));
+      try (GameJournal journal = new GameJournal(file, GameJournal.NO_SYNC)) {
+        game.attachJournal(journal, 7);
+        GameCore other = new GameCore(
+            ABoard.create(new BoardShape(3, 3), new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 0 }));
+        other.attachJournal(journal, 8);
+
+        game.move(Direction.DOWN);
+        other.move(Direction.DOWN);
+        game.move(Direction.RIGHT);
+        game.move(Direction.UP);
+        game.undo();
+        other.move(Direction.RIGHT);
+      }
+      t.checkExpect(Files.size(file), (long) (8 + 23 + 16 + 6 * 7));
+
+      JournalReader reader = new JournalReader(file);
+      t.checkExpect(reader.sessions().size(), 2);
+      t.checkExpect(reader.swaps(7), 4L);
+      t.checkExpect(reader.swaps(8), 2L);
+      t.checkExpect(reader.replay(7, 0).isSolved(), true);
+      t.checkExpect(reader.replay(7, 1).blank, 11);
+      t.checkExpect(reader.replay(7, 3).blank, 14);
+      t.checkExpect(reader.replay(7), game.board);
+      // the undo went back to a board already seen
+      t.checkExpect(reader.distinctBoards(7), 4);
+      t.checkExpect(reader.replay(8).shape.sameShape(new BoardShape(3, 3)), true);
+      t.checkExpect(reader.replay(8).blank, 4);
+      t.checkException(new IllegalArgumentException("No session 9"), reader, "replay", 9, 0L);
+      t.checkException(new IllegalArgumentException("Session 7 has 4 swaps"), reader, "replay",
+          7, 5L);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // tests that a jump through the history is recorded as a new board
+  void testJump(Tester t) throws IOException {
+    Path file = Files.createTempFile("fifteen", ".journal");
+    Files.delete(file);
+    try {
+      GameCore game = new GameCore(new PackedBoard(PackedBoard.SOLVED));
+      try (GameJournal journal = new GameJournal(file, 5)) {
+        game.attachJournal(journal, 1);
+        game.move(Direction.DOWN);
+        game.move(Direction.DOWN);
+        game.jumpTo(1);
+        game.move(Direction.RIGHT);
+        journal.sync();
+        t.checkExpect(Files.size(file), (long) (8 + 2 * 23 + 3 * 7));
+      }
+
+      JournalReader reader = new JournalReader(file);
+      t.checkExpect(reader.swaps(1), 3L);
+      t.checkExpect(reader.replay(1, 1).blank, 11);
+      // the jump back after the second swap is part of the board after two swaps
+      t.checkExpect(reader.replay(1, 2).blank, 11);
+      t.checkExpect(reader.replay(1, 3).blank, 10);
+      t.checkExpect(reader.replay(1), game.board);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // tests that a record cut short by a crash is dropped
+  void testTornRecord(Tester t) throws IOException {
+    Path file = Files.createTempFile("fifteen", ".journal");
+    Files.delete(file);
+    try {
+      GameCore game = new GameCore(new PackedBoard(PackedBoard.SOLVED));
+      try (GameJournal journal = new GameJournal(file, GameJournal.SYNC_EVERY_RECORD)) {
+        game.attachJournal(journal, 3);
+        game.move(Direction.DOWN);
+      }
+      Files.write(file, new byte[] { GameJournal.SWAP, 0, 0 }, StandardOpenOption.APPEND);
+
+      JournalReader reader = new JournalReader(file);
+      t.checkExpect(reader.swaps(3), 1L);
+      t.checkExpect(reader.end, 8 + 23 + 7);
+
+      // appending again starts over from the last whole record
+      try (GameJournal journal = new GameJournal(file, GameJournal.NO_SYNC)) {
+        journal.swap(3, 11, 10);
+      }
+      reader = new JournalReader(file);
+      t.checkExpect(reader.swaps(3), 2L);
+      t.checkExpect(reader.replay(3).blank, 10);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // tests for files that are not journals
+  void testNotJournal(Tester t) throws IOException {
+    Path file = Files.createTempFile("fifteen", ".journal");
+    try {
+      Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+      t.checkConstructorException(new IllegalArgumentException("Not a journal file: " + file),
+          "JournalReader", file);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
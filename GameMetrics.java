@@ -0,0 +1,407 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javalib.impworld.*;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import tester.*;
+
+//Counts and times what the game does on its hot paths: keys, frames, win checks,
+//swaps and solver runs
+//metrics are off unless the JVM is started with -Dfifteen.metrics=true
+//ENABLED is a static final constant, so when it is false the JIT folds every
+//"if (GameMetrics.ENABLED)" away and the hot paths run exactly as before
+//when they are on, a summary is printed to standard error as the JVM exits, as
+//JSON if -Dfifteen.metrics.format=json is also given
+class GameMetrics {
+  // whether the game records metrics
+  static final boolean ENABLED = Boolean.getBoolean("fifteen.metrics");
+  // frames that take at least this long are reported to Flight Recorder
+  static final long SLOW_FRAME_NANOS =
+      Long.getLong("fifteen.metrics.slowFrameMillis", 16) * 1000000;
+  // the metrics every game records into
+  static final GameMetrics GLOBAL = GameMetrics.createGlobal();
+
+  // the time taken by every key, frame, win check, swap and solver run
+  LatencyHistogram keys = new LatencyHistogram();
+  LatencyHistogram frames = new LatencyHistogram();
+  LatencyHistogram winChecks = new LatencyHistogram();
+  LatencyHistogram swaps = new LatencyHistogram();
+  LatencyHistogram solves = new LatencyHistogram();
+
+  // the keys that changed the board and the keys that did not
+  LongAdder moves = new LongAdder();
+  LongAdder invalidMoves = new LongAdder();
+  // the keys that won a game
+  LongAdder wins = new LongAdder();
+  // the frames reported as slow
+  LongAdder slowFrames = new LongAdder();
+
+  // returns the global metrics, printing them at exit when metrics are on
+  static GameMetrics createGlobal() {
+    GameMetrics metrics = new GameMetrics();
+    if (ENABLED) {
+      boolean json = "json".equals(System.getProperty("fifteen.metrics.format"));
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        MetricsSnapshot snapshot = metrics.snapshot();
+        System.err.println(json ? snapshot.toJson() : snapshot.toText());
+      }, "GameMetrics dump"));
+    }
+    return metrics;
+  }
+
+  // handles a key for the given game and times it
+  // returns whether the board changed
+  boolean onKey(GameCore core, String k) {
+    boolean wasWon = core.isWon();
+    long start = System.nanoTime();
+    boolean changed = core.onKey(k);
+    this.keys.record(System.nanoTime() - start);
+
+    if (changed) {
+      this.moves.increment();
+      if (!wasWon && core.isWon()) {
+        this.wins.increment();
+      }
+    }
+    else {
+      this.invalidMoves.increment();
+    }
+    return changed;
+  }
+
+  // draws a frame of the given game and times it
+  WorldScene frame(FifteenGame game) {
+    long start = System.nanoTime();
+    WorldScene scene = game.drawScene();
+    long nanos = System.nanoTime() - start;
+    this.frames.record(nanos);
+
+    if (nanos >= SLOW_FRAME_NANOS) {
+      this.slowFrames.increment();
+      SlowFrameEvent event = new SlowFrameEvent();
+      if (event.shouldCommit()) {
+        event.frameTime = nanos;
+        event.rows = game.core.board.shape.rows;
+        event.cols = game.core.board.shape.cols;
+        event.incremental = game.incrementalRendering;
+        event.commit();
+      }
+    }
+    return scene;
+  }
+
+  // checks whether the given game is won and times it
+  boolean winCheck(GameCore core) {
+    long start = System.nanoTime();
+    boolean won = core.isWon();
+    this.winChecks.record(System.nanoTime() - start);
+    return won;
+  }
+
+  // swaps two tiles of the given game and times it
+  void swap(GameCore core, int index1, int index2) {
+    long start = System.nanoTime();
+    core.swap(index1, index2);
+    this.swaps.record(System.nanoTime() - start);
+  }
+
+  // counts a solver run on a board of the given shape that started at the given
+  // System.nanoTime and found a solution of the given length
+  void solved(BoardShape shape, int length, long nodes, long start) {
+    long nanos = System.nanoTime() - start;
+    this.solves.record(nanos);
+
+    SolverRunEvent event = new SolverRunEvent();
+    if (event.shouldCommit()) {
+      event.searchTime = nanos;
+      event.rows = shape.rows;
+      event.cols = shape.cols;
+      event.moves = length;
+      event.nodes = nodes;
+      event.commit();
+    }
+  }
+
+  // returns the metrics recorded so far
+  MetricsSnapshot snapshot() {
+    MetricsSnapshot s = new MetricsSnapshot();
+    s.moves = this.moves.sum();
+    s.invalidMoves = this.invalidMoves.sum();
+    s.wins = this.wins.sum();
+    s.slowFrames = this.slowFrames.sum();
+    s.latencies.add(this.keys.summary("onKeyEvent"));
+    s.latencies.add(this.frames.summary("makeScene"));
+    s.latencies.add(this.winChecks.summary("hasWorldEnded"));
+    s.latencies.add(this.swaps.summary("swap"));
+    s.latencies.add(this.solves.summary("solve"));
+    return s;
+  }
+}
+
+//Counts nanosecond latencies in buckets whose width grows with the latency, the
+//way an HdrHistogram does
+//values below 32 each get a bucket; above that, every power of two is split into
+//16 buckets, so a reported latency is never more than 1/16 above the real one
+//recording is a few atomic adds and never allocates
+class LatencyHistogram {
+  // the number of buckets for every power of two, and its log
+  static final int SUB_BUCKET_BITS = 4;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // the number of buckets needed for every positive long
+  static final int BUCKETS = 2 * SUB_BUCKETS + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+  // the number of values in every bucket
+  AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  // the number, sum and largest of the values
+  LongAdder count = new LongAdder();
+  LongAdder total = new LongAdder();
+  AtomicLong max = new AtomicLong();
+
+  // returns the bucket of the given value
+  static int bucket(long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int) Math.max(0, value);
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+
+  // returns the largest value that falls in the given bucket
+  static long highestIn(int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = bucket / SUB_BUCKETS - 1;
+    long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+    return ((top + 1) << shift) - 1;
+  }
+
+  // counts one value
+  void record(long value) {
+    this.counts.incrementAndGet(LatencyHistogram.bucket(value));
+    this.count.increment();
+    this.total.add(value);
+    if (value > this.max.get()) {
+      this.max.accumulateAndGet(value, Math::max);
+    }
+  }
+
+  // returns the smallest value at least the given fraction of values are at most,
+  // rounded up to the top of its bucket
+  long percentile(double fraction) {
+    long n = this.count.sum();
+    if (n == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * n));
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += this.counts.get(b);
+      if (seen >= rank) {
+        return Math.min(LatencyHistogram.highestIn(b), this.max.get());
+      }
+    }
+    return this.max.get();
+  }
+
+  // returns the count, mean and percentiles of the values under the given name
+  LatencySummary summary(String name) {
+    long n = this.count.sum();
+    return new LatencySummary(name, n, n == 0 ? 0 : this.total.sum() / n, this.percentile(0.5),
+        this.percentile(0.9), this.percentile(0.99), this.percentile(0.999), this.max.get());
+  }
+}
+
+//The count, mean and percentiles of one histogram, in nanoseconds
+class LatencySummary {
+  String name;
+  long count;
+  long mean;
+  long p50;
+  long p90;
+  long p99;
+  long p999;
+  long max;
+
+  // Constructor that takes in every field
+  LatencySummary(String name, long count, long mean, long p50, long p90, long p99, long p999,
+      long max) {
+    this.name = name;
+    this.count = count;
+    this.mean = mean;
+    this.p50 = p50;
+    this.p90 = p90;
+    this.p99 = p99;
+    this.p999 = p999;
+    this.max = max;
+  }
+}
+
+//The counters and latencies of a GameMetrics at one moment
+class MetricsSnapshot {
+  long moves;
+  long invalidMoves;
+  long wins;
+  long slowFrames;
+  List<LatencySummary> latencies = new ArrayList<LatencySummary>();
+
+  // returns the snapshot as lines of text, latencies in nanoseconds
+  String toText() {
+    StringBuilder s = new StringBuilder();
+    s.append(String.format("moves %d, invalid moves %d, wins %d, slow frames %d%n", this.moves,
+        this.invalidMoves, this.wins, this.slowFrames));
+    for (LatencySummary l : this.latencies) {
+      s.append(String.format("%-13s count %d, mean %d ns, p50 %d, p90 %d, p99 %d, p99.9 %d,"
+          + " max %d%n", l.name, l.count, l.mean, l.p50, l.p90, l.p99, l.p999, l.max));
+    }
+    return s.toString();
+  }
+
+  // returns the snapshot as a JSON object, latencies in nanoseconds
+  String toJson() {
+    StringBuilder s = new StringBuilder();
+    s.append(String.format("{\"moves\":%d,\"invalidMoves\":%d,\"wins\":%d,\"slowFrames\":%d,"
+        + "\"latencyNanos\":{", this.moves, this.invalidMoves, this.wins, this.slowFrames));
+    for (int i = 0; i < this.latencies.size(); i++) {
+      LatencySummary l = this.latencies.get(i);
+      s.append(String.format("%s\"%s\":{\"count\":%d,\"mean\":%d,\"p50\":%d,\"p90\":%d,"
+          + "\"p99\":%d,\"p999\":%d,\"max\":%d}", i == 0 ? "" : ",", l.name, l.count, l.mean,
+          l.p50, l.p90, l.p99, l.p999, l.max));
+    }
+    return s.append("}}").toString();
+  }
+}
+
+//A Flight Recorder event for a frame slower than GameMetrics.SLOW_FRAME_NANOS
+@Name("fifteen.SlowFrame")
+@Label("Slow Frame")
+@Category("Fifteen")
+@Description("A call to makeScene that took longer than a frame should")
+class SlowFrameEvent extends Event {
+  @Label("Frame Time")
+  @Timespan
+  long frameTime;
+  @Label("Rows")
+  int rows;
+  @Label("Columns")
+  int cols;
+  @Label("Incremental")
+  boolean incremental;
+}
+
+//A Flight Recorder event for every optimal solution found
+@Name("fifteen.SolverRun")
+@Label("Solver Run")
+@Category("Fifteen")
+@Description("An IDA* search for an optimal solution")
+class SolverRunEvent extends Event {
+  @Label("Search Time")
+  @Timespan
+  long searchTime;
+  @Label("Rows")
+  int rows;
+  @Label("Columns")
+  int cols;
+  @Label("Moves")
+  int moves;
+  @Label("Nodes")
+  long nodes;
+}
+
+class ExamplesGameMetrics {
+  // tests for the buckets of LatencyHistogram
+  void testBuckets(Tester t) {
+    t.checkExpect(LatencyHistogram.bucket(0), 0);
+    t.checkExpect(LatencyHistogram.bucket(31), 31);
+    t.checkExpect(LatencyHistogram.bucket(32), 32);
+    t.checkExpect(LatencyHistogram.bucket(33), 32);
+    t.checkExpect(LatencyHistogram.bucket(34), 33);
+    t.checkExpect(LatencyHistogram.highestIn(32), 33L);
+    t.checkExpect(LatencyHistogram.highestIn(31), 31L);
+    t.checkExpect(LatencyHistogram.bucket(Long.MAX_VALUE), LatencyHistogram.BUCKETS - 1);
+    t.checkExpect(LatencyHistogram.highestIn(LatencyHistogram.BUCKETS - 1), Long.MAX_VALUE);
+
+    // every value falls in a bucket whose top is at most 1/16 above it
+    boolean close = true;
+    for (long v = 1; v < 1L << 40; v = v * 3 + 1) {
+      long top = LatencyHistogram.highestIn(LatencyHistogram.bucket(v));
+      close &= top >= v && top - v <= v / 16;
+    }
+    t.checkExpect(close, true);
+  }
+
+  // tests for percentiles
+  void testPercentile(Tester t) {
+    LatencyHistogram h = new LatencyHistogram();
+    t.checkExpect(h.percentile(0.5), 0L);
+    for (long v = 1; v <= 1000; v++) {
+      h.record(v * 1000);
+    }
+    t.checkNumRange(h.percentile(0.5), 500000L, 500000L * 17 / 16 + 1);
+    t.checkNumRange(h.percentile(0.99), 990000L, 990000L * 17 / 16 + 1);
+    t.checkExpect(h.percentile(1.0), 1000000L);
+    LatencySummary s = h.summary("x");
+    t.checkExpect(s.count, 1000L);
+    t.checkExpect(s.mean, 500500L);
+    t.checkExpect(s.max, 1000000L);
+  }
+
+  // tests for the counters
+  void testCounters(Tester t) {
+    GameMetrics metrics = new GameMetrics();
+    GameCore core = new GameCore(new PackedBoard(PackedBoard.SOLVED));
+    t.checkExpect(metrics.onKey(core, "down"), true);
+    t.checkExpect(metrics.onKey(core, "x"), false);
+    t.checkExpect(metrics.onKey(core, "up"), true);
+    t.checkExpect(metrics.winCheck(core), true);
+    metrics.swap(core, 0, 1);
+
+    MetricsSnapshot s = metrics.snapshot();
+    t.checkExpect(s.moves, 2L);
+    t.checkExpect(s.invalidMoves, 1L);
+    t.checkExpect(s.wins, 1L);
+    t.checkExpect(s.latencies.get(0).count, 3L);
+    t.checkExpect(s.latencies.get(2).count, 1L);
+    t.checkExpect(s.latencies.get(3).count, 1L);
+    t.checkExpect(s.toText().startsWith("moves 2, invalid moves 1, wins 1, slow frames 0"), true);
+    t.checkExpect(s.toJson().startsWith(
+        "{\"moves\":2,\"invalidMoves\":1,\"wins\":1,\"slowFrames\":0,\"latencyNanos\":{"
+            + "\"onKeyEvent\":{\"count\":3,"), true);
+    t.checkExpect(s.toJson().endsWith("}}"), true);
+  }
+
+  // tests that solver runs are sent to Flight Recorder
+  void testSolverEvent(Tester t) throws Exception {
+    GameMetrics metrics = new GameMetrics();
+    Path file = Files.createTempFile("fifteen", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(SolverRunEvent.class);
+      recording.start();
+      metrics.solved(new BoardShape(3, 3), 12, 345, System.nanoTime());
+      recording.stop();
+      recording.dump(file);
+
+      List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+      t.checkExpect(events.size(), 1);
+      t.checkExpect(events.get(0).getEventType().getName(), "fifteen.SolverRun");
+      t.checkExpect(events.get(0).getInt("moves"), 12);
+      t.checkExpect(events.get(0).getLong("nodes"), 345L);
+      t.checkExpect(metrics.solves.count.sum(), 1L);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
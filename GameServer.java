@@ -0,0 +1,338 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import tester.*;
+
+//Hosts many 4x4 game sessions over TCP, one line per request and per reply
+//usage: java GameServer [port] [max sessions]
+//requests:
+//  new                 deals a solvable board: "ok <id> <board>"
+//  <id> <key>          moves with the same keys as FifteenGame.onKeyEvent:
+//                      "ok <board>", followed by " solved" once it is solved
+//  <id> show           "ok <board>" without moving
+//  <id> hint           the first move of an optimal solution and the number of
+//                      moves left: "ok <key> <moves>", or "ok solved"; when no
+//                      optimal solution is found in time, the first move of the
+//                      best one found: "ok <key> <moves> approximate"; when
+//                      every hint solver is busy: "error Hint solvers are busy"
+//  <id> end            closes the session: "ok"
+//  quit                closes the connection
+//boards are written as 16 numbers, row by row, the way PackedBoard.format does,
+//and a request that cannot be served gets "error <message>"
+//every connection is served on its own virtual thread when the JVM has them,
+//and sessions live in a lock-free SessionTable, so any connection can play any
+//session, and hints come from a HintCache shared by every session, so boards
+//that other players passed through are not solved again
+//boards that are not in the cache are searched by an AnytimeSolver with a cap on
+//its states and a deadline, so a hint never holds a core for long; only
+//HINT_SOLVERS searches run at once, each reusing an idle solver, and a miss that
+//finds them all busy is refused rather than queued
+class GameServer {
+  // the port used unless another is given
+  static final int DEFAULT_PORT = 7015;
+  // the most sessions unless another number is given
+  static final int DEFAULT_CAPACITY = 1 << 20;
+  // the number of hints cached
+  static final int HINT_CAPACITY = 1 << 20;
+  // the most milliseconds a hint searches for an optimal solution
+  static final long HINT_MILLIS = 100;
+  // the most states a hint's search keeps, about 12 MB
+  static final int HINT_STATES = 1 << 18;
+  // the most hints searched at once, and so the most solvers kept
+  static final int HINT_SOLVERS = 4;
+
+  // the boards of every session
+  SessionTable sessions;
+  // the hints of every board solved for a hint request
+  HintCache hints;
+  // a permit for every hint that may be searched at once
+  Semaphore hintPermits;
+  // the solvers not searching now, made as they are first needed
+  ConcurrentLinkedQueue<AnytimeSolver> idleSolvers;
+  // serves the connections
+  ExecutorService connections;
+  // accepts connections, or null before start
+  ServerSocket server;
+
+  // Constructor that takes in the most sessions open at once
+  GameServer(int capacity) {
+    this.sessions = new SessionTable(capacity);
+    this.hints = new HintCache(BoardShape.FOUR_BY_FOUR, HINT_CAPACITY);
+    this.hintPermits = new Semaphore(HINT_SOLVERS);
+    this.idleSolvers = new ConcurrentLinkedQueue<AnytimeSolver>();
+    this.connections = GameServer.newThreadPerTaskExecutor();
+  }
+
+  // returns an executor that starts a virtual thread for every task, or a cached
+  // pool of platform threads on JVMs before virtual threads
+  // looked up by name so the game still builds for older releases
+  static ExecutorService newThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool();
+    }
+  }
+
+  // runs the server from the command line until it is killed
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    int capacity = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CAPACITY;
+    GameServer server = new GameServer(capacity);
+    server.bind(port);
+    System.err.println("serving up to " + capacity + " sessions on port " + server.port());
+    server.acceptAll();
+  }
+
+  // listens on the given port of the loopback address, or on any free port if it is 0
+  void bind(int port) throws IOException {
+    this.server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+  }
+
+  // listens on the given port and accepts connections on a background thread
+  void start(int port) throws IOException {
+    this.bind(port);
+    Thread acceptor = new Thread(this::acceptAll, "GameServer acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  // returns the port the server is listening on
+  int port() {
+    return this.server.getLocalPort();
+  }
+
+  // accepts connections until the server is closed
+  void acceptAll() {
+    try {
+      while (!this.server.isClosed()) {
+        Socket socket = this.server.accept();
+        this.connections.execute(() -> this.serve(socket));
+      }
+    }
+    catch (IOException e) {
+      // the server socket was closed
+    }
+  }
+
+  // answers the requests of one connection until it quits or closes
+  void serve(Socket socket) {
+    try (Socket s = socket;
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+        BufferedWriter out = new BufferedWriter(
+            new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+      s.setTcpNoDelay(true);
+      PuzzleGenerator generator = new PuzzleGenerator(ThreadLocalRandom.current().nextLong());
+      String line = in.readLine();
+      while (line != null && !line.trim().equals("quit")) {
+        out.write(this.handle(line, generator));
+        out.write('\n');
+        // only flush once every request that has arrived is answered
+        if (!in.ready()) {
+          out.flush();
+        }
+        line = in.readLine();
+      }
+    }
+    catch (IOException e) {
+      // the client went away
+    }
+  }
+
+  // returns the reply to one request, dealing new boards from the given generator
+  // of the connection
+  // the words are split by spaces by hand, since a request is at most two words
+  String handle(String line, PuzzleGenerator generator) {
+    String request = line.trim();
+    int space = request.indexOf(' ');
+    try {
+      if (request.equals("new")) {
+        long cells = generator.next();
+        return "ok " + this.sessions.openSession(cells) + " " + PackedBoard.format(cells);
+      }
+      if (space < 0) {
+        return "error Unknown request: " + line;
+      }
+      String word = request.substring(space + 1).trim();
+      if (word.indexOf(' ') >= 0) {
+        return "error Unknown request: " + line;
+      }
+
+      int id;
+      try {
+        id = Integer.parseInt(request.substring(0, space));
+      }
+      catch (NumberFormatException e) {
+        return "error Unknown request: " + line;
+      }
+
+      Direction d = Direction.fromKey(word);
+      if (d != null) {
+        return GameServer.reply(this.sessions.move(id, d));
+      }
+      else if (word.equals("show")) {
+        return GameServer.reply(this.sessions.get(id));
+      }
+      else if (word.equals("hint")) {
+        return this.hint(this.sessions.get(id));
+      }
+      else if (word.equals("end")) {
+        this.sessions.close(id);
+        return "ok";
+      }
+      else {
+        return "error Unknown key: " + word;
+      }
+    }
+    catch (IllegalArgumentException e) {
+      return "error " + e.getMessage();
+    }
+  }
+
+  // returns the reply to a hint request for the given board
+  // only optimal solutions are cached; a better one may exist for an approximate hint
+  String hint(long cells) {
+    if (cells == PackedBoard.SOLVED) {
+      return "ok solved";
+    }
+    int hint = this.hints.get(cells);
+    if (hint < 0) {
+      if (!this.hintPermits.tryAcquire()) {
+        return "error Hint solvers are busy";
+      }
+      AnytimeSolver solver = this.idleSolvers.poll();
+      if (solver == null) {
+        solver = new AnytimeSolver(HINT_STATES);
+      }
+      AnytimeResult result;
+      try {
+        result = solver.solve(new PackedBoard(cells), HINT_MILLIS);
+      }
+      catch (IllegalStateException e) {
+        return "error " + e.getMessage();
+      }
+      finally {
+        this.idleSolvers.add(solver);
+        this.hintPermits.release();
+      }
+      if (!result.isOptimal()) {
+        return "ok " + result.keys.get(0) + " " + result.keys.size() + " approximate";
+      }
+      this.hints.putSolution(cells, result.keys);
+      hint = (result.keys.size() << 2) | Direction.fromKey(result.keys.get(0)).ordinal();
+    }
+    return "ok " + HintCache.move(hint).key + " " + HintCache.distance(hint);
+  }
+
+  // returns the reply that shows the given board
+  static String reply(long cells) {
+    if (cells == PackedBoard.SOLVED) {
+      return "ok " + PackedBoard.format(cells) + " solved";
+    }
+    else {
+      return "ok " + PackedBoard.format(cells);
+    }
+  }
+
+  // stops accepting connections and serving the open ones
+  void close() throws IOException {
+    if (this.server != null) {
+      this.server.close();
+    }
+    this.connections.shutdownNow();
+  }
+}
+
+class ExamplesGameServer {
+  // tests for handle
+  void testHandle(Tester t) {
+    GameServer server = new GameServer(4);
+    PuzzleGenerator generator = new PuzzleGenerator(5);
+    int id = server.sessions.openSession(PackedBoard.SOLVED);
+    t.checkExpect(server.handle(id + " down", generator),
+        "ok 1 2 3 4 5 6 7 8 9 10 11 0 13 14 15 12");
+    t.checkExpect(server.handle(id + " left", generator),
+        "ok 1 2 3 4 5 6 7 8 9 10 11 0 13 14 15 12");
+    t.checkExpect(server.handle(" " + id + "   up ", generator),
+        "ok 1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 0 solved");
+    t.checkExpect(server.handle(id + " show", generator),
+        "ok 1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 0 solved");
+    t.checkExpect(server.handle(id + " hint", generator), "ok solved");
+    server.handle(id + " down", generator);
+    server.handle(id + " right", generator);
+    t.checkExpect(server.handle(id + " hint", generator), "ok left 2");
+    t.checkExpect(server.handle(id + " hint", generator), "ok left 2");
+    t.checkExpect(server.hints.hits.sum(), 1L);
+    // a board too deep to solve optimally in time gets the best move found quickly
+    long deep = new PuzzleGenerator(3).next();
+    String[] reply = server.handle(server.sessions.openSession(deep) + " hint", generator)
+        .split(" ");
+    t.checkExpect(reply[0], "ok");
+    t.checkExpect(new PackedBoard(deep).move(Direction.fromKey(reply[1])), true);
+    t.checkExpect(Integer.parseInt(reply[2]) >= Solver.estimate(deep), true);
+    t.checkExpect(server.idleSolvers.size(), 1);
+    // a miss is refused while every solver is busy, but a cached hint is still served
+    server.hintPermits.acquireUninterruptibly(GameServer.HINT_SOLVERS);
+    t.checkExpect(server.handle(server.sessions.openSession(deep) + " hint", generator),
+        "error Hint solvers are busy");
+    t.checkExpect(server.handle(id + " hint", generator), "ok left 2");
+    server.hintPermits.release(GameServer.HINT_SOLVERS);
+    server.handle(id + " left", generator);
+    server.handle(id + " up", generator);
+    t.checkExpect(server.handle(id + " u", generator), "error Unknown key: u");
+    t.checkExpect(server.handle(id + " end", generator), "ok");
+    t.checkExpect(server.handle(id + " show", generator), "error No session " + id);
+    t.checkExpect(server.handle("x up", generator), "error Unknown request: x up");
+    t.checkExpect(server.handle("1 2 3", generator), "error Unknown request: 1 2 3");
+    t.checkExpect(server.handle("up", generator), "error Unknown request: up");
+    t.checkExpect(server.handle("new 2", generator), "error Unknown request: new 2");
+
+    // boards are dealt from the generator of the connection
+    String dealt = server.handle(" new ", generator);
+    t.checkExpect(dealt, "ok 0 " + PackedBoard.format(new PuzzleGenerator(5).next()));
+    t.checkExpect(PackedBoard.isSolvable(PackedBoard.parse(dealt.substring(5))), true);
+  }
+
+  // tests the server over a socket
+  void testSocket(Tester t) throws IOException {
+    GameServer server = new GameServer(16);
+    server.start(0);
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        BufferedWriter out = new BufferedWriter(
+            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+      out.write("new\n");
+      out.flush();
+      String[] dealt = in.readLine().split(" ");
+      t.checkExpect(dealt.length, 18);
+      t.checkExpect(dealt[0], "ok");
+
+      // two requests sent together get two replies in order
+      out.write(dealt[1] + " show\n" + dealt[1] + " end\n");
+      out.flush();
+      t.checkExpect(in.readLine().startsWith("ok "), true);
+      t.checkExpect(in.readLine(), "ok");
+      out.write("quit\n");
+      out.flush();
+      t.checkExpect(in.readLine(), null);
+    }
+    finally {
+      server.close();
+    }
+  }
+}
@@ -0,0 +1,278 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import tester.*;
+
+//Solves boards of any shape with IDA* using Manhattan distance plus linear conflict
+//like Solver, the estimate is kept up to date as tiles slide, so a move costs the
+//same whatever the number of cells, apart from the two lines it changes
+//boards larger than 4x4 can take a very long time to solve optimally
+class GridSolver {
+  // the shape of the boards this solver can search
+  BoardShape shape;
+  // the Manhattan distance of every value from every index
+  // indexed by value * size + index, and 0 for the space
+  int[] distances;
+
+  // the board being searched
+  int[] cells;
+  // the index of the space on the board being searched
+  int blank;
+  // the Manhattan distance of the board being searched
+  int manhattan;
+  // the linear conflict of each row and column of the board being searched
+  int[] rowConflicts;
+  int[] columnConflicts;
+  // the sum of all row and column conflicts
+  int conflicts;
+  // scratch space for the goal positions of the tiles in one line
+  int[] line;
+
+  // the directions of the moves made so far
+  byte[] path;
+  // the number of moves in the solution that was found
+  int length;
+  // the number of states expanded by the last solve
+  long nodes;
+
+  // Constructor for a solver of boards of the given shape
+  GridSolver(BoardShape shape) {
+    this.shape = shape;
+    this.distances = GridSolver.buildDistances(shape);
+    this.cells = new int[shape.size];
+    this.rowConflicts = new int[shape.rows];
+    this.columnConflicts = new int[shape.cols];
+    this.line = new int[Math.max(shape.rows, shape.cols)];
+    this.path = new byte[shape.size * 4];
+  }
+
+  // builds the table of Manhattan distances for the given shape
+  static int[] buildDistances(BoardShape shape) {
+    int[] table = new int[shape.size * shape.size];
+    for (int value = 1; value < shape.size; value++) {
+      int goal = shape.goalIndex(value);
+      for (int index = 0; index < shape.size; index++) {
+        table[value * shape.size + index] = Math.abs(goal / shape.cols - index / shape.cols)
+            + Math.abs(goal % shape.cols - index % shape.cols);
+      }
+    }
+    return table;
+  }
+
+  // returns the Manhattan distance plus linear conflict of the given board
+  static int estimate(ABoard board) {
+    GridSolver s = new GridSolver(board.shape);
+    s.reset(board);
+    return s.manhattan + s.conflicts;
+  }
+
+  // returns an optimal list of keys that solves the given board
+  ArrayList<String> solve(ABoard board) {
+    if (!board.shape.sameShape(this.shape)) {
+      throw new IllegalArgumentException("Board is not " + this.shape.rows + "x" + this.shape.cols);
+    }
+    if (!board.isSolvable()) {
+      throw new IllegalArgumentException("Board is not solvable");
+    }
+
+    long start = GameMetrics.ENABLED ? System.nanoTime() : 0;
+    this.reset(board);
+    this.nodes = 0;
+    int bound = this.manhattan + this.conflicts;
+    int result = this.search(0, bound, -1);
+
+    while (result != Solver.FOUND) {
+      bound = result;
+      if (bound >= this.path.length) {
+        this.path = Arrays.copyOf(this.path, bound * 2);
+      }
+      result = this.search(0, bound, -1);
+    }
+    if (GameMetrics.ENABLED) {
+      GameMetrics.GLOBAL.solved(this.shape, this.length, this.nodes, start);
+    }
+
+    ArrayList<String> keys = new ArrayList<String>();
+    for (int i = 0; i < this.length; i++) {
+      keys.add(Direction.ALL[this.path[i]].key);
+    }
+    return keys;
+  }
+
+  // sets up the search state for the given board
+  void reset(ABoard board) {
+    this.blank = board.blank;
+    this.manhattan = 0;
+    this.conflicts = 0;
+    this.length = 0;
+
+    for (int index = 0; index < this.shape.size; index++) {
+      this.cells[index] = board.get(index);
+      this.manhattan += this.distances[this.cells[index] * this.shape.size + index];
+    }
+    for (int row = 0; row < this.shape.rows; row++) {
+      this.rowConflicts[row] = this.rowConflict(row);
+      this.conflicts += this.rowConflicts[row];
+    }
+    for (int col = 0; col < this.shape.cols; col++) {
+      this.columnConflicts[col] = this.columnConflict(col);
+      this.conflicts += this.columnConflicts[col];
+    }
+  }
+
+  // searches below the current board, which is g moves away from the start
+  // returns FOUND if the goal was reached, otherwise the smallest estimated
+  // total cost that was over the bound
+  int search(int g, int bound, int previous) {
+    int h = this.manhattan + this.conflicts;
+    int f = g + h;
+
+    if (f > bound) {
+      return f;
+    }
+    if (h == 0) {
+      this.length = g;
+      return Solver.FOUND;
+    }
+
+    this.nodes++;
+    int min = Integer.MAX_VALUE;
+    int space = this.blank;
+
+    for (int d = 0; d < 4; d++) {
+      int other = this.shape.neighbors[(space << 2) | d];
+      // skip moves off the board and moves that undo the previous one
+      if (other >= 0 && (d ^ 1) != previous) {
+        this.slide(other);
+        this.path[g] = (byte) d;
+        int result = this.search(g + 1, bound, d);
+        if (result == Solver.FOUND) {
+          return Solver.FOUND;
+        }
+        this.slide(space);
+        if (result < min) {
+          min = result;
+        }
+      }
+    }
+    return min;
+  }
+
+  // slides the tile at the given index into the space and updates the heuristic
+  void slide(int from) {
+    int to = this.blank;
+    int tile = this.cells[from];
+    this.cells[to] = tile;
+    this.cells[from] = 0;
+    this.blank = from;
+    this.manhattan += this.distances[tile * this.shape.size + to]
+        - this.distances[tile * this.shape.size + from];
+
+    // a tile that moves along a row keeps its order within the row, so only the
+    // two columns it left and entered change, and the same goes for columns
+    int cols = this.shape.cols;
+    if (from / cols == to / cols) {
+      this.updateColumn(from % cols);
+      this.updateColumn(to % cols);
+    }
+    else {
+      this.updateRow(from / cols);
+      this.updateRow(to / cols);
+    }
+  }
+
+  // recomputes the linear conflict of the given row
+  void updateRow(int row) {
+    int conflict = this.rowConflict(row);
+    this.conflicts += conflict - this.rowConflicts[row];
+    this.rowConflicts[row] = conflict;
+  }
+
+  // recomputes the linear conflict of the given column
+  void updateColumn(int col) {
+    int conflict = this.columnConflict(col);
+    this.conflicts += conflict - this.columnConflicts[col];
+    this.columnConflicts[col] = conflict;
+  }
+
+  // returns the linear conflict of the given row: two moves for every tile that
+  // belongs in the row but has to leave it to let the others pass
+  int rowConflict(int row) {
+    int count = 0;
+    for (int col = 0; col < this.shape.cols; col++) {
+      int value = this.cells[row * this.shape.cols + col];
+      if (value != 0) {
+        int goal = this.shape.goalIndex(value);
+        if (goal / this.shape.cols == row) {
+          this.line[count] = goal;
+          count++;
+        }
+      }
+    }
+    return 2 * (count - Solver.longestIncreasing(this.line, count));
+  }
+
+  // returns the linear conflict of the given column
+  int columnConflict(int col) {
+    int count = 0;
+    for (int row = 0; row < this.shape.rows; row++) {
+      int value = this.cells[row * this.shape.cols + col];
+      if (value != 0) {
+        int goal = this.shape.goalIndex(value);
+        if (goal % this.shape.cols == col) {
+          this.line[count] = goal;
+          count++;
+        }
+      }
+    }
+    return 2 * (count - Solver.longestIncreasing(this.line, count));
+  }
+}
+
+class ExamplesGridSolver {
+  BoardShape three = new BoardShape(3, 3);
+  GridSolver solver = new GridSolver(this.three);
+
+  // tests for estimate
+  void testEstimate(Tester t) {
+    t.checkExpect(GridSolver.estimate(ABoard.create(this.three,
+        new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 0 })), 0);
+    // 2 and 1 swapped in the first row: Manhattan distance 2, one conflict
+    t.checkExpect(GridSolver.estimate(ABoard.create(this.three,
+        new int[] { 2, 1, 3, 4, 5, 6, 7, 8, 0 })), 4);
+    t.checkExpect(GridSolver.estimate(ABoard.create(this.three,
+        new int[] { 1, 2, 3, 4, 5, 6, 7, 0, 8 })), 1);
+    // agrees with Solver on 4x4 boards
+    t.checkExpect(GridSolver.estimate(new PackedBoard(0xCFE08BAD47693215L)),
+        Solver.estimate(0xCFE08BAD47693215L));
+    t.checkExpect(GridSolver.estimate(new PackedBoard(PackedBoard.ALL_VALUES)),
+        Solver.estimate(PackedBoard.ALL_VALUES));
+  }
+
+  // tests for solve
+  void testSolve(Tester t) {
+    // the hardest 3x3 boards take 31 moves
+    ABoard hardest = ABoard.create(this.three, new int[] { 8, 6, 7, 2, 5, 4, 3, 0, 1 });
+    ArrayList<String> keys = this.solver.solve(hardest.copy());
+    t.checkExpect(keys.size(), 31);
+    t.checkExpect(MoveSequence.solves(hardest, keys), true);
+
+    ABoard solved = ABoard.create(this.three, new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 0 });
+    t.checkExpect(this.solver.solve(solved), new ArrayList<String>());
+
+    // a 5x5 board a few moves from the goal
+    BoardShape five = new BoardShape(5, 5);
+    ABoard near = new PuzzleGenerator(3).walk(five, 12);
+    ArrayList<String> nearKeys = new GridSolver(five).solve(near.copy());
+    t.checkExpect(nearKeys.size() <= 12, true);
+    t.checkExpect(MoveSequence.solves(near, nearKeys), true);
+
+    // agrees with Solver on 4x4 boards
+    t.checkExpect(new GridSolver(BoardShape.FOUR_BY_FOUR)
+        .solve(new PackedBoard(0xCFE08BAD47693215L)).size(), 9);
+
+    t.checkException(new IllegalArgumentException("Board is not solvable"), this.solver, "solve",
+        ABoard.create(this.three, new int[] { 2, 1, 3, 4, 5, 6, 7, 8, 0 }));
+    t.checkException(new IllegalArgumentException("Board is not 3x3"), this.solver, "solve",
+        new PackedBoard(PackedBoard.SOLVED));
+  }
+}
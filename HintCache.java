@@ -0,0 +1,324 @@
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import tester.*;
+
+//Remembers the optimal hint for boards that were solved before: how many moves
+//they need, and the first move of an optimal solution
+//solving a board solves every board along its solution too, so all of them go in
+//the table holds a fixed number of entries, chosen up front, in sets of WAYS that
+//share a 64-byte cache line; a board can only go in one set, and when the set is
+//full the entry used least recently is evicted
+//readers and writers never lock: an entry is two longs, the board xor the hint
+//and the hint, so a reader that sees half of a write finds the wrong board and
+//counts a miss, rather than taking another board's hint
+class HintCache {
+  // the number of entries in a set
+  static final int WAYS = 4;
+  // the most entries a cache can have
+  static final int MAX_CAPACITY = 1 << 28;
+  // the longest distance an entry can hold
+  static final int MAX_DISTANCE = 0xFF;
+  // where the time an entry was last used starts in its hint
+  static final int STAMP_SHIFT = 16;
+
+  // the shape of the boards
+  BoardShape shape;
+  // the number of sets, a power of two
+  int sets;
+  // two longs for every entry, set by set: the board xor the hint, and the hint,
+  // which holds the time it was last used, the distance and the direction
+  AtomicLongArray entries;
+  // the time, which moves on with every entry written
+  AtomicInteger clock = new AtomicInteger();
+  // solves the boards that are not in the cache, one solver for every thread, or
+  // null if the caller fills the cache
+  ThreadLocal<ISolver> solvers;
+
+  // the number of lookups that found their board, and of the ones that did not
+  LongAdder hits = new LongAdder();
+  LongAdder misses = new LongAdder();
+  // the number of entries written over by another board
+  LongAdder evictions = new LongAdder();
+
+  // Constructor for a cache that the caller fills with put and putSolution, which
+  // takes in the shape of the boards and the most entries
+  HintCache(BoardShape shape, int capacity) {
+    this(shape, capacity, null);
+  }
+
+  // Constructor that takes in the shape of the boards, the most entries, which is
+  // rounded up to a power of two, and how to make a solver for the boards it misses
+  HintCache(BoardShape shape, int capacity, Supplier<ISolver> solvers) {
+    if (!shape.fitsInLong()) {
+      throw new IllegalArgumentException("Packed boards can hold at most 16 cells");
+    }
+    if (capacity < WAYS || capacity > MAX_CAPACITY) {
+      throw new IllegalArgumentException("Capacity must be from " + WAYS + " to " + MAX_CAPACITY);
+    }
+    this.shape = shape;
+    this.sets = Integer.highestOneBit(capacity - 1) * 2 / WAYS;
+    this.entries = new AtomicLongArray(this.sets * WAYS * 2);
+    if (solvers != null) {
+      this.solvers = ThreadLocal.withInitial(solvers);
+    }
+  }
+
+  // returns the number of entries the cache holds when full
+  int capacity() {
+    return this.sets * WAYS;
+  }
+
+  // returns the distance of the given hint
+  static int distance(int hint) {
+    return hint >>> 2;
+  }
+
+  // returns the move of the given hint, or null if it is for a solved board
+  static Direction move(int hint) {
+    return hint >>> 2 == 0 ? null : Direction.ALL[hint & 3];
+  }
+
+  // returns the hint for the given board: the number of moves it needs times 4, plus
+  // the ordinal of the first move of an optimal solution
+  // boards that are not in the cache are solved, and so are cached with every board
+  // along their solution
+  int hint(ABoard board) {
+    if (!board.shape.sameShape(this.shape)) {
+      throw new IllegalArgumentException("Board is not " + this.shape.rows + "x"
+          + this.shape.cols);
+    }
+    long cells = PackedBoard.pack(board);
+    if (cells == this.shape.packedSolved) {
+      return 0;
+    }
+    int hint = this.get(cells);
+    if (hint < 0) {
+      if (this.solvers == null) {
+        throw new IllegalArgumentException("This cache has no solver");
+      }
+      ArrayList<String> keys = this.solvers.get().solve(board);
+      this.putSolution(cells, keys);
+      hint = (keys.size() << 2) | Direction.fromKey(keys.get(0)).ordinal();
+    }
+    return hint;
+  }
+
+  // returns the index of the first long of the set the given board goes in
+  int setOf(long cells) {
+    return LongHashSet.slot(cells, this.sets - 1) * WAYS * 2;
+  }
+
+  // returns the hint for the given board, or -1 if it is not in the cache
+  int get(long cells) {
+    int set = this.setOf(cells);
+    for (int way = 0; way < WAYS; way++) {
+      int i = set + way * 2;
+      long hint = this.entries.get(i + 1);
+      if (hint != 0 && (this.entries.get(i) ^ hint) == cells) {
+        this.hits.increment();
+        // mark the entry used, but only once it has aged, so a popular board does not
+        // write its cache line on every lookup
+        int now = this.clock.get();
+        if (now - (int) (hint >>> STAMP_SHIFT) > this.sets) {
+          this.write(i, cells, (hint & 0xFFFF) | ((long) now << STAMP_SHIFT));
+        }
+        return (int) (hint & 0xFFFF);
+      }
+    }
+    this.misses.increment();
+    return -1;
+  }
+
+  // caches the given distance and first move for the given board
+  // distances too long to hold are not cached
+  void put(long cells, int distance, Direction move) {
+    if (distance < 1 || distance > MAX_DISTANCE) {
+      return;
+    }
+    int now = this.clock.incrementAndGet();
+    long hint = ((long) now << STAMP_SHIFT) | (distance << 2) | move.ordinal();
+
+    // the board's own entry, or an empty one, or else the one used least recently
+    int set = this.setOf(cells);
+    int chosen = -1;
+    // another thread may have stamped an entry after this one read the clock, so ages
+    // can be below zero
+    int oldest = set;
+    int oldestAge = Integer.MIN_VALUE;
+    for (int way = 0; way < WAYS && chosen < 0; way++) {
+      int i = set + way * 2;
+      long other = this.entries.get(i + 1);
+      if (other == 0 || (this.entries.get(i) ^ other) == cells) {
+        chosen = i;
+      }
+      else if (now - (int) (other >>> STAMP_SHIFT) > oldestAge) {
+        oldest = i;
+        oldestAge = now - (int) (other >>> STAMP_SHIFT);
+      }
+    }
+    if (chosen < 0) {
+      chosen = oldest;
+      this.evictions.increment();
+    }
+    this.write(chosen, cells, hint);
+  }
+
+  // writes the entry at the given index
+  void write(int i, long cells, long hint) {
+    this.entries.set(i, cells ^ hint);
+    this.entries.set(i + 1, hint);
+  }
+
+  // caches every board along the given solution of the given packed board
+  void putSolution(long cells, ArrayList<String> keys) {
+    for (int i = 0; i < keys.size(); i++) {
+      Direction d = Direction.fromKey(keys.get(i));
+      this.put(cells, keys.size() - i, d);
+      int blank = PackedBoard.indexOf(cells, 0);
+      int tile = this.shape.neighbors[(blank << 2) | d.ordinal()];
+      if (tile < 0) {
+        throw new IllegalArgumentException("Move " + i + " of the solution is not legal");
+      }
+      cells = PackedBoard.slide(cells, blank, tile);
+    }
+  }
+
+  // returns the counters as text
+  String stats() {
+    return "hits " + this.hits.sum() + ", misses " + this.misses.sum() + ", evictions "
+        + this.evictions.sum();
+  }
+}
+
+class ExamplesHintCache {
+  // returns a cache of the given shape and capacity that solves with IDA*
+  HintCache cache(BoardShape shape, int capacity) {
+    return new HintCache(shape, capacity, () -> new Solver());
+  }
+
+  // tests for get and put
+  void testPut(Tester t) {
+    HintCache cache = this.cache(BoardShape.FOUR_BY_FOUR, 100);
+    t.checkExpect(cache.capacity(), 128);
+    t.checkExpect(cache.get(PackedBoard.SOLVED), -1);
+    cache.put(PackedBoard.ALL_VALUES, 40, Direction.LEFT);
+    cache.put(PackedBoard.ALL_VALUES, 41, Direction.UP);
+    int hint = cache.get(PackedBoard.ALL_VALUES);
+    t.checkExpect(HintCache.distance(hint), 41);
+    t.checkExpect(HintCache.move(hint), Direction.UP);
+    t.checkExpect(HintCache.move(0), null);
+    cache.put(PackedBoard.SOLVED, 0, Direction.UP);
+    cache.put(PackedBoard.ALL_VALUES ^ 1, 300, Direction.UP);
+    t.checkExpect(cache.get(PackedBoard.SOLVED), -1);
+    t.checkExpect(cache.get(PackedBoard.ALL_VALUES ^ 1), -1);
+    t.checkExpect(cache.hits.sum(), 1L);
+    t.checkExpect(cache.misses.sum(), 3L);
+    t.checkExpect(cache.stats(), "hits 1, misses 3, evictions 0");
+  }
+
+  // tests that a full cache evicts the entry used least recently
+  void testEviction(Tester t) {
+    HintCache cache = this.cache(BoardShape.FOUR_BY_FOUR, 4);
+    for (int i = 1; i <= 4; i++) {
+      cache.put(i, i, Direction.DOWN);
+    }
+    t.checkExpect(cache.evictions.sum(), 0L);
+    // the first board is used again, so the second is the oldest
+    cache.clock.addAndGet(10);
+    t.checkExpect(HintCache.distance(cache.get(1)), 1);
+    cache.put(5, 5, Direction.DOWN);
+    t.checkExpect(cache.evictions.sum(), 1L);
+    t.checkExpect(cache.get(2), -1);
+    t.checkExpect(HintCache.distance(cache.get(1)), 1);
+    t.checkExpect(HintCache.distance(cache.get(5)), 5);
+
+    // memory does not grow however many boards go in
+    for (int i = 6; i < 10000; i++) {
+      cache.put(i, 1, Direction.UP);
+    }
+    t.checkExpect(cache.entries.length(), 8);
+    t.checkExpect(cache.evictions.sum(), 9995L);
+  }
+
+  // tests that hints come from the cache after the first solve
+  void testHint(Tester t) {
+    HintCache cache = this.cache(BoardShape.FOUR_BY_FOUR, 1 << 12);
+    PackedBoard board = new PackedBoard(new PuzzleGenerator(24).nextWithLength(30));
+    int hint = cache.hint(board);
+    t.checkExpect(HintCache.distance(hint), 30);
+    t.checkExpect(cache.misses.sum(), 1L);
+
+    // following the hints solves the board optimally, and every one is a hit
+    ABoard b = board.copy();
+    int moves = 0;
+    while (!b.isSolved()) {
+      b.move(HintCache.move(cache.hint(b)));
+      moves++;
+    }
+    t.checkExpect(moves, 30);
+    t.checkExpect(cache.hits.sum(), 30L);
+    t.checkExpect(cache.misses.sum(), 1L);
+    t.checkExpect(cache.hint(b), 0);
+
+    FifteenGame game = new FifteenGame(board.copy());
+    t.checkExpect(game.hint(cache), HintCache.move(hint));
+    t.checkExpect(new FifteenGame(new PackedBoard(PackedBoard.SOLVED)).hint(cache), null);
+  }
+
+  // tests that concurrent readers never see another board's hint
+  void testConcurrent(Tester t) throws Exception {
+    HintCache cache = this.cache(BoardShape.FOUR_BY_FOUR, 64);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (int thread = 0; thread < 4; thread++) {
+        int first = thread;
+        results.add(pool.submit(() -> {
+          boolean right = true;
+          for (int i = 0; i < 100000; i++) {
+            // every board's distance is fixed by the board itself
+            long cells = (i * 4 + first) % 1000 + 1;
+            cache.put(cells, (int) (cells % 200) + 1, Direction.ALL[(int) (cells & 3)]);
+            int hint = cache.get((i * 7 + first) % 1000 + 1);
+            long other = (i * 7 + first) % 1000 + 1;
+            right &= hint < 0 || (HintCache.distance(hint) == other % 200 + 1
+                && HintCache.move(hint).ordinal() == (other & 3));
+          }
+          return right;
+        }));
+      }
+      boolean right = true;
+      for (Future<Boolean> result : results) {
+        right &= result.get();
+      }
+      t.checkExpect(right, true);
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  // tests for errors
+  void testErrors(Tester t) {
+    t.checkConstructorException(
+        new IllegalArgumentException("Capacity must be from 4 to 268435456"), "HintCache",
+        BoardShape.FOUR_BY_FOUR, 3, null);
+    t.checkConstructorException(
+        new IllegalArgumentException("Packed boards can hold at most 16 cells"), "HintCache",
+        new BoardShape(5, 5), 16, null);
+    HintCache cache = this.cache(BoardShape.FOUR_BY_FOUR, 16);
+    t.checkException(new IllegalArgumentException("Board is not 4x4"), cache, "hint",
+        new PuzzleGenerator(1).deal(new BoardShape(3, 3)));
+    t.checkException(new IllegalArgumentException("Board is not solvable"), cache, "hint",
+        new PackedBoard(0x0FEDCBA987654312L));
+    t.checkException(new IllegalArgumentException("This cache has no solver"),
+        new HintCache(BoardShape.FOUR_BY_FOUR, 16), "hint",
+        new PackedBoard(new PuzzleGenerator(2).nextWithLength(10)));
+  }
+}
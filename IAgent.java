@@ -0,0 +1,207 @@
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import tester.*;
+
+//Plays games without a display, one move at a time
+//an agent plays one game at a time and is never shared between threads
+interface IAgent {
+  // prepares to play the given game, using the given source of randomness
+  void start(GameCore game, SplittableRandom random);
+
+  // returns the next move to make in the game, or null to give up
+  Direction next(GameCore game);
+}
+
+//Moves the space at random, never undoing the move before
+class RandomWalkAgent implements IAgent {
+  // the source of randomness for the current game
+  SplittableRandom random;
+  // the ordinal of the last move, or -1
+  int previous;
+
+  // prepares to play the given game
+  public void start(GameCore game, SplittableRandom random) {
+    this.random = random;
+    this.previous = -1;
+  }
+
+  // returns a random move that stays on the board and does not undo the last one
+  public Direction next(GameCore game) {
+    int[] neighbors = game.board.shape.neighbors;
+    int base = game.board.blank << 2;
+    int d = this.random.nextInt(4);
+    while (neighbors[base | d] < 0 || (d ^ 1) == this.previous) {
+      d = this.random.nextInt(4);
+    }
+    this.previous = d;
+    return Direction.ALL[d];
+  }
+}
+
+//Makes the move that lowers the Manhattan distance the most, breaking ties at
+//random, and now and then a random move to get off plateaus
+class GreedyAgent implements IAgent {
+  // the chance of a random move instead of the best one
+  double exploration;
+  // the shape the distance table was built for
+  BoardShape shape;
+  // the Manhattan distance of every value from every index, for the shape
+  int[] distances;
+  // the source of randomness for the current game
+  SplittableRandom random;
+  // the ordinal of the last move, or -1
+  int previous;
+
+  // Constructor that takes in the chance of a random move
+  GreedyAgent(double exploration) {
+    this.exploration = exploration;
+  }
+
+  // Constructor for an agent that makes a random move one time in ten
+  GreedyAgent() {
+    this(0.1);
+  }
+
+  // prepares to play the given game
+  public void start(GameCore game, SplittableRandom random) {
+    if (this.shape == null || !this.shape.sameShape(game.board.shape)) {
+      this.shape = game.board.shape;
+      this.distances = GridSolver.buildDistances(this.shape);
+    }
+    this.random = random;
+    this.previous = -1;
+  }
+
+  // returns the move that lowers the Manhattan distance the most
+  public Direction next(GameCore game) {
+    ABoard board = game.board;
+    int[] neighbors = board.shape.neighbors;
+    int size = board.shape.size;
+    int blank = board.blank;
+    boolean explore = this.random.nextDouble() < this.exploration;
+
+    int best = -1;
+    int bestChange = Integer.MAX_VALUE;
+    int ties = 0;
+    for (int d = 0; d < 4; d++) {
+      int other = neighbors[(blank << 2) | d];
+      if (other >= 0 && (d ^ 1) != this.previous) {
+        int tile = board.get(other);
+        // exploring treats every move as equally good
+        int change = explore ? 0
+            : this.distances[tile * size + blank] - this.distances[tile * size + other];
+        if (change < bestChange) {
+          best = d;
+          bestChange = change;
+          ties = 1;
+        }
+        else if (change == bestChange) {
+          // keep each of the tied moves with the same chance
+          ties++;
+          if (this.random.nextInt(ties) == 0) {
+            best = d;
+          }
+        }
+      }
+    }
+    this.previous = best;
+    return Direction.ALL[best];
+  }
+}
+
+//Solves the board when the game starts and plays the solution
+//4x4 boards use a Solver, with the pattern database if there is one, and other
+//shapes a GridSolver, which is only quick enough for small boards
+class SolverAgent implements IAgent {
+  // the solver
+  ISolver solver;
+  // the moves of the solution for the current game
+  ArrayList<Direction> plan = new ArrayList<Direction>();
+  // the index of the next move of the plan
+  int step;
+
+  // Constructor that takes in the pattern database to solve with, or null
+  SolverAgent(PatternDatabase patterns) {
+    this(new Solver(patterns));
+  }
+
+  // Constructor that takes in the solver to solve with
+  SolverAgent(ISolver solver) {
+    this.solver = solver;
+  }
+
+  // solves the game
+  public void start(GameCore game, SplittableRandom random) {
+    this.plan.clear();
+    this.step = 0;
+    for (String k : this.solver.solve(game.board)) {
+      this.plan.add(Direction.fromKey(k));
+    }
+  }
+
+  // returns the next move of the solution, or null once it has been played
+  public Direction next(GameCore game) {
+    if (this.step == this.plan.size()) {
+      return null;
+    }
+    else {
+      this.step++;
+      return this.plan.get(this.step - 1);
+    }
+  }
+}
+
+class ExamplesAgents {
+  // plays the game with the agent until it is won or the agent has made the given
+  // number of moves
+  GameCore play(IAgent agent, GameCore game, long seed, int moves) {
+    agent.start(game, new SplittableRandom(seed));
+    for (int i = 0; i < moves && !game.isWon(); i++) {
+      Direction d = agent.next(game);
+      if (d == null || !game.move(d)) {
+        return game;
+      }
+    }
+    return game;
+  }
+
+  // tests for RandomWalkAgent
+  void testRandomWalk(Tester t) {
+    GameCore game = new GameCore(new PackedBoard(PackedBoard.SOLVED), false);
+    IAgent agent = new RandomWalkAgent();
+    agent.start(game, new SplittableRandom(1));
+    boolean allLegal = true;
+    for (int i = 0; i < 1000; i++) {
+      allLegal = allLegal && game.move(agent.next(game));
+    }
+    t.checkExpect(allLegal, true);
+
+    // a 2x2 board has only 12 positions, so a walk soon finds the goal
+    GameCore small = new GameCore(new PuzzleGenerator(2).walk(new BoardShape(2, 2), 5), false);
+    t.checkExpect(this.play(agent, small, 3, 10000).isWon(), true);
+  }
+
+  // tests for GreedyAgent
+  void testGreedy(Tester t) {
+    // one move from the goal, the greedy move solves it
+    GameCore game = new GameCore(new PackedBoard(0xCFED0BA987654321L), false);
+    IAgent agent = new GreedyAgent(0);
+    agent.start(game, new SplittableRandom(1));
+    t.checkExpect(agent.next(game), Direction.UP);
+
+    GameCore three = new GameCore(new PuzzleGenerator(4).walk(new BoardShape(3, 3), 30), false);
+    t.checkExpect(this.play(new GreedyAgent(), three, 5, 100000).isWon(), true);
+  }
+
+  // tests for SolverAgent
+  void testSolver(Tester t) {
+    IAgent agent = new SolverAgent((PatternDatabase) null);
+    GameCore game = new GameCore(new PackedBoard(0xCFE08BAD47693215L), false);
+    this.play(agent, game, 1, 100);
+    t.checkExpect(game.isWon(), true);
+    t.checkExpect(agent.next(game), null);
+
+    GameCore three = new GameCore(new PuzzleGenerator(6).deal(new BoardShape(3, 3)), false);
+    t.checkExpect(this.play(agent, three, 1, 100).isWon(), true);
+  }
+}
@@ -0,0 +1,336 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.function.Supplier;
+import tester.*;
+
+//Estimates the number of moves left from a 4x4 board, for IDA*
+//an estimate must never be more than the fewest moves that solve the board, and
+//must be 0 only for the solved board, which is how the search finds the goal
+//a heuristic follows one board through a search: it is reset to the board and
+//told of every slide, so it can update its estimate rather than recompute it
+//every search needs its own, so they are passed around as suppliers
+interface IHeuristic {
+  // starts following the given packed board, and returns its estimate
+  int reset(long cells);
+
+  // follows the given tile sliding from the given index into the space at the
+  // other, which left the given packed board, and returns its estimate
+  int slide(long cells, int tile, int from, int to);
+
+  // returns how to make the heuristic with the given name, using the given tables if
+  // it needs them, from the least memory to the most
+  //   manhattan         Manhattan distance, from a table of 256 ints
+  //   conflict          Manhattan distance plus linear conflict, from 512 KB of tables
+  //   walking           walking distance, from a WalkingDistance table of about 600 KB
+  //   walking-conflict  the larger of walking and conflict
+  //   patterns          the larger of conflict and the pattern database on the board
+  //                     and its reflection, as Solver uses it
+  //   all               the larger of walking, conflict and patterns
+  static Supplier<IHeuristic> named(String name, PatternDatabase patterns,
+      WalkingDistance walking) {
+    if ((name.equals("walking") || name.equals("walking-conflict") || name.equals("all"))
+        && walking == null) {
+      throw new IllegalArgumentException("The " + name + " heuristic needs walking distances");
+    }
+    if ((name.equals("patterns") || name.equals("all")) && patterns == null) {
+      throw new IllegalArgumentException("The " + name + " heuristic needs a pattern database");
+    }
+    switch (name) {
+      case "manhattan":
+        return () -> new ManhattanHeuristic();
+      case "conflict":
+        return () -> new ConflictHeuristic();
+      case "walking":
+        return () -> new WalkingDistanceHeuristic(walking);
+      case "walking-conflict":
+        return () -> new MaxHeuristic(new WalkingDistanceHeuristic(walking),
+            new ConflictHeuristic());
+      case "patterns":
+        return () -> new MaxHeuristic(new ConflictHeuristic(), new PatternHeuristic(patterns));
+      case "all":
+        return () -> new MaxHeuristic(new WalkingDistanceHeuristic(walking),
+            new ConflictHeuristic(), new PatternHeuristic(patterns));
+      default:
+        throw new IllegalArgumentException("Unknown heuristic: " + name);
+    }
+  }
+}
+
+//The sum of the Manhattan distances of the tiles from their goal cells
+class ManhattanHeuristic implements IHeuristic {
+  // the Manhattan distance of the board being followed
+  int manhattan;
+
+  // starts following the given board, and returns its Manhattan distance
+  public int reset(long cells) {
+    this.manhattan = 0;
+    for (int index = 0; index < 16; index++) {
+      this.manhattan += Solver.MANHATTAN[((int) (cells >>> (index * 4)) & 0xF) * 16 + index];
+    }
+    return this.manhattan;
+  }
+
+  // follows the slide of the given tile, and returns the new Manhattan distance
+  public int slide(long cells, int tile, int from, int to) {
+    this.manhattan += Solver.MANHATTAN[tile * 16 + to] - Solver.MANHATTAN[tile * 16 + from];
+    return this.manhattan;
+  }
+}
+
+//Manhattan distance plus linear conflict, the heuristic Solver uses by default
+class ConflictHeuristic extends ManhattanHeuristic {
+  // the linear conflict of each row and column of the board being followed
+  int[] rowConflicts = new int[4];
+  int[] columnConflicts = new int[4];
+  // the sum of all row and column conflicts
+  int conflicts;
+
+  // starts following the given board, and returns its estimate
+  public int reset(long cells) {
+    super.reset(cells);
+    this.conflicts = 0;
+    for (int line = 0; line < 4; line++) {
+      this.rowConflicts[line] = Solver.ROW_CONFLICTS[line * 65536
+          + ((int) (cells >>> (line * 16)) & 0xFFFF)];
+      this.columnConflicts[line] = Solver.COLUMN_CONFLICTS[line * 65536
+          + Solver.columnBits(cells, line)];
+      this.conflicts += this.rowConflicts[line] + this.columnConflicts[line];
+    }
+    return this.manhattan + this.conflicts;
+  }
+
+  // follows the slide of the given tile, and returns the new estimate
+  // a tile that moves along a row keeps its order within the row, so only the two
+  // columns it left and entered change, and the same goes for columns
+  public int slide(long cells, int tile, int from, int to) {
+    super.slide(cells, tile, from, to);
+    if (from / 4 == to / 4) {
+      this.updateColumn(cells, from % 4);
+      this.updateColumn(cells, to % 4);
+    }
+    else {
+      this.updateRow(cells, from / 4);
+      this.updateRow(cells, to / 4);
+    }
+    return this.manhattan + this.conflicts;
+  }
+
+  // recomputes the linear conflict of the given row of the given board
+  void updateRow(long cells, int row) {
+    int conflict = Solver.ROW_CONFLICTS[row * 65536 + ((int) (cells >>> (row * 16)) & 0xFFFF)];
+    this.conflicts += conflict - this.rowConflicts[row];
+    this.rowConflicts[row] = conflict;
+  }
+
+  // recomputes the linear conflict of the given column of the given board
+  void updateColumn(long cells, int col) {
+    int conflict = Solver.COLUMN_CONFLICTS[col * 65536 + Solver.columnBits(cells, col)];
+    this.conflicts += conflict - this.columnConflicts[col];
+    this.columnConflicts[col] = conflict;
+  }
+}
+
+//The larger of a pattern database's values on the board and on its reflection
+//a database whose groups leave tiles out can be 0 on boards that are not solved,
+//so it must be part of a MaxHeuristic with one that is not
+class PatternHeuristic implements IHeuristic {
+  // the pattern database
+  PatternDatabase patterns;
+  // the index of every tile on the board being followed and on its reflection
+  int[] positions = new int[16];
+  int[] mirrorPositions = new int[16];
+  // the pattern database value of every group on the board and on its reflection
+  int[] groupValues;
+  int[] mirrorValues;
+  // the sums of the group values on the board and on its reflection
+  int patternSum;
+  int mirrorSum;
+
+  // Constructor that takes in the pattern database
+  PatternHeuristic(PatternDatabase patterns) {
+    this.patterns = patterns;
+    this.groupValues = new int[patterns.groups.length];
+    this.mirrorValues = new int[patterns.groups.length];
+  }
+
+  // starts following the given board, and returns its estimate
+  public int reset(long cells) {
+    for (int index = 0; index < 16; index++) {
+      int tile = (int) (cells >>> (index * 4)) & 0xF;
+      this.positions[tile] = index;
+      this.mirrorPositions[PatternDatabase.MIRROR_TILE[tile]] = PatternDatabase.MIRROR_CELL[index];
+    }
+    this.patternSum = 0;
+    this.mirrorSum = 0;
+    for (int g = 0; g < this.groupValues.length; g++) {
+      this.groupValues[g] = this.patterns.lookup(g, this.positions);
+      this.mirrorValues[g] = this.patterns.lookup(g, this.mirrorPositions);
+      this.patternSum += this.groupValues[g];
+      this.mirrorSum += this.mirrorValues[g];
+    }
+    return Math.max(this.patternSum, this.mirrorSum);
+  }
+
+  // follows the slide of the given tile, and returns the new estimate
+  // only the group of the moved tile changes, on the board and on its reflection
+  public int slide(long cells, int tile, int from, int to) {
+    this.positions[tile] = to;
+    int group = this.patterns.groupOf[tile];
+    if (group >= 0) {
+      int value = this.patterns.lookup(group, this.positions);
+      this.patternSum += value - this.groupValues[group];
+      this.groupValues[group] = value;
+    }
+
+    int mirrored = PatternDatabase.MIRROR_TILE[tile];
+    this.mirrorPositions[mirrored] = PatternDatabase.MIRROR_CELL[to];
+    group = this.patterns.groupOf[mirrored];
+    if (group >= 0) {
+      int value = this.patterns.lookup(group, this.mirrorPositions);
+      this.mirrorSum += value - this.mirrorValues[group];
+      this.mirrorValues[group] = value;
+    }
+    return Math.max(this.patternSum, this.mirrorSum);
+  }
+}
+
+//The largest estimate of several heuristics, which never overestimates when none
+//of them does
+class MaxHeuristic implements IHeuristic {
+  // the heuristics that are combined
+  IHeuristic[] parts;
+
+  // Constructor that takes in the heuristics to combine
+  MaxHeuristic(IHeuristic... parts) {
+    if (parts.length == 0) {
+      throw new IllegalArgumentException("Expected at least one heuristic");
+    }
+    this.parts = parts;
+  }
+
+  // starts every heuristic following the given board, and returns the largest estimate
+  public int reset(long cells) {
+    int h = 0;
+    for (IHeuristic part : this.parts) {
+      h = Math.max(h, part.reset(cells));
+    }
+    return h;
+  }
+
+  // follows the slide with every heuristic, and returns the largest estimate
+  public int slide(long cells, int tile, int from, int to) {
+    int h = 0;
+    for (IHeuristic part : this.parts) {
+      h = Math.max(h, part.slide(cells, tile, from, to));
+    }
+    return h;
+  }
+}
+
+class ExamplesHeuristic {
+  // the names of the heuristics that need no pattern database
+  static final String[] NAMES = { "manhattan", "conflict", "walking", "walking-conflict" };
+
+  WalkingDistance walking = WalkingDistance.build();
+
+  // tests that following a random walk gives the same estimates as starting over
+  void testSlide(Tester t) {
+    PatternDatabase patterns = PatternDatabase.build(ExamplesPatternDatabase.SMALL);
+    String[] names = { "manhattan", "conflict", "walking", "walking-conflict", "patterns",
+        "all" };
+    Random r = new Random(8);
+    for (String name : names) {
+      IHeuristic followed = IHeuristic.named(name, patterns, this.walking).get();
+      IHeuristic fresh = IHeuristic.named(name, patterns, this.walking).get();
+      long cells = PackedBoard.SOLVED;
+      int blank = 15;
+      t.checkExpect(followed.reset(cells), 0);
+      boolean same = true;
+      for (int i = 0; i < 200; i++) {
+        int from = PackedBoard.NEIGHBORS[(blank << 2) | r.nextInt(4)];
+        if (from >= 0) {
+          int tile = (int) (cells >>> (from * 4)) & 0xF;
+          cells = PackedBoard.slide(cells, blank, from);
+          same &= followed.slide(cells, tile, from, blank) == fresh.reset(cells);
+          blank = from;
+        }
+      }
+      t.checkExpect(same, true);
+    }
+  }
+
+  // tests that every estimate is admissible and ordered as expected
+  void testEstimates(Tester t) {
+    IHeuristic manhattan = new ManhattanHeuristic();
+    IHeuristic conflict = new ConflictHeuristic();
+    IHeuristic walking = new WalkingDistanceHeuristic(this.walking);
+    IHeuristic max = new MaxHeuristic(walking, conflict);
+    PuzzleGenerator generator = new PuzzleGenerator(9);
+    boolean ordered = true;
+    for (int i = 0; i < 16; i++) {
+      int length = 10 + i * 2;
+      long cells = generator.nextWithLength(length);
+      int m = manhattan.reset(cells);
+      int c = conflict.reset(cells);
+      int w = walking.reset(cells);
+      int h = max.reset(cells);
+      ordered &= m <= c && m <= w && h == Math.max(c, w) && h <= length;
+    }
+    t.checkExpect(ordered, true);
+    // 2 1 swapped in the first row
+    t.checkExpect(manhattan.reset(0x0FEDCBA987654312L), 2);
+    t.checkExpect(conflict.reset(0x0FEDCBA987654312L), 4);
+    t.checkExpect(Solver.estimate(0x0FEDCBA987654312L), 4);
+  }
+
+  // tests that a solver with any heuristic finds optimal solutions
+  void testSolve(Tester t) {
+    PuzzleGenerator generator = new PuzzleGenerator(10);
+    for (String name : NAMES) {
+      Supplier<IHeuristic> heuristics = IHeuristic.named(name, null, this.walking);
+      Solver solver = new Solver(heuristics.get());
+      for (int length = 12; length <= 30; length += 6) {
+        long cells = generator.nextWithLength(length);
+        ArrayList<String> keys = solver.solve(cells);
+        t.checkExpect(keys.size(), length);
+        t.checkExpect(MoveSequence.apply(cells, BoardShape.FOUR_BY_FOUR,
+            MoveSequence.letters(keys), new MoveResult()).solved, true);
+      }
+    }
+
+    // a better heuristic expands fewer states on the same board
+    long cells = generator.nextWithLength(34);
+    Solver manhattan = new Solver(new ManhattanHeuristic());
+    Solver walking = new Solver(new WalkingDistanceHeuristic(this.walking));
+    t.checkExpect(walking.solve(cells).size(), manhattan.solve(cells).size());
+    t.checkExpect(walking.nodes() < manhattan.nodes(), true);
+  }
+
+  // tests for errors
+  void testErrors(Tester t) {
+    t.checkException(new IllegalArgumentException("Unknown heuristic: x"), this, "named", "x");
+    t.checkException(new IllegalArgumentException("The walking heuristic needs walking distances"),
+        this, "named", "walking");
+    t.checkException(
+        new IllegalArgumentException("The patterns heuristic needs a pattern database"), this,
+        "named", "patterns");
+    t.checkConstructorException(new IllegalArgumentException("Expected at least one heuristic"),
+        "MaxHeuristic", (Object) new IHeuristic[0]);
+  }
+
+  // returns how to make the heuristic of the given name, without any tables
+  Supplier<IHeuristic> named(String name) {
+    return IHeuristic.named(name, null, null);
+  }
+
+  // tests that loading a pattern database for the heuristics works like Solver's
+  void testPatterns(Tester t) {
+    PatternDatabase patterns = PatternDatabase.build(ExamplesPatternDatabase.SMALL);
+    Solver plugged = new Solver(IHeuristic.named("patterns", patterns, null).get());
+    Solver builtIn = new Solver(patterns);
+    long cells = new PuzzleGenerator(11).nextWithLength(30);
+    t.checkExpect(plugged.solve(cells).size(), 30);
+    builtIn.solve(cells);
+    t.checkExpect(plugged.nodes(), builtIn.nodes());
+  }
+}
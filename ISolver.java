@@ -0,0 +1,29 @@
+import java.util.ArrayList;
+import java.util.function.Supplier;
+
+//A way of finding optimal solutions to boards
+interface ISolver {
+  // returns an optimal list of keys that solves the given board
+  ArrayList<String> solve(ABoard board);
+
+  // returns the number of states expanded by the last solve
+  long nodes();
+
+  // returns how to make the solver with the given name, using the given pattern
+  // database if it needs one
+  //   ida            iterative deepening A*
+  //   bidirectional  breadth-first from both ends, and IDA* if that needs too much memory
+  //   parallel       IDA* on the common ForkJoinPool
+  static Supplier<ISolver> named(String name, PatternDatabase patterns) {
+    switch (name) {
+      case "ida":
+        return () -> new Solver(patterns);
+      case "bidirectional":
+        return () -> new BidirectionalSolver(patterns);
+      case "parallel":
+        return () -> new ParallelSolver(patterns);
+      default:
+        throw new IllegalArgumentException("Unknown solver: " + name);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import tester.*;
+
+//Plays many sessions against a GameServer and reports move latency
+//usage: java LoadGenerator <port> <connections> <sessions per connection>
+//           <moves per session>
+//every connection opens its sessions, then makes one random move at a time in
+//each of them in turn, timing every request from send to reply
+class LoadGenerator {
+  // the port of the server on the loopback address
+  int port;
+  // the number of connections, the sessions each opens, and the moves made in each
+  int connections;
+  int sessionsPerConnection;
+  int movesPerSession;
+
+  // Constructor that takes in the port and the size of the load
+  LoadGenerator(int port, int connections, int sessionsPerConnection, int movesPerSession) {
+    this.port = port;
+    this.connections = connections;
+    this.sessionsPerConnection = sessionsPerConnection;
+    this.movesPerSession = movesPerSession;
+  }
+
+  // runs the load generator from the command line
+  public static void main(String[] args)
+      throws IOException, InterruptedException, ExecutionException {
+    if (args.length < 4) {
+      System.err.println("usage: java LoadGenerator <port> <connections>"
+          + " <sessions per connection> <moves per session>");
+      System.exit(2);
+    }
+    LoadGenerator load = new LoadGenerator(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+        Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+
+    long start = System.nanoTime();
+    long[] latencies = load.run();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println(LoadGenerator.report(latencies, seconds));
+  }
+
+  // plays every session and returns the latency of every move, in nanoseconds, sorted
+  long[] run() throws InterruptedException, ExecutionException {
+    ExecutorService pool = GameServer.newThreadPerTaskExecutor();
+    ArrayList<Future<long[]>> parts = new ArrayList<Future<long[]>>();
+    try {
+      for (int c = 0; c < this.connections; c++) {
+        long seed = c;
+        parts.add(pool.submit(() -> this.play(seed)));
+      }
+
+      long[] all = new long[this.connections * this.sessionsPerConnection * this.movesPerSession];
+      int count = 0;
+      for (Future<long[]> part : parts) {
+        long[] latencies = part.get();
+        System.arraycopy(latencies, 0, all, count, latencies.length);
+        count += latencies.length;
+      }
+      Arrays.sort(all);
+      return all;
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  // plays the sessions of one connection and returns the latency of every move
+  long[] play(long seed) throws IOException {
+    SplittableRandom random = new SplittableRandom(seed);
+    long[] latencies = new long[this.sessionsPerConnection * this.movesPerSession];
+    int count = 0;
+
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), this.port);
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        BufferedWriter out = new BufferedWriter(
+            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+      socket.setTcpNoDelay(true);
+      String[] ids = new String[this.sessionsPerConnection];
+      for (int s = 0; s < ids.length; s++) {
+        ids[s] = LoadGenerator.request(in, out, "new").split(" ")[1];
+      }
+
+      for (int m = 0; m < this.movesPerSession; m++) {
+        for (String id : ids) {
+          String key = Direction.ALL[random.nextInt(4)].key;
+          long start = System.nanoTime();
+          LoadGenerator.request(in, out, id + " " + key);
+          latencies[count] = System.nanoTime() - start;
+          count++;
+        }
+      }
+
+      for (String id : ids) {
+        LoadGenerator.request(in, out, id + " end");
+      }
+    }
+    return latencies;
+  }
+
+  // sends one request and returns its reply
+  static String request(BufferedReader in, BufferedWriter out, String line) throws IOException {
+    out.write(line);
+    out.write('\n');
+    out.flush();
+    String reply = in.readLine();
+    if (reply == null || !reply.startsWith("ok")) {
+      throw new IOException("Request " + line + " failed: " + reply);
+    }
+    return reply;
+  }
+
+  // returns the latency of the given fraction of the sorted latencies
+  static long percentile(long[] sorted, double fraction) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(fraction * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+  }
+
+  // returns a summary of the sorted latencies of a run that took the given time
+  static String report(long[] sorted, double seconds) {
+    return String.format("%d moves in %.3f s: %.0f moves/s, latency p50 %d us, p99 %d us,"
+        + " p99.9 %d us, max %d us", sorted.length, seconds, sorted.length / seconds,
+        LoadGenerator.percentile(sorted, 0.5) / 1000, LoadGenerator.percentile(sorted, 0.99) / 1000,
+        LoadGenerator.percentile(sorted, 0.999) / 1000,
+        LoadGenerator.percentile(sorted, 1.0) / 1000);
+  }
+}
+
+class ExamplesLoadGenerator {
+  // tests a small load against a local server
+  void testRun(Tester t) throws Exception {
+    GameServer server = new GameServer(64);
+    server.start(0);
+    try {
+      long[] latencies = new LoadGenerator(server.port(), 4, 5, 20).run();
+      t.checkExpect(latencies.length, 400);
+      t.checkExpect(latencies[0] > 0, true);
+      t.checkExpect(server.sessions.moves.sum() <= 400, true);
+      t.checkExpect(server.sessions.open.get(), 0);
+    }
+    finally {
+      server.close();
+    }
+  }
+
+  // tests for percentile
+  void testPercentile(Tester t) {
+    long[] sorted = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+    t.checkExpect(LoadGenerator.percentile(sorted, 0.5), 5L);
+    t.checkExpect(LoadGenerator.percentile(sorted, 0.99), 10L);
+    t.checkExpect(LoadGenerator.percentile(sorted, 0.0), 1L);
+    t.checkExpect(LoadGenerator.percentile(new long[0], 0.5), 0L);
+  }
+}
@@ -0,0 +1,164 @@
+import java.util.Arrays;
+import tester.*;
+
+//A set of longs, without boxing, for visited sets of packed boards and hashes
+//keys live in one array, probed linearly from a slot picked by multiplying the
+//key by the golden ratio, so keys that differ only in high bits still spread out
+//0 marks an empty slot, so whether 0 is in the set is kept apart
+class LongHashSet {
+  // the table is doubled before more than this fraction of it is full
+  static final double MAX_LOAD = 0.6;
+  // the most slots a table can have
+  static final int MAX_CAPACITY = 1 << 30;
+
+  // the keys, or 0 in empty slots; the length is a power of two
+  long[] keys;
+  // the number of keys in the table, 0 not included
+  int size;
+  // whether 0 is in the set
+  boolean hasZero;
+
+  // Constructor for an empty set
+  LongHashSet() {
+    this(8);
+  }
+
+  // Constructor for an empty set that holds the given number of keys without growing
+  LongHashSet(int expected) {
+    this.keys = new long[LongHashSet.capacityFor(expected)];
+  }
+
+  // returns the number of slots a table needs to hold the given number of keys
+  static int capacityFor(int expected) {
+    if (expected < 0 || expected > MAX_CAPACITY * MAX_LOAD) {
+      throw new IllegalArgumentException("Expected size must be from 0 to "
+          + (int) (MAX_CAPACITY * MAX_LOAD));
+    }
+    int capacity = 8;
+    while (capacity * MAX_LOAD < expected) {
+      capacity *= 2;
+    }
+    return capacity;
+  }
+
+  // returns the slot to start probing for the given key in a table with the given mask
+  static int slot(long key, int mask) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  // returns whether the given key is in the set
+  boolean contains(long key) {
+    if (key == 0) {
+      return this.hasZero;
+    }
+    int mask = this.keys.length - 1;
+    int i = LongHashSet.slot(key, mask);
+    while (this.keys[i] != 0) {
+      if (this.keys[i] == key) {
+        return true;
+      }
+      i = (i + 1) & mask;
+    }
+    return false;
+  }
+
+  // adds the given key
+  // returns whether it was not in the set already
+  boolean add(long key) {
+    if (key == 0) {
+      boolean added = !this.hasZero;
+      this.hasZero = true;
+      return added;
+    }
+    int mask = this.keys.length - 1;
+    int i = LongHashSet.slot(key, mask);
+    while (this.keys[i] != 0) {
+      if (this.keys[i] == key) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+    this.keys[i] = key;
+    this.size++;
+    if (this.size > this.keys.length * MAX_LOAD) {
+      this.grow();
+    }
+    return true;
+  }
+
+  // doubles the table
+  void grow() {
+    if (this.keys.length == MAX_CAPACITY) {
+      throw new IllegalArgumentException("Too many keys");
+    }
+    long[] old = this.keys;
+    this.keys = new long[old.length * 2];
+    int mask = this.keys.length - 1;
+    for (long key : old) {
+      if (key != 0) {
+        int i = LongHashSet.slot(key, mask);
+        while (this.keys[i] != 0) {
+          i = (i + 1) & mask;
+        }
+        this.keys[i] = key;
+      }
+    }
+  }
+
+  // returns the number of keys in the set
+  int size() {
+    return this.size + (this.hasZero ? 1 : 0);
+  }
+
+  // removes every key, keeping the table
+  void clear() {
+    Arrays.fill(this.keys, 0);
+    this.size = 0;
+    this.hasZero = false;
+  }
+}
+
+class ExamplesLongHashSet {
+  // tests for add and contains
+  void testAdd(Tester t) {
+    LongHashSet set = new LongHashSet();
+    t.checkExpect(set.add(PackedBoard.SOLVED), true);
+    t.checkExpect(set.add(PackedBoard.SOLVED), false);
+    t.checkExpect(set.add(0), true);
+    t.checkExpect(set.add(0), false);
+    t.checkExpect(set.add(-1), true);
+    t.checkExpect(set.contains(PackedBoard.SOLVED), true);
+    t.checkExpect(set.contains(0), true);
+    t.checkExpect(set.contains(-1), true);
+    t.checkExpect(set.contains(1), false);
+    t.checkExpect(set.size(), 3);
+
+    set.clear();
+    t.checkExpect(set.size(), 0);
+    t.checkExpect(set.contains(0), false);
+    t.checkExpect(set.contains(PackedBoard.SOLVED), false);
+  }
+
+  // tests that the set grows and keeps every key
+  void testGrow(Tester t) {
+    LongHashSet set = new LongHashSet(0);
+    t.checkExpect(set.keys.length, 8);
+    // keys that differ only in their high bits
+    for (long i = 1; i <= 10000; i++) {
+      set.add(i << 40);
+    }
+    t.checkExpect(set.size(), 10000);
+    t.checkExpect(set.keys.length, 32768);
+    boolean all = true;
+    for (long i = 1; i <= 10000; i++) {
+      all &= set.contains(i << 40);
+    }
+    t.checkExpect(all, true);
+    t.checkExpect(set.contains(10001L << 40), false);
+    t.checkExpect(new LongHashSet(100).keys.length, 256);
+    t.checkConstructorException(
+        new IllegalArgumentException("Expected size must be from 0 to 644245094"),
+        "LongHashSet", -1);
+  }
+}
@@ -0,0 +1,145 @@
+import java.util.Arrays;
+import tester.*;
+
+//A map from longs to longs, without boxing, for transposition tables keyed by
+//packed boards or hashes
+//probed the same way as a LongHashSet, with the values in a parallel array
+class LongLongMap {
+  // the keys, or 0 in empty slots; the length is a power of two
+  long[] keys;
+  // the value of the key in the same slot
+  long[] values;
+  // the number of keys in the table, 0 not included
+  int size;
+  // whether 0 is a key, and its value
+  boolean hasZero;
+  long zeroValue;
+
+  // Constructor for an empty map
+  LongLongMap() {
+    this(8);
+  }
+
+  // Constructor for an empty map that holds the given number of keys without growing
+  LongLongMap(int expected) {
+    int capacity = LongHashSet.capacityFor(expected);
+    this.keys = new long[capacity];
+    this.values = new long[capacity];
+  }
+
+  // returns the slot of the given key, or the empty slot where it would go
+  int find(long key) {
+    int mask = this.keys.length - 1;
+    int i = LongHashSet.slot(key, mask);
+    while (this.keys[i] != 0 && this.keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  // returns whether the given key is in the map
+  boolean containsKey(long key) {
+    if (key == 0) {
+      return this.hasZero;
+    }
+    return this.keys[this.find(key)] != 0;
+  }
+
+  // returns the value of the given key, or the given default if it is not in the map
+  long getOrDefault(long key, long missing) {
+    if (key == 0) {
+      return this.hasZero ? this.zeroValue : missing;
+    }
+    int i = this.find(key);
+    return this.keys[i] != 0 ? this.values[i] : missing;
+  }
+
+  // sets the value of the given key
+  void put(long key, long value) {
+    if (key == 0) {
+      this.hasZero = true;
+      this.zeroValue = value;
+      return;
+    }
+    int i = this.find(key);
+    this.values[i] = value;
+    if (this.keys[i] == 0) {
+      this.keys[i] = key;
+      this.size++;
+      if (this.size > this.keys.length * LongHashSet.MAX_LOAD) {
+        this.grow();
+      }
+    }
+  }
+
+  // doubles the table
+  void grow() {
+    if (this.keys.length == LongHashSet.MAX_CAPACITY) {
+      throw new IllegalArgumentException("Too many keys");
+    }
+    long[] oldKeys = this.keys;
+    long[] oldValues = this.values;
+    this.keys = new long[oldKeys.length * 2];
+    this.values = new long[oldKeys.length * 2];
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldKeys[j] != 0) {
+        int i = this.find(oldKeys[j]);
+        this.keys[i] = oldKeys[j];
+        this.values[i] = oldValues[j];
+      }
+    }
+  }
+
+  // returns the number of keys in the map
+  int size() {
+    return this.size + (this.hasZero ? 1 : 0);
+  }
+
+  // removes every key, keeping the table
+  void clear() {
+    Arrays.fill(this.keys, 0);
+    this.size = 0;
+    this.hasZero = false;
+  }
+}
+
+class ExamplesLongLongMap {
+  // tests for put and get
+  void testPut(Tester t) {
+    LongLongMap map = new LongLongMap();
+    t.checkExpect(map.getOrDefault(PackedBoard.SOLVED, -1), -1L);
+    map.put(PackedBoard.SOLVED, 0);
+    map.put(0, 5);
+    map.put(-1, 7);
+    map.put(-1, 8);
+    t.checkExpect(map.getOrDefault(PackedBoard.SOLVED, -1), 0L);
+    t.checkExpect(map.getOrDefault(0, -1), 5L);
+    t.checkExpect(map.getOrDefault(-1, -1), 8L);
+    t.checkExpect(map.containsKey(0), true);
+    t.checkExpect(map.containsKey(2), false);
+    t.checkExpect(map.size(), 3);
+
+    map.clear();
+    t.checkExpect(map.size(), 0);
+    t.checkExpect(map.containsKey(0), false);
+    t.checkExpect(map.getOrDefault(-1, 4), 4L);
+  }
+
+  // tests that the map grows and keeps every value
+  void testGrow(Tester t) {
+    LongLongMap map = new LongLongMap(0);
+    PuzzleGenerator generator = new PuzzleGenerator(5);
+    long[] boards = new long[5000];
+    for (int i = 0; i < boards.length; i++) {
+      boards[i] = generator.next();
+      map.put(boards[i], i);
+    }
+    t.checkExpect(map.size(), 5000);
+    boolean all = true;
+    for (int i = 0; i < boards.length; i++) {
+      all &= map.getOrDefault(boards[i], -1) == i;
+    }
+    t.checkExpect(all, true);
+    t.checkExpect(map.keys.length, 16384);
+  }
+}
@@ -0,0 +1,335 @@
+import java.util.Arrays;
+import tester.*;
+
+//Records the moves of a game, 2 bits each, in a ring that keeps the latest ones
+//moves are numbered from 0 for the whole game; once more moves are made than the
+//ring holds, the oldest are forgotten and can no longer be undone
+//a copy of the board is kept every so many moves, so jumping to any remembered
+//move replays at most half an interval of moves
+//the ring starts small and doubles as moves are made, up to its capacity, so a
+//short game keeps a short log; after that, recording, undoing and redoing never allocate
+class MoveLog {
+  // the number of moves remembered unless another capacity is given
+  // 2^20 moves take 256 KB, which only games that long grow to
+  static final int DEFAULT_CAPACITY = 1 << 20;
+  // the number of moves between copies of the board unless another is given
+  static final int DEFAULT_INTERVAL = 1024;
+  // the number of moves the ring has room for before it first grows
+  static final int INITIAL_MOVES = 1024;
+
+  // the number of moves the ring holds
+  int capacity;
+  // the number of moves between copies of the board
+  int interval;
+  // the moves, 32 per long, move i in the 2 bits at slot i % capacity
+  // grown as needed, until it holds capacity moves
+  long[] moves;
+  // the board after every multiple of interval moves, checkpoint k at index
+  // k % (capacity / interval + 2), or null where none was made yet
+  // grown as needed, like moves
+  ABoard[] checkpoints;
+
+  // the number of the oldest move that can be undone
+  long start;
+  // the number of moves made, less those undone
+  long position;
+  // the number of moves made before any were undone, which can be redone
+  long end;
+
+  // Constructor that takes in the board before the first move
+  MoveLog(ABoard board) {
+    this(board, DEFAULT_CAPACITY, DEFAULT_INTERVAL);
+  }
+
+  // Constructor that takes in the board before the first move, the number of moves
+  // to remember, and the number of moves between copies of the board
+  MoveLog(ABoard board, int capacity, int interval) {
+    if (capacity < 1 || interval < 1) {
+      throw new IllegalArgumentException("Capacity and interval must be positive");
+    }
+    this.capacity = capacity;
+    this.interval = interval;
+    this.moves = new long[(Math.min(capacity, INITIAL_MOVES) + 31) / 32];
+    this.checkpoints = new ABoard[Math.min(capacity, INITIAL_MOVES) / interval + 2];
+    this.checkpoints[0] = board.copy();
+  }
+
+  // forgets every move and starts over from the given board, which must be of the
+  // same class and shape as the first one, keeping the room the ring has grown to
+  void restart(ABoard board) {
+    this.start = 0;
+    this.position = 0;
+    this.end = 0;
+    this.checkpoints[0].setTo(board);
+  }
+
+  // returns the index in checkpoints of the checkpoint after the given number of
+  // moves, which must be a multiple of interval
+  // there is room for the checkpoints between start and end, plus one being replaced
+  int checkpointSlot(long index) {
+    return (int) ((index / this.interval) % (this.capacity / this.interval + 2));
+  }
+
+  // returns the number of moves that can be undone
+  long undoable() {
+    return this.position - this.start;
+  }
+
+  // returns the number of moves that can be redone
+  long redoable() {
+    return this.end - this.position;
+  }
+
+  // returns the move with the given number, which must be from start to end - 1
+  Direction get(long index) {
+    int slot = (int) (index % this.capacity);
+    return Direction.ALL[(int) (this.moves[slot >>> 5] >>> ((slot & 31) << 1)) & 3];
+  }
+
+  // records a move in the given direction, which left the given board
+  // moves that could have been redone are forgotten
+  void record(Direction d, ABoard after) {
+    int slot = (int) (this.position % this.capacity);
+    if ((slot >>> 5) == this.moves.length) {
+      this.moves = Arrays.copyOf(this.moves,
+          Math.min(this.moves.length * 2, (this.capacity + 31) / 32));
+    }
+    int shift = (slot & 31) << 1;
+    this.moves[slot >>> 5] = (this.moves[slot >>> 5] & ~(3L << shift))
+        | ((long) d.ordinal() << shift);
+    this.position++;
+    this.end = this.position;
+    if (this.end - this.start > this.capacity) {
+      this.start++;
+    }
+
+    if (this.position % this.interval == 0) {
+      int k = this.checkpointSlot(this.position);
+      if (k == this.checkpoints.length) {
+        this.checkpoints = Arrays.copyOf(this.checkpoints,
+            Math.min(this.checkpoints.length * 2, this.capacity / this.interval + 2));
+      }
+      if (this.checkpoints[k] == null) {
+        this.checkpoints[k] = after.copy();
+      }
+      else {
+        this.checkpoints[k].setTo(after);
+      }
+    }
+  }
+
+  // steps back over the last move and returns its direction, or null if there is
+  // no move to undo
+  // the caller moves the board in the opposite direction
+  Direction undo() {
+    if (this.position == this.start) {
+      return null;
+    }
+    else {
+      this.position--;
+      return this.get(this.position);
+    }
+  }
+
+  // steps forward over the next undone move and returns its direction, or null if
+  // there is no move to redo
+  Direction redo() {
+    if (this.position == this.end) {
+      return null;
+    }
+    else {
+      this.position++;
+      return this.get(this.position - 1);
+    }
+  }
+
+  // returns the checkpoint made after the given number of moves, or null if it is
+  // not available
+  ABoard checkpoint(long index) {
+    if (index % this.interval != 0 || index < this.start || index > this.end) {
+      return null;
+    }
+    else {
+      return this.checkpoints[this.checkpointSlot(index)];
+    }
+  }
+
+  // changes the given board, which must be the board after position moves, into
+  // the board after the given number of moves, from the nearest checkpoint or from
+  // where it is now, whichever replays fewer moves
+  void jumpTo(long index, ABoard board) {
+    if (index < this.start || index > this.end) {
+      throw new IllegalArgumentException("Move " + index + " is not in the log");
+    }
+
+    long best = Math.abs(index - this.position);
+    long from = this.position;
+    long below = index - index % this.interval;
+    long above = below + this.interval;
+    if (index - below < best && this.checkpoint(below) != null) {
+      best = index - below;
+      from = below;
+    }
+    if (above - index < best && this.checkpoint(above) != null) {
+      from = above;
+    }
+
+    if (from != this.position) {
+      board.setTo(this.checkpoint(from));
+    }
+    for (long i = from; i < index; i++) {
+      board.move(this.get(i));
+    }
+    for (long i = from; i > index; i--) {
+      board.move(this.get(i - 1).opposite());
+    }
+    this.position = index;
+  }
+}
+
+class ExamplesMoveLog {
+  PackedBoard board;
+  MoveLog log;
+
+  void initData() {
+    this.board = new PackedBoard(PackedBoard.SOLVED);
+    this.log = new MoveLog(this.board, 8, 4);
+  }
+
+  // moves the board and records the move
+  void play(Direction d) {
+    this.board.move(d);
+    this.log.record(d, this.board);
+  }
+
+  // tests for the constructor
+  void testConstructor(Tester t) {
+    this.initData();
+    t.checkExpect(this.log.moves.length, 1);
+    t.checkExpect(this.log.checkpoints.length, 4);
+    t.checkExpect(this.log.checkpoint(0).isSolved(), true);
+    t.checkExpect(new MoveLog(this.board).moves.length * 8, 256);
+    t.checkExpect(new MoveLog(this.board).checkpoints.length, 3);
+    t.checkConstructorException(
+        new IllegalArgumentException("Capacity and interval must be positive"), "MoveLog",
+        this.board, 0, 4);
+  }
+
+  // tests for record, undo and redo
+  void testUndoRedo(Tester t) {
+    this.initData();
+    t.checkExpect(this.log.undo(), null);
+    t.checkExpect(this.log.redo(), null);
+
+    this.play(Direction.DOWN);
+    this.play(Direction.RIGHT);
+    t.checkExpect(this.log.undoable(), 2L);
+    t.checkExpect(this.log.get(0), Direction.DOWN);
+    t.checkExpect(this.log.get(1), Direction.RIGHT);
+
+    t.checkExpect(this.log.undo(), Direction.RIGHT);
+    t.checkExpect(this.log.redoable(), 1L);
+    t.checkExpect(this.log.redo(), Direction.RIGHT);
+    t.checkExpect(this.log.redo(), null);
+    t.checkExpect(this.log.undo(), Direction.RIGHT);
+    t.checkExpect(this.log.undo(), Direction.DOWN);
+    t.checkExpect(this.log.undo(), null);
+
+    // a new move forgets the moves that could have been redone
+    this.log.redo();
+    this.play(Direction.LEFT);
+    t.checkExpect(this.log.redoable(), 0L);
+    t.checkExpect(this.log.get(1), Direction.LEFT);
+  }
+
+  // tests that the ring forgets the oldest moves
+  void testRing(Tester t) {
+    this.initData();
+    for (int i = 0; i < 10; i++) {
+      this.play(i % 2 == 0 ? Direction.DOWN : Direction.UP);
+    }
+    t.checkExpect(this.log.start, 2L);
+    t.checkExpect(this.log.undoable(), 8L);
+    t.checkExpect(this.log.get(9), Direction.UP);
+    t.checkExpect(this.log.get(2), Direction.DOWN);
+    t.checkExpect(this.log.checkpoint(0), null);
+    t.checkExpect(this.log.checkpoint(4).isSolved(), true);
+    t.checkExpect(this.log.checkpoint(6), null);
+    for (int i = 0; i < 8; i++) {
+      this.log.undo();
+    }
+    t.checkExpect(this.log.undo(), null);
+  }
+
+  // tests that the ring grows as moves are made, up to its capacity
+  void testGrow(Tester t) {
+    this.initData();
+    MoveLog log = new MoveLog(this.board, 3000, 100);
+    t.checkExpect(log.moves.length, 32);
+    t.checkExpect(log.checkpoints.length, 12);
+    for (int i = 0; i < 5000; i++) {
+      this.board.move(i % 2 == 0 ? Direction.DOWN : Direction.UP);
+      log.record(i % 2 == 0 ? Direction.DOWN : Direction.UP, this.board);
+    }
+    t.checkExpect(log.moves.length, 94);
+    t.checkExpect(log.checkpoints.length, 32);
+    t.checkExpect(log.undoable(), 3000L);
+    t.checkExpect(log.get(2000), Direction.DOWN);
+    t.checkExpect(log.get(4999), Direction.UP);
+    t.checkExpect(log.checkpoint(2000).isSolved(), true);
+    t.checkExpect(log.checkpoint(4900).isSolved(), true);
+    PackedBoard once = new PackedBoard(PackedBoard.SOLVED);
+    once.move(Direction.DOWN);
+    log.jumpTo(2001, this.board);
+    t.checkExpect(this.board.cells, once.cells);
+  }
+
+  // tests for restart
+  void testRestart(Tester t) {
+    this.initData();
+    for (int i = 0; i < 10; i++) {
+      this.play(i % 2 == 0 ? Direction.DOWN : Direction.UP);
+    }
+    this.board.move(Direction.DOWN);
+    long unrecorded = this.board.cells;
+    this.log.restart(this.board);
+    t.checkExpect(this.log.undoable(), 0L);
+    t.checkExpect(this.log.redoable(), 0L);
+    t.checkExpect(this.log.undo(), null);
+    t.checkExpect(((PackedBoard) this.log.checkpoint(0)).cells, unrecorded);
+    t.checkExpect(this.log.checkpoint(4), null);
+    this.play(Direction.UP);
+    t.checkExpect(this.log.get(0), Direction.UP);
+    this.log.jumpTo(0, this.board);
+    t.checkExpect(this.board.cells, unrecorded);
+  }
+
+  // tests for jumpTo
+  void testJumpTo(Tester t) {
+    this.initData();
+    Direction[] path = { Direction.DOWN, Direction.DOWN, Direction.RIGHT, Direction.UP,
+        Direction.RIGHT, Direction.DOWN, Direction.LEFT, Direction.DOWN };
+    long[] seen = new long[path.length + 1];
+    seen[0] = this.board.cells;
+    for (int i = 0; i < path.length; i++) {
+      this.play(path[i]);
+      seen[i + 1] = this.board.cells;
+    }
+
+    // from a checkpoint, from the current board and backwards
+    this.log.jumpTo(5, this.board);
+    t.checkExpect(this.board.cells, seen[5]);
+    this.log.jumpTo(3, this.board);
+    t.checkExpect(this.board.cells, seen[3]);
+    t.checkExpect(this.log.position, 3L);
+    this.log.jumpTo(0, this.board);
+    t.checkExpect(this.board.cells, seen[0]);
+    this.log.jumpTo(7, this.board);
+    t.checkExpect(this.board.cells, seen[7]);
+    t.checkExpect(this.board.misplaced, PackedBoard.countMisplaced(seen[7]));
+    t.checkExpect(this.log.redo(), Direction.DOWN);
+
+    t.checkException(new IllegalArgumentException("Move 9 is not in the log"), this.log,
+        "jumpTo", 9L, this.board);
+  }
+}
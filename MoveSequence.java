@@ -0,0 +1,310 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import tester.*;
+
+//Applies whole sequences of moves to packed boards in one call, for checking
+//solutions and replays without a game
+//a sequence is either a string of the letters U, D, L and R, the first letters of
+//the keys onKeyEvent takes, or a byte array of Direction ordinals packed two bits
+//per move, four to a byte with the first move lowest, as BoardCorpus stores them
+//applying stops at the first move that is not legal, and nothing is allocated
+//along the way: the outcome goes into a MoveResult the caller can reuse
+class MoveSequence {
+  // the letter of every Direction, indexed by ordinal
+  static final char[] LETTERS = { 'U', 'D', 'L', 'R' };
+  // the Direction ordinal of every ASCII letter, or -1 if it is not a move
+  static final byte[] DIRECTIONS = MoveSequence.buildDirections();
+
+  // builds the table of Direction ordinals by letter
+  static byte[] buildDirections() {
+    byte[] table = new byte[128];
+    Arrays.fill(table, (byte) -1);
+    for (int d = 0; d < LETTERS.length; d++) {
+      table[LETTERS[d]] = (byte) d;
+    }
+    return table;
+  }
+
+  // returns the Direction ordinal of the given letter, or -1 if it is not a move
+  static int direction(char letter) {
+    return letter < 128 ? DIRECTIONS[letter] : -1;
+  }
+
+  // returns the Direction ordinal of the given move of a packed sequence
+  static int direction(byte[] packed, int move) {
+    return (packed[move >>> 2] >>> ((move & 3) * 2)) & 3;
+  }
+
+  // returns the letters of the given keys, like the ones a solver returns
+  static String letters(ArrayList<String> keys) {
+    StringBuilder letters = new StringBuilder(keys.size());
+    for (String k : keys) {
+      Direction d = Direction.fromKey(k);
+      if (d == null) {
+        throw new IllegalArgumentException("Unknown key: " + k);
+      }
+      letters.append(LETTERS[d.ordinal()]);
+    }
+    return letters.toString();
+  }
+
+  // packs the given letters into the given array, which must hold a byte for every
+  // four of them, and returns the number of moves
+  static int pack(CharSequence letters, byte[] packed) {
+    Arrays.fill(packed, 0, (letters.length() + 3) / 4, (byte) 0);
+    for (int i = 0; i < letters.length(); i++) {
+      int d = MoveSequence.direction(letters.charAt(i));
+      if (d < 0) {
+        throw new IllegalArgumentException("Unknown move: " + letters.charAt(i));
+      }
+      packed[i >>> 2] |= (byte) (d << ((i & 3) * 2));
+    }
+    return letters.length();
+  }
+
+  // applies the given letters to the given packed board of the given shape, and puts
+  // the outcome in the given result, which is returned
+  // a letter that is not a move is as illegal as a move off the board
+  static MoveResult apply(long cells, BoardShape shape, CharSequence letters,
+      MoveResult result) {
+    result.reset(cells == shape.packedSolved);
+    int blank = PackedBoard.indexOf(cells, 0);
+    for (int i = 0; i < letters.length(); i++) {
+      int d = MoveSequence.direction(letters.charAt(i));
+      int tile = d < 0 ? -1 : shape.neighbors[(blank << 2) | d];
+      if (tile < 0) {
+        result.illegalAt = i;
+        break;
+      }
+      cells = PackedBoard.slide(cells, blank, tile);
+      blank = tile;
+      result.moved(cells == shape.packedSolved);
+    }
+    result.cells = cells;
+    return result;
+  }
+
+  // applies the first given number of packed moves to the given packed board of the
+  // given shape, and puts the outcome in the given result, which is returned
+  static MoveResult apply(long cells, BoardShape shape, byte[] packed, int count,
+      MoveResult result) {
+    if (count < 0 || count > packed.length * 4) {
+      throw new IllegalArgumentException("Expected from 0 to " + packed.length * 4 + " moves");
+    }
+    result.reset(cells == shape.packedSolved);
+    int blank = PackedBoard.indexOf(cells, 0);
+    for (int i = 0; i < count; i++) {
+      int tile = shape.neighbors[(blank << 2) | MoveSequence.direction(packed, i)];
+      if (tile < 0) {
+        result.illegalAt = i;
+        break;
+      }
+      cells = PackedBoard.slide(cells, blank, tile);
+      blank = tile;
+      result.moved(cells == shape.packedSolved);
+    }
+    result.cells = cells;
+    return result;
+  }
+
+  // returns whether the given keys, like the ones a solver returns, are all legal
+  // on the given board and leave it solved, without changing it
+  static boolean solves(ABoard board, ArrayList<String> keys) {
+    if (board.shape.fitsInLong()) {
+      MoveResult result = MoveSequence.apply(PackedBoard.pack(board), board.shape,
+          MoveSequence.letters(keys), new MoveResult());
+      return result.isLegal() && result.solved;
+    }
+    ABoard b = board.copy();
+    for (String k : keys) {
+      Direction d = Direction.fromKey(k);
+      if (d == null) {
+        throw new IllegalArgumentException("Unknown key: " + k);
+      }
+      if (!b.move(d)) {
+        return false;
+      }
+    }
+    return b.isSolved();
+  }
+}
+
+//What happened when a sequence of moves was applied
+class MoveResult {
+  // the number of moves applied
+  int applied;
+  // the index of the first move that was not legal, or -1 if they all were
+  int illegalAt;
+  // the fewest moves after which the board was solved, 0 if it started solved, or -1
+  // if it never was
+  int solvedAfter;
+  // whether the board was solved after the last move applied
+  boolean solved;
+  // the board after the moves applied, when it was given packed
+  long cells;
+
+  // Constructor for a result of no moves
+  MoveResult() {
+    this.reset(false);
+  }
+
+  // starts over for a sequence applied to a board that is or is not solved
+  void reset(boolean solved) {
+    this.applied = 0;
+    this.illegalAt = -1;
+    this.solvedAfter = solved ? 0 : -1;
+    this.solved = solved;
+    this.cells = 0;
+  }
+
+  // records that one more move was applied, after which the board is or is not solved
+  void moved(boolean solved) {
+    this.applied++;
+    this.solved = solved;
+    if (solved && this.solvedAfter < 0) {
+      this.solvedAfter = this.applied;
+    }
+  }
+
+  // returns whether every move was legal
+  boolean isLegal() {
+    return this.illegalAt < 0;
+  }
+
+  // returns whether the board was solved at some point, the start included
+  boolean passedSolved() {
+    return this.solvedAfter >= 0;
+  }
+}
+
+class ExamplesMoveSequence {
+  BoardShape three = new BoardShape(3, 3);
+
+  // tests for letters and pack
+  void testLetters(Tester t) {
+    ArrayList<String> keys = new ArrayList<String>();
+    keys.add("down");
+    keys.add("right");
+    keys.add("up");
+    keys.add("left");
+    keys.add("down");
+    t.checkExpect(MoveSequence.letters(keys), "DRULD");
+    byte[] packed = new byte[2];
+    t.checkExpect(MoveSequence.pack("DRULD", packed), 5);
+    t.checkExpect(packed[0], (byte) 0b10_00_11_01);
+    t.checkExpect(packed[1], (byte) 0b01);
+    t.checkExpect(MoveSequence.direction(packed, 4), Direction.DOWN.ordinal());
+    t.checkExpect(MoveSequence.direction('x'), -1);
+    t.checkExpect(MoveSequence.direction('\u00e9'), -1);
+    keys.add("u");
+    t.checkException(new IllegalArgumentException("Unknown key: u"), this, "letters", keys);
+    t.checkException(new IllegalArgumentException("Unknown move: x"), this, "pack", "UxD");
+  }
+
+  // returns the letters of the given keys
+  String letters(ArrayList<String> keys) {
+    return MoveSequence.letters(keys);
+  }
+
+  // returns the number of moves of the given letters, packed into a scratch array
+  int pack(String letters) {
+    return MoveSequence.pack(letters, new byte[letters.length()]);
+  }
+
+  // tests applying sequences to packed boards
+  void testApply(Tester t) {
+    MoveResult result = new MoveResult();
+    MoveSequence.apply(PackedBoard.SOLVED, BoardShape.FOUR_BY_FOUR, "DUDR", result);
+    t.checkExpect(result.isLegal(), true);
+    t.checkExpect(result.applied, 4);
+    t.checkExpect(result.solvedAfter, 0);
+    t.checkExpect(result.solved, false);
+    t.checkExpect(result.cells, PackedBoard.parse("1 2 3 4 5 6 7 8 9 10 0 11 13 14 15 12"));
+
+    // the result is reused, and stops at the first illegal move
+    MoveSequence.apply(result.cells, BoardShape.FOUR_BY_FOUR, "LUUUU", result);
+    t.checkExpect(result.applied, 2);
+    t.checkExpect(result.illegalAt, 2);
+    t.checkExpect(result.solvedAfter, 2);
+    t.checkExpect(result.solved, true);
+    t.checkExpect(result.cells, PackedBoard.SOLVED);
+    MoveSequence.apply(PackedBoard.SOLVED, BoardShape.FOUR_BY_FOUR, "D?", result);
+    t.checkExpect(result.illegalAt, 1);
+    t.checkExpect(result.passedSolved(), true);
+
+    // a solution from the solver passes, in either form
+    ABoard board = new PuzzleGenerator(23).walk(this.three, 60);
+    String letters = MoveSequence.letters(new Solver().solve(board));
+    MoveSequence.apply(PackedBoard.pack(board), this.three, letters, result);
+    t.checkExpect(result.isLegal(), true);
+    t.checkExpect(result.solvedAfter, letters.length());
+    byte[] packed = new byte[(letters.length() + 3) / 4];
+    MoveSequence.pack(letters, packed);
+    MoveSequence.apply(PackedBoard.pack(board), this.three, packed, letters.length(), result);
+    t.checkExpect(result.solved, true);
+    t.checkExpect(result.cells, this.three.packedSolved);
+    t.checkException(new IllegalArgumentException("Expected from 0 to " + packed.length * 4
+        + " moves"), this, "applyPacked", packed, packed.length * 4 + 1);
+  }
+
+  // applies the given packed moves to a solved 3x3 board
+  MoveResult applyPacked(byte[] packed, int count) {
+    return MoveSequence.apply(this.three.packedSolved, this.three, packed, count,
+        new MoveResult());
+  }
+
+  // tests for solves
+  void testSolves(Tester t) {
+    ABoard board = new PuzzleGenerator(23).walk(this.three, 60);
+    ArrayList<String> keys = new Solver().solve(board);
+    t.checkExpect(MoveSequence.solves(board, keys), true);
+    t.checkExpect(board.isSolved(), false);
+    keys.remove(keys.size() - 1);
+    t.checkExpect(MoveSequence.solves(board, keys), false);
+    t.checkExpect(MoveSequence.solves(
+        ABoard.create(this.three, new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 0 }),
+        new ArrayList<String>()), true);
+
+    // boards too large to pack are played on a copy
+    ABoard large = new PuzzleGenerator(4).walk(new BoardShape(5, 5), 20);
+    keys = new GridSolver(large.shape).solve(large.copy());
+    t.checkExpect(MoveSequence.solves(large, keys), true);
+    t.checkExpect(large.isSolved(), false);
+    // only four moves in a row can go up on a 5x5 board
+    for (int i = 0; i < 5; i++) {
+      keys.add(0, "up");
+    }
+    t.checkExpect(MoveSequence.solves(large, keys), false);
+    keys.set(0, "u");
+    t.checkException(new IllegalArgumentException("Unknown key: u"), this, "solves", large,
+        keys);
+  }
+
+  // returns whether the given keys solve the given board
+  boolean solves(ABoard board, ArrayList<String> keys) {
+    return MoveSequence.solves(board, keys);
+  }
+
+  // tests applying sequences to games
+  void testGame(Tester t) {
+    FifteenGame game = new FifteenGame(new PackedBoard(PackedBoard.SOLVED));
+    MoveResult result = game.applyMoves("DRUL", new MoveResult());
+    t.checkExpect(result.isLegal(), true);
+    t.checkExpect(result.applied, 4);
+    t.checkExpect(result.solved, false);
+    t.checkExpect(game.core.board.blank, 15);
+    // the moves were recorded, so they can be undone one at a time
+    game.onKeyEvent("u");
+    game.onKeyEvent("u");
+    game.onKeyEvent("u");
+    t.checkExpect(game.core.board.blank, 11);
+
+    byte[] packed = new byte[1];
+    MoveSequence.pack("UU", packed);
+    game.applyMoves(packed, 2, result);
+    t.checkExpect(result.illegalAt, 1);
+    t.checkExpect(result.solvedAfter, 1);
+    t.checkExpect(game.core.isWon(), true);
+    t.checkExpect(game.core.applyMoves("x", result).illegalAt, 0);
+  }
+}
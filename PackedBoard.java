@@ -0,0 +1,427 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import tester.*;
+
+//Represents the state of a board of at most 16 cells packed into a single long
+//the value of cell i (row * cols + column) is stored in bits 4 * i to 4 * i + 3
+//the static helpers work on the classic 4x4 board
+class PackedBoard extends ABoard {
+  // the packed board where every tile is at its correct position
+  static final long SOLVED = 0x0FEDCBA987654321L;
+
+  // every value from 0 to 15, in order, one per nibble
+  static final long ALL_VALUES = 0xFEDCBA9876543210L;
+
+  // a 1 in the lowest bit of every nibble
+  static final long LOW_BITS = 0x1111111111111111L;
+
+  // for every index of the space and every direction, the index of the tile
+  // that slides into the space, or -1 if there is no such tile
+  // indexed by blank * 4 + direction.ordinal()
+  static final int[] NEIGHBORS = BoardShape.FOUR_BY_FOUR.neighbors;
+
+  // the packed values of all cells, with the unused high bits 0
+  long cells;
+
+  // Constructor that takes in the packed cells of a 4x4 board
+  PackedBoard(long cells) {
+    this(BoardShape.FOUR_BY_FOUR, cells);
+  }
+
+  // Constructor that takes in the shape and the packed cells
+  PackedBoard(BoardShape shape, long cells) {
+    if (!shape.fitsInLong()) {
+      throw new IllegalArgumentException("Packed boards can hold at most 16 cells");
+    }
+    this.shape = shape.canonical();
+    this.cells = cells;
+    this.blank = PackedBoard.indexOf(cells, 0);
+    this.misplaced = PackedBoard.countMisplaced(cells, shape);
+    this.hash = Zobrist.hash(this);
+  }
+
+  // deals a random board, solvable or not, drawing values in the same order the
+  // original list-based constructor drew them, so a seeded Random gives the same board
+  static long dealLegacy(Random r) {
+    long remaining = ALL_VALUES;
+    long result = 0;
+
+    for (int i = 0; i < 16; i++) {
+      // choose a random element from the values that are left
+      int shift = r.nextInt(16 - i) * 4;
+      long value = (remaining >>> shift) & 0xF;
+      long below = remaining & ((1L << shift) - 1);
+      long above = shift == 60 ? 0 : (remaining >>> (shift + 4)) << shift;
+      remaining = below | above;
+      result |= value << (i * 4);
+    }
+    return result;
+  }
+
+  // returns the index (from 0 to 15) of the cell holding the given value,
+  // or -1 if no cell holds it
+  static int indexOf(long cells, int value) {
+    long x = cells ^ (value * LOW_BITS);
+    long zeroNibbles = ~(x | (x >>> 1) | (x >>> 2) | (x >>> 3)) & LOW_BITS;
+    if (zeroNibbles == 0) {
+      return -1;
+    }
+    else {
+      return Long.numberOfTrailingZeros(zeroNibbles) >>> 2;
+    }
+  }
+
+  // returns the packed board after the tile at the given index slides into the space
+  // at the given index
+  static long slide(long cells, int blank, int tile) {
+    long value = (cells >>> (tile * 4)) & 0xF;
+    return (cells & ~(0xFL << (tile * 4))) | (value << (blank * 4));
+  }
+
+  // returns the cells of the given board, which must have at most 16, packed
+  static long pack(ABoard board) {
+    if (board instanceof PackedBoard) {
+      return ((PackedBoard) board).cells;
+    }
+    if (!board.shape.fitsInLong()) {
+      throw new IllegalArgumentException("Packed boards can hold at most 16 cells");
+    }
+    long cells = 0;
+    for (int index = 0; index < board.shape.size; index++) {
+      cells |= (long) board.get(index) << (index * 4);
+    }
+    return cells;
+  }
+
+  // counts the cells that do not hold their correct value
+  static int countMisplaced(long cells) {
+    long x = cells ^ SOLVED;
+    return Long.bitCount((x | (x >>> 1) | (x >>> 2) | (x >>> 3)) & LOW_BITS);
+  }
+
+  // counts the cells of a board of the given shape that do not hold their correct value
+  static int countMisplaced(long cells, BoardShape shape) {
+    long x = cells ^ shape.packedSolved;
+    long used = shape.size == 16 ? LOW_BITS : LOW_BITS & ((1L << (shape.size * 4)) - 1);
+    return Long.bitCount((x | (x >>> 1) | (x >>> 2) | (x >>> 3)) & used);
+  }
+
+  // returns the correct value of the given index (from 0 to 15)
+  static int goal(int index) {
+    return (index + 1) & 0xF;
+  }
+
+  // returns whether the given board can reach the solved board
+  // a vertical move changes the number of inversions by an odd amount and the
+  // row of the space by one, so the parity of their sum never changes
+  static boolean isSolvable(long cells) {
+    int inversions = 0;
+    int seen = 0;
+    int blankRow = 0;
+
+    for (int index = 0; index < 16; index++) {
+      int value = (int) (cells >>> (index * 4)) & 0xF;
+      if (value == 0) {
+        blankRow = index / 4;
+      }
+      else {
+        // count the larger values that came before this one
+        inversions += Integer.bitCount(seen >>> value);
+        seen |= 1 << value;
+      }
+    }
+    // the solved board has no inversions and the space in row 3
+    return ((inversions + blankRow) & 1) == 1;
+  }
+
+  // reads a board written as 16 numbers from 0 to 15, row by row, separated by
+  // spaces or commas
+  static long parse(String text) {
+    long cells = 0;
+    int seen = 0;
+    int count = 0;
+    int value = -1;
+
+    for (int i = 0; i <= text.length(); i++) {
+      char c = i < text.length() ? text.charAt(i) : ' ';
+      if (c >= '0' && c <= '9') {
+        value = (value < 0 ? 0 : value * 10) + (c - '0');
+        if (value > 15) {
+          throw new IllegalArgumentException("Values must be from 0 to 15: " + text);
+        }
+      }
+      else if (c == ' ' || c == ',' || c == '\t') {
+        if (value >= 0) {
+          if (count == 16 || (seen & (1 << value)) != 0) {
+            throw new IllegalArgumentException("Board must hold each value once: " + text);
+          }
+          cells |= (long) value << (count * 4);
+          seen |= 1 << value;
+          count++;
+          value = -1;
+        }
+      }
+      else {
+        throw new IllegalArgumentException("Unexpected character in board: " + text);
+      }
+    }
+
+    if (count != 16) {
+      throw new IllegalArgumentException("Board must hold each value once: " + text);
+    }
+    return cells;
+  }
+
+  // writes a board as 16 numbers separated by spaces, the way parse reads them
+  static String format(long cells) {
+    StringBuilder sb = new StringBuilder();
+    for (int index = 0; index < 16; index++) {
+      if (index > 0) {
+        sb.append(' ');
+      }
+      sb.append((cells >>> (index * 4)) & 0xF);
+    }
+    return sb.toString();
+  }
+
+  // returns the value at the given index
+  int get(int index) {
+    return (int) (this.cells >>> (index << 2)) & 0xF;
+  }
+
+  // swaps the values at two indexes
+  // only the two cells that changed are checked to keep the misplaced count
+  void swap(int index1, int index2) {
+    int value1 = this.get(index1);
+    int value2 = this.get(index2);
+    long diff = value1 ^ value2;
+    this.cells ^= (diff << (index1 << 2)) | (diff << (index2 << 2));
+    this.swapped(index1, index2, value1, value2);
+  }
+
+  // returns a board with the same shape and values that changes independently
+  ABoard copy() {
+    return new PackedBoard(this.shape, this.cells);
+  }
+
+  // makes this board hold the same values as the given packed board
+  void setTo(ABoard other) {
+    PackedBoard packed = (PackedBoard) other;
+    this.cells = packed.cells;
+    this.blank = packed.blank;
+    this.misplaced = packed.misplaced;
+    this.hash = packed.hash;
+  }
+
+  // returns whether this board can reach the solved board
+  boolean isSolvable() {
+    if (this.shape == BoardShape.FOUR_BY_FOUR) {
+      return PackedBoard.isSolvable(this.cells);
+    }
+    else {
+      return super.isSolvable();
+    }
+  }
+}
+
+class ExamplesPackedBoard {
+  // ordered 0 to 15 from the top left, like Examples.tiles2
+  PackedBoard ordered;
+  PackedBoard solved;
+
+  void initData() {
+    this.ordered = new PackedBoard(PackedBoard.ALL_VALUES);
+    this.solved = new PackedBoard(PackedBoard.SOLVED);
+  }
+
+  // tests for the constructor
+  void testConstructor(Tester t) {
+    this.initData();
+    t.checkExpect(this.ordered.blank, 0);
+    t.checkExpect(this.solved.blank, 15);
+    t.checkExpect(this.solved.shape, BoardShape.FOUR_BY_FOUR);
+    t.checkExpect(new PackedBoard(new BoardShape(4, 4), PackedBoard.SOLVED).shape
+        == BoardShape.FOUR_BY_FOUR, true);
+
+    PackedBoard small = new PackedBoard(new BoardShape(2, 3), 0x054321L);
+    t.checkExpect(small.blank, 5);
+    t.checkExpect(small.misplaced, 0);
+    t.checkExpect(new PackedBoard(new BoardShape(2, 3), 0x504321L).misplaced, 2);
+    t.checkConstructorException(
+        new IllegalArgumentException("Packed boards can hold at most 16 cells"), "PackedBoard",
+        new BoardShape(3, 6), 0L);
+  }
+
+  // tests for dealLegacy
+  void testDealLegacy(Tester t) {
+    Random r = new Random(20);
+    PackedBoard dealt = new PackedBoard(PackedBoard.dealLegacy(new Random(20)));
+    ArrayList<Integer> nums = new ArrayList<Integer>(
+        Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15));
+    for (int i = 0; i < 16; i++) {
+      t.checkExpect(dealt.get(i), nums.remove(r.nextInt(nums.size())));
+    }
+    t.checkExpect(dealt.get(dealt.blank), 0);
+  }
+
+  // tests for indexOf
+  void testIndexOf(Tester t) {
+    t.checkExpect(PackedBoard.indexOf(PackedBoard.SOLVED, 0), 15);
+    t.checkExpect(PackedBoard.indexOf(PackedBoard.SOLVED, 1), 0);
+    t.checkExpect(PackedBoard.indexOf(PackedBoard.SOLVED, 15), 14);
+    t.checkExpect(PackedBoard.indexOf(PackedBoard.ALL_VALUES, 9), 9);
+    t.checkExpect(PackedBoard.indexOf(0x1111111111111111L, 0), -1);
+  }
+
+  // tests for pack
+  void testPack(Tester t) {
+    this.initData();
+    t.checkExpect(PackedBoard.pack(this.solved), PackedBoard.SOLVED);
+    t.checkExpect(PackedBoard.pack(ABoard.create(new BoardShape(2, 3),
+        new int[] { 1, 2, 3, 4, 0, 5 })), 0x504321L);
+    t.checkException(new IllegalArgumentException("Packed boards can hold at most 16 cells"),
+        this, "pack", new PuzzleGenerator(1).deal(new BoardShape(3, 6)));
+  }
+
+  // returns the given board packed
+  long pack(ABoard board) {
+    return PackedBoard.pack(board);
+  }
+
+  // tests for get
+  void testGet(Tester t) {
+    this.initData();
+    t.checkExpect(this.ordered.get(0), 0);
+    t.checkExpect(this.ordered.get(13), 13);
+    t.checkExpect(this.solved.get(0), 1);
+    t.checkExpect(this.solved.get(14), 15);
+    t.checkExpect(this.solved.get(15), 0);
+  }
+
+  // tests for swap
+  void testSwap(Tester t) {
+    this.initData();
+    this.ordered.swap(0, 13);
+    t.checkExpect(this.ordered.get(0), 13);
+    t.checkExpect(this.ordered.get(13), 0);
+    t.checkExpect(this.ordered.blank, 13);
+
+    this.ordered.swap(4, 4);
+    t.checkExpect(this.ordered.get(4), 4);
+    t.checkExpect(this.ordered.blank, 13);
+
+    this.ordered.swap(12, 15);
+    t.checkExpect(this.ordered.get(12), 15);
+    t.checkExpect(this.ordered.get(15), 12);
+    t.checkExpect(this.ordered.blank, 13);
+
+    this.solved.swap(14, 15);
+    t.checkExpect(this.solved.isSolved(), false);
+    t.checkExpect(this.solved.blank, 14);
+    this.solved.swap(15, 14);
+    t.checkExpect(this.solved.isSolved(), true);
+    t.checkExpect(this.solved.blank, 15);
+  }
+
+  // tests for the misplaced count
+  void testMisplaced(Tester t) {
+    this.initData();
+    t.checkExpect(this.solved.misplaced, 0);
+    t.checkExpect(this.ordered.misplaced, 16);
+    t.checkExpect(PackedBoard.countMisplaced(PackedBoard.SOLVED), 0);
+    t.checkExpect(PackedBoard.goal(0), 1);
+    t.checkExpect(PackedBoard.goal(15), 0);
+
+    this.solved.swap(14, 15);
+    t.checkExpect(this.solved.misplaced, 2);
+    this.solved.swap(3, 3);
+    t.checkExpect(this.solved.misplaced, 2);
+    this.solved.swap(0, 1);
+    t.checkExpect(this.solved.misplaced, 4);
+    this.solved.swap(1, 0);
+    this.solved.swap(15, 14);
+    t.checkExpect(this.solved.misplaced, 0);
+
+    // a tile moved onto its own cell
+    this.ordered.swap(0, 15);
+    t.checkExpect(this.ordered.misplaced, 15);
+    t.checkExpect(this.ordered.misplaced, PackedBoard.countMisplaced(this.ordered.cells));
+    t.checkExpect(PackedBoard.countMisplaced(PackedBoard.SOLVED, BoardShape.FOUR_BY_FOUR), 0);
+    t.checkExpect(PackedBoard.countMisplaced(0x087654312L, new BoardShape(3, 3)), 2);
+    t.checkExpect(PackedBoard.countMisplaced(0x087654321L, new BoardShape(3, 3)), 0);
+  }
+
+  // tests for isSolvable
+  void testIsSolvable(Tester t) {
+    t.checkExpect(PackedBoard.isSolvable(PackedBoard.SOLVED), true);
+    t.checkExpect(PackedBoard.isSolvable(PackedBoard.ALL_VALUES), false);
+    // 2 and 1 swapped
+    t.checkExpect(PackedBoard.isSolvable(0x0FEDCBA987654312L), false);
+    // the space moved up once
+    t.checkExpect(PackedBoard.isSolvable(0xCFED0BA987654321L), true);
+    // 15 and 14 swapped with the space moved up once
+    t.checkExpect(PackedBoard.isSolvable(0xCEFD0BA987654321L), false);
+  }
+
+  // tests for parse and format
+  void testParse(Tester t) {
+    this.initData();
+    t.checkExpect(PackedBoard.parse("1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 0"), PackedBoard.SOLVED);
+    t.checkExpect(PackedBoard.parse(" 0,1,2,3, 4,5,6,7,8,9,10,11,12,13,14,15 "),
+        PackedBoard.ALL_VALUES);
+    t.checkExpect(PackedBoard.format(PackedBoard.SOLVED), "1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 0");
+    t.checkExpect(PackedBoard.parse(PackedBoard.format(0xCFE08BAD47693215L)), 0xCFE08BAD47693215L);
+    t.checkException(new IllegalArgumentException("Values must be from 0 to 15: 16"),
+        this.solved, "parse", "16");
+    t.checkException(new IllegalArgumentException("Board must hold each value once: 1 1"),
+        this.solved, "parse", "1 1");
+    t.checkException(new IllegalArgumentException("Board must hold each value once: 1 2"),
+        this.solved, "parse", "1 2");
+    t.checkException(new IllegalArgumentException("Unexpected character in board: 1 x"),
+        this.solved, "parse", "1 x");
+  }
+
+  // tests for the neighbor table
+  void testNeighbors(Tester t) {
+    t.checkExpect(PackedBoard.NEIGHBORS[0 * 4 + Direction.UP.ordinal()], 4);
+    t.checkExpect(PackedBoard.NEIGHBORS[0 * 4 + Direction.DOWN.ordinal()], -1);
+    t.checkExpect(PackedBoard.NEIGHBORS[0 * 4 + Direction.LEFT.ordinal()], 1);
+    t.checkExpect(PackedBoard.NEIGHBORS[0 * 4 + Direction.RIGHT.ordinal()], -1);
+    t.checkExpect(PackedBoard.NEIGHBORS[7 * 4 + Direction.LEFT.ordinal()], -1);
+    t.checkExpect(PackedBoard.NEIGHBORS[8 * 4 + Direction.RIGHT.ordinal()], -1);
+    t.checkExpect(PackedBoard.NEIGHBORS[9 * 4 + Direction.RIGHT.ordinal()], 8);
+    t.checkExpect(PackedBoard.NEIGHBORS[15 * 4 + Direction.UP.ordinal()], -1);
+    t.checkExpect(PackedBoard.NEIGHBORS[15 * 4 + Direction.DOWN.ordinal()], 11);
+  }
+
+  // tests for move
+  void testMove(Tester t) {
+    this.initData();
+    t.checkExpect(this.solved.move(Direction.UP), false);
+    t.checkExpect(this.solved.move(Direction.LEFT), false);
+    t.checkExpect(this.solved.move(Direction.RIGHT), true);
+    t.checkExpect(this.solved.blank, 14);
+    t.checkExpect(this.solved.get(15), 15);
+    t.checkExpect(this.solved.move(Direction.DOWN), true);
+    t.checkExpect(this.solved.blank, 10);
+    t.checkExpect(this.solved.move(Direction.UP), true);
+    t.checkExpect(this.solved.move(Direction.LEFT), true);
+    t.checkExpect(this.solved.isSolved(), true);
+  }
+
+  // tests for copy
+  void testCopy(Tester t) {
+    this.initData();
+    ABoard c = this.solved.copy();
+    c.move(Direction.RIGHT);
+    t.checkExpect(this.solved.isSolved(), true);
+    t.checkExpect(c.blank, 14);
+    t.checkExpect(c.isSolvable(), true);
+
+    this.solved.setTo(c);
+    t.checkExpect(this.solved.blank, 14);
+    t.checkExpect(this.solved.misplaced, 2);
+    t.checkExpect(this.solved.cells, ((PackedBoard) c).cells);
+  }
+}
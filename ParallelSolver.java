@@ -0,0 +1,300 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import tester.*;
+
+//Finds optimal solutions to 4x4 boards with IDA*, searching on many cores at once
+//each iteration splits the tree of moves a few moves below the board into
+//subtrees, which are searched as tasks on a ForkJoinPool; workers that run out
+//of tasks steal them from busy ones, so uneven subtrees even out
+//the workers share the bound of the next iteration and the first solution found:
+//IDA* only finds solutions as long as the bound, so any solution is optimal and
+//every other worker stops as soon as one is found
+//boards that are not 4x4 are searched by a GridSolver on the calling thread
+class ParallelSolver implements ISolver {
+  // the most moves below the board the tree can be split, as many as SubtreeSearch
+  // can hold
+  static final int MAX_SPLIT_DEPTH = 31;
+
+  // the pool the subtrees are searched on
+  ForkJoinPool pool;
+  // the pattern database, or null to use only Manhattan distance plus linear conflict
+  PatternDatabase patterns;
+  // how many moves below the board the tree is split into tasks
+  int splitDepth;
+
+  // the smallest estimated total cost over the bound seen in the current iteration
+  AtomicInteger nextBound = new AtomicInteger();
+  // the directions of the moves of the solution found by the current solve, or null
+  AtomicReference<byte[]> solution = new AtomicReference<byte[]>();
+  // the number of states expanded by the current solve
+  AtomicLong expanded = new AtomicLong();
+  // the number of states expanded by the last solve
+  long nodes;
+
+  // Constructor for a solver that searches on the common pool
+  ParallelSolver(PatternDatabase patterns) {
+    this(ForkJoinPool.commonPool(), patterns);
+  }
+
+  // Constructor that takes in the pool to search on and the pattern database, or
+  // null, and splits the tree deep enough for about 16 tasks per worker
+  ParallelSolver(ForkJoinPool pool, PatternDatabase patterns) {
+    this(pool, patterns, ParallelSolver.splitDepthFor(pool.getParallelism()));
+  }
+
+  // Constructor that takes in the pool, the pattern database, or null, and how many
+  // moves below the board to split the tree
+  ParallelSolver(ForkJoinPool pool, PatternDatabase patterns, int splitDepth) {
+    if (splitDepth < 0 || splitDepth > MAX_SPLIT_DEPTH) {
+      throw new IllegalArgumentException("Split depth must be from 0 to " + MAX_SPLIT_DEPTH);
+    }
+    this.pool = pool;
+    this.patterns = patterns;
+    this.splitDepth = splitDepth;
+  }
+
+  // returns how many moves deep to split the tree for the given number of workers
+  // boards have a little over two moves each, not counting the one that undoes the
+  // last, so a tree split that deep has about 16 subtrees per worker or more
+  static int splitDepthFor(int parallelism) {
+    return 1 + (32 - Integer.numberOfLeadingZeros(Math.max(parallelism * 16 - 1, 1)));
+  }
+
+  // returns an optimal list of keys that solves the game
+  ArrayList<String> solve(FifteenGame game) {
+    return this.solve(game.core.board);
+  }
+
+  // returns an optimal list of keys that solves the given board
+  // boards that are not 4x4 are searched by a GridSolver of their shape
+  public ArrayList<String> solve(ABoard board) {
+    if (board instanceof PackedBoard && board.shape.sameShape(BoardShape.FOUR_BY_FOUR)) {
+      return this.solve(((PackedBoard) board).cells);
+    }
+    else {
+      GridSolver grid = new GridSolver(board.shape);
+      ArrayList<String> keys = grid.solve(board.copy());
+      this.nodes = grid.nodes;
+      return keys;
+    }
+  }
+
+  // returns the number of states expanded by the last solve
+  public long nodes() {
+    return this.nodes;
+  }
+
+  // returns an optimal list of keys that solves the given packed board
+  ArrayList<String> solve(long cells) {
+    if (!PackedBoard.isSolvable(cells)) {
+      throw new IllegalArgumentException("Board is not solvable");
+    }
+
+    long start = GameMetrics.ENABLED ? System.nanoTime() : 0;
+    this.solution.set(null);
+    this.expanded.set(0);
+    SubtreeSolver first = new SubtreeSolver(this);
+    first.reset(cells);
+    int bound = first.heuristic();
+
+    while (true) {
+      this.nextBound.set(Integer.MAX_VALUE);
+      this.pool.invoke(new SubtreeSearch(this, cells, 0, bound, -1, 0));
+      if (this.solution.get() != null) {
+        break;
+      }
+      bound = this.nextBound.get();
+    }
+
+    byte[] path = this.solution.get();
+    this.nodes = this.expanded.get();
+    if (GameMetrics.ENABLED) {
+      GameMetrics.GLOBAL.solved(BoardShape.FOUR_BY_FOUR, path.length, this.nodes, start);
+    }
+    ArrayList<String> keys = new ArrayList<String>();
+    for (byte d : path) {
+      keys.add(Direction.ALL[d].key);
+    }
+    return keys;
+  }
+
+  // records that the given estimated total cost was over the bound
+  void over(int f) {
+    this.nextBound.accumulateAndGet(f, Math::min);
+  }
+
+  // records the first given number of moves of the given path as the solution,
+  // unless another worker found one first
+  void found(byte[] path, int length) {
+    byte[] moves = new byte[length];
+    System.arraycopy(path, 0, moves, 0, length);
+    this.solution.compareAndSet(null, moves);
+  }
+}
+
+//Searches the moves below one board, g moves below the board being solved
+//boards above the split depth are expanded into a task for each move, and the
+//ones at the split depth are searched by a SubtreeSolver on the worker's thread
+class SubtreeSearch extends RecursiveAction {
+  // RecursiveAction is serializable, though tasks are never serialized
+  static final long serialVersionUID = 1L;
+
+  // the solver this search is part of
+  ParallelSolver owner;
+  // the board at the top of the subtree
+  long cells;
+  // the moves from the board being solved to this one
+  int g;
+  // the bound of the current iteration
+  int bound;
+  // the direction of the move that reached this board, or -1
+  int previous;
+  // the directions of the moves that reached this board, two bits each, first lowest
+  long moves;
+
+  // Constructor that takes in the solver, the board at the top of the subtree, its
+  // depth, the bound, the last move and all of the moves that reached it
+  SubtreeSearch(ParallelSolver owner, long cells, int g, int bound, int previous, long moves) {
+    this.owner = owner;
+    this.cells = cells;
+    this.g = g;
+    this.bound = bound;
+    this.previous = previous;
+    this.moves = moves;
+  }
+
+  // searches the subtree, unless a solution was already found
+  protected void compute() {
+    if (this.owner.solution.get() != null) {
+      return;
+    }
+    SubtreeSolver solver = new SubtreeSolver(this.owner);
+    solver.reset(this.cells);
+    for (int i = 0; i < this.g; i++) {
+      solver.path[i] = (byte) ((this.moves >>> (i * 2)) & 3);
+    }
+
+    if (this.g < this.owner.splitDepth) {
+      this.split(solver);
+    }
+    else {
+      int result = solver.search(this.g, this.bound, this.previous);
+      this.owner.expanded.addAndGet(solver.nodes);
+      if (result == Solver.FOUND) {
+        this.owner.found(solver.path, solver.length);
+      }
+      else {
+        this.owner.over(result);
+      }
+    }
+  }
+
+  // checks the board at the top of the subtree like SubtreeSolver.search does, and
+  // searches below every move from it in parallel
+  void split(SubtreeSolver solver) {
+    int h = solver.heuristic();
+    if (this.g + h > this.bound) {
+      this.owner.over(this.g + h);
+      return;
+    }
+    if (h == 0) {
+      this.owner.found(solver.path, this.g);
+      return;
+    }
+
+    this.owner.expanded.incrementAndGet();
+    int blank = PackedBoard.indexOf(this.cells, 0);
+    ArrayList<SubtreeSearch> children = new ArrayList<SubtreeSearch>(4);
+    for (int d = 0; d < 4; d++) {
+      int tile = PackedBoard.NEIGHBORS[(blank << 2) | d];
+      if (tile >= 0 && (d ^ 1) != this.previous) {
+        children.add(new SubtreeSearch(this.owner, PackedBoard.slide(this.cells, blank, tile),
+            this.g + 1, this.bound, d, this.moves | ((long) d << (this.g * 2))));
+      }
+    }
+    RecursiveAction.invokeAll(children);
+  }
+}
+
+//A Solver that gives up on its subtree as soon as another worker finds a solution
+class SubtreeSolver extends Solver {
+  // the solver whose solution is checked
+  ParallelSolver owner;
+
+  // Constructor that takes in the solver whose solution is checked
+  SubtreeSolver(ParallelSolver owner) {
+    super(owner.patterns);
+    this.owner = owner;
+  }
+
+  // searches like Solver.search, but returns at once when a solution was found
+  int search(int g, int bound, int previous) {
+    if (this.owner.solution.get() != null) {
+      return Integer.MAX_VALUE;
+    }
+    return super.search(g, bound, previous);
+  }
+}
+
+class ExamplesParallelSolver {
+  // tests that solutions are as short as the ones IDA* finds on one thread
+  void testOptimal(Tester t) {
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      ParallelSolver parallel = new ParallelSolver(pool, null);
+      Solver ida = new Solver();
+      PuzzleGenerator generator = new PuzzleGenerator(21);
+      for (int i = 0; i < 6; i++) {
+        PackedBoard board = new PackedBoard(generator.nextWithLength(20 + i * 4));
+        ArrayList<String> keys = parallel.solve(board);
+        t.checkExpect(keys.size(), ida.solve(board).size());
+        t.checkExpect(MoveSequence.solves(board, keys), true);
+        t.checkExpect(parallel.nodes() > 0, true);
+      }
+
+      // boards solved above the split depth
+      t.checkExpect(parallel.solve(new PackedBoard(PackedBoard.SOLVED)), new ArrayList<String>());
+      PackedBoard near = new PackedBoard(generator.nextWithLength(3));
+      t.checkExpect(parallel.solve(near).size(), 3);
+      t.checkExpect(MoveSequence.solves(near, parallel.solve(near)), true);
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  // tests boards of other shapes and games
+  void testOtherBoards(Tester t) {
+    ParallelSolver parallel = new ParallelSolver(null);
+    ABoard small = new PuzzleGenerator(5).walk(new BoardShape(3, 3), 100);
+    ArrayList<String> keys = parallel.solve(small);
+    t.checkExpect(keys.size(), new Solver().solve(small).size());
+    t.checkExpect(MoveSequence.solves(small, keys), true);
+
+    FifteenGame game = new FifteenGame(new PackedBoard(new PuzzleGenerator(6).nextWithLength(24)));
+    for (String k : parallel.solve(game)) {
+      game.onKeyEvent(k);
+    }
+    t.checkExpect(game.core.board.isSolved(), true);
+  }
+
+  // tests for splitDepthFor
+  void testSplitDepth(Tester t) {
+    t.checkExpect(ParallelSolver.splitDepthFor(1), 5);
+    t.checkExpect(ParallelSolver.splitDepthFor(4), 7);
+    t.checkExpect(ParallelSolver.splitDepthFor(64), 11);
+  }
+
+  // tests for errors
+  void testErrors(Tester t) {
+    t.checkException(new IllegalArgumentException("Board is not solvable"),
+        new ParallelSolver(null), "solve", new PackedBoard(0x0FEDCBA987654312L));
+    t.checkConstructorException(new IllegalArgumentException("Split depth must be from 0 to 31"),
+        "ParallelSolver", ForkJoinPool.commonPool(), null, 32);
+    t.checkExpect(ISolver.named("parallel", null).get() instanceof ParallelSolver, true);
+  }
+}
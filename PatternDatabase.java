@@ -0,0 +1,440 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import tester.*;
+
+//An additive pattern database for the 4x4 board
+//the tiles are split into disjoint groups, and the table of each group holds the
+//fewest moves of that group's tiles needed to bring them to their goal cells,
+//wherever the other tiles are. Moves of the other tiles are free, so the
+//values of all groups can be added together without overestimating.
+//the goal is the one Tile.atCorrectPosition defines: tile v belongs at index v - 1
+class PatternDatabase {
+  // the first int of every pattern database file
+  static final int MAGIC = 0x46504442;
+  // the format of the file
+  static final int VERSION = 1;
+
+  // six, six and three tiles: about 11 MB, and builds in seconds
+  static final int[][] GROUPS_663 = { { 1, 5, 6, 9, 10, 13 }, { 7, 8, 11, 12, 14, 15 },
+      { 2, 3, 4 } };
+  // seven and eight tiles: tighter, but the table is about 550 MB
+  // and building it takes several GB of heap
+  static final int[][] GROUPS_78 = { { 1, 5, 6, 9, 10, 13, 14 },
+      { 2, 3, 4, 7, 8, 11, 12, 15 } };
+
+  // where the solver looks for the default tables
+  static final String DEFAULT_FILE = "fifteen-663.pdb";
+
+  // the index that each index maps to when the board is reflected about its
+  // main diagonal
+  static final int[] MIRROR_CELL = PatternDatabase.buildMirrorCells();
+  // the tile that each tile maps to when the board is reflected about its main
+  // diagonal, so that the reflected solved board is solved again
+  static final int[] MIRROR_TILE = PatternDatabase.buildMirrorTiles();
+
+  // the tiles of every group
+  int[][] groups;
+  // the group of every tile, or -1 for the space and tiles in no group
+  int[] groupOf = new int[16];
+  // the table of every group, indexed by the rank of the cells of its tiles
+  ByteBuffer[] tables;
+
+  // Constructor that takes in the groups and their tables
+  PatternDatabase(int[][] groups, ByteBuffer[] tables) {
+    this.groups = groups;
+    this.tables = tables;
+    Arrays.fill(this.groupOf, -1);
+
+    for (int g = 0; g < groups.length; g++) {
+      for (int tile : groups[g]) {
+        if (tile < 1 || tile > 15 || this.groupOf[tile] != -1) {
+          throw new IllegalArgumentException("Groups must hold distinct tiles from 1 to 15");
+        }
+        this.groupOf[tile] = g;
+      }
+    }
+  }
+
+  // builds the table of mirrored cells
+  static int[] buildMirrorCells() {
+    int[] table = new int[16];
+    for (int index = 0; index < 16; index++) {
+      table[index] = (index % 4) * 4 + index / 4;
+    }
+    return table;
+  }
+
+  // builds the table of mirrored tiles
+  static int[] buildMirrorTiles() {
+    int[] table = new int[16];
+    for (int tile = 1; tile < 16; tile++) {
+      table[tile] = ((tile - 1) % 4) * 4 + (tile - 1) / 4 + 1;
+    }
+    return table;
+  }
+
+  // returns the number of entries in the table of a group of the given size
+  static int tableSize(int tiles) {
+    long size = 1;
+    for (int i = 0; i < tiles; i++) {
+      size *= 16 - i;
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Groups can hold at most 8 tiles");
+    }
+    return (int) size;
+  }
+
+  // returns the rank of the given distinct cells among all arrangements of that
+  // many distinct cells, from 0 to tableSize(count) - 1
+  static int rank(int[] cells, int count) {
+    int rank = 0;
+    int used = 0;
+
+    for (int i = 0; i < count; i++) {
+      int cell = cells[i];
+      // the number of free cells before this one
+      int digit = cell - Integer.bitCount(used & ((1 << cell) - 1));
+      rank = rank * (16 - i) + digit;
+      used |= 1 << cell;
+    }
+    return rank;
+  }
+
+  // fills in the cells with the given rank, and returns the mask of those cells
+  static int unrank(int rank, int[] cells, int count) {
+    for (int i = count - 1; i >= 0; i--) {
+      cells[i] = rank % (16 - i);
+      rank /= 16 - i;
+    }
+
+    int used = 0;
+    for (int i = 0; i < count; i++) {
+      // find the free cell with the given number of free cells before it
+      int free = ~used & 0xFFFF;
+      for (int skip = cells[i]; skip > 0; skip--) {
+        free &= free - 1;
+      }
+      cells[i] = Integer.numberOfTrailingZeros(free);
+      used |= 1 << cells[i];
+    }
+    return used;
+  }
+
+  // returns the cells next to any of the cells in the given mask
+  static int neighbors(int mask) {
+    return ((mask << 4) | (mask >>> 4) | ((mask << 1) & 0xEEEE) | ((mask >>> 1) & 0x7777))
+        & 0xFFFF;
+  }
+
+  // builds the pattern database for the given groups in memory
+  static PatternDatabase build(int[][] groups) {
+    ByteBuffer[] tables = new ByteBuffer[groups.length];
+    for (int g = 0; g < groups.length; g++) {
+      tables[g] = ByteBuffer.wrap(PatternDatabase.buildTable(groups[g]));
+    }
+    return new PatternDatabase(groups, tables);
+  }
+
+  // builds the table for one group with a breadth first search back from the goal
+  // a state is the cells of the group's tiles plus the region the space can reach
+  // without moving any of them. Moving the space inside its region is free, so
+  // each depth sweeps the regions reached at that depth, and every tile next to
+  // a region can slide into it for one move.
+  static byte[] buildTable(int[] tiles) {
+    int count = tiles.length;
+    int size = PatternDatabase.tableSize(count);
+    byte[] table = new byte[size];
+    // the cells the space has been in, for every arrangement of the tiles
+    char[] visited = new char[size];
+    // the cells the space reached at the current depth and at the next one
+    char[] current = new char[size];
+    char[] next = new char[size];
+    int[] cells = new int[count];
+
+    Arrays.fill(table, (byte) -1);
+    for (int i = 0; i < count; i++) {
+      cells[i] = tiles[i] - 1;
+    }
+    int goal = PatternDatabase.rank(cells, count);
+    table[goal] = 0;
+    current[goal] = (char) (1 << 15);
+
+    boolean reached = true;
+    for (int depth = 0; reached; depth++) {
+      reached = false;
+
+      for (int rank = 0; rank < size; rank++) {
+        int start = current[rank] & ~visited[rank];
+        if (start != 0) {
+          int occupied = PatternDatabase.unrank(rank, cells, count);
+
+          // every cell the space can reach without moving a tile of the group
+          int region = start;
+          int grown = (region | PatternDatabase.neighbors(region)) & ~occupied;
+          while (grown != region) {
+            region = grown;
+            grown = (region | PatternDatabase.neighbors(region)) & ~occupied;
+          }
+          visited[rank] |= region;
+
+          for (int i = 0; i < count; i++) {
+            int from = cells[i];
+            int targets = PatternDatabase.neighbors(1 << from) & region;
+
+            while (targets != 0) {
+              cells[i] = Integer.numberOfTrailingZeros(targets);
+              targets &= targets - 1;
+              int moved = PatternDatabase.rank(cells, count);
+
+              if ((visited[moved] & (1 << from)) == 0) {
+                next[moved] |= 1 << from;
+                reached = true;
+                if (table[moved] == -1) {
+                  table[moved] = (byte) (depth + 1);
+                }
+              }
+            }
+            cells[i] = from;
+          }
+        }
+      }
+
+      char[] swap = current;
+      current = next;
+      next = swap;
+      Arrays.fill(next, (char) 0);
+    }
+    return table;
+  }
+
+  // builds the pattern database for the given groups and writes it to the given file
+  static void write(int[][] groups, Path file) throws IOException {
+    PatternDatabase.build(groups).save(file);
+  }
+
+  // writes this pattern database to the given file
+  // the file is written next to its destination and moved into place, so a
+  // reader never maps a partly written file
+  void save(Path file) throws IOException {
+    int headerSize = 12;
+    for (int[] group : this.groups) {
+      headerSize += 4 + group.length;
+    }
+
+    ByteBuffer header = ByteBuffer.allocate(headerSize);
+    header.putInt(MAGIC).putInt(VERSION).putInt(this.groups.length);
+    for (int[] group : this.groups) {
+      header.putInt(group.length);
+      for (int tile : group) {
+        header.put((byte) tile);
+      }
+    }
+    header.flip();
+
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (header.hasRemaining()) {
+        out.write(header);
+      }
+      for (ByteBuffer table : this.tables) {
+        ByteBuffer contents = table.duplicate();
+        contents.clear();
+        while (contents.hasRemaining()) {
+          out.write(contents);
+        }
+      }
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // maps the pattern database in the given file into memory
+  // the tables are read straight from the page cache, so loading is immediate
+  // and every JVM on the host that maps the same file shares the pages
+  static PatternDatabase load(Path file) throws IOException {
+    MappedByteBuffer data;
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+    }
+
+    if (data.limit() < 12 || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Not a pattern database file: " + file);
+    }
+
+    int[][] groups = new int[data.getInt(8)][];
+    int offset = 12;
+    for (int g = 0; g < groups.length; g++) {
+      groups[g] = new int[data.getInt(offset)];
+      offset += 4;
+      for (int i = 0; i < groups[g].length; i++) {
+        groups[g][i] = data.get(offset);
+        offset++;
+      }
+    }
+
+    ByteBuffer[] tables = new ByteBuffer[groups.length];
+    for (int g = 0; g < groups.length; g++) {
+      int size = PatternDatabase.tableSize(groups[g].length);
+      if (offset + size > data.limit()) {
+        throw new IllegalArgumentException("Pattern database file is truncated: " + file);
+      }
+      ByteBuffer table = data.duplicate();
+      table.position(offset);
+      table.limit(offset + size);
+      tables[g] = table.slice();
+      offset += size;
+    }
+    return new PatternDatabase(groups, tables);
+  }
+
+  // maps the given file, building and writing it first if it does not exist yet
+  static PatternDatabase loadOrBuild(Path file, int[][] groups) throws IOException {
+    if (!Files.exists(file)) {
+      PatternDatabase.write(groups, file);
+    }
+    return PatternDatabase.load(file);
+  }
+
+  // maps the default 6-6-3 tables, building them first if needed
+  static PatternDatabase loadDefault() throws IOException {
+    return PatternDatabase.loadOrBuild(Paths.get(DEFAULT_FILE), GROUPS_663);
+  }
+
+  // returns the value for the given group when its tiles are at the given cells
+  int lookup(int group, int[] positions) {
+    int[] tiles = this.groups[group];
+    int rank = 0;
+    int used = 0;
+
+    for (int i = 0; i < tiles.length; i++) {
+      int cell = positions[tiles[i]];
+      rank = rank * (16 - i) + cell - Integer.bitCount(used & ((1 << cell) - 1));
+      used |= 1 << cell;
+    }
+    return this.tables[group].get(rank);
+  }
+
+  // returns the sum over all groups for the given board
+  int estimate(long cells) {
+    int[] positions = new int[16];
+    for (int index = 0; index < 16; index++) {
+      positions[(int) (cells >>> (index * 4)) & 0xF] = index;
+    }
+    return this.estimate(positions);
+  }
+
+  // returns the sum over all groups, where positions holds the index of every tile
+  int estimate(int[] positions) {
+    int sum = 0;
+    for (int g = 0; g < this.groups.length; g++) {
+      sum += this.lookup(g, positions);
+    }
+    return sum;
+  }
+
+  // returns the estimate of the given board reflected about its main diagonal
+  // the reflection takes exactly as many moves to solve, so this is another
+  // lower bound from the same tables
+  int mirroredEstimate(long cells) {
+    int[] positions = new int[16];
+    for (int index = 0; index < 16; index++) {
+      int tile = (int) (cells >>> (index * 4)) & 0xF;
+      positions[MIRROR_TILE[tile]] = MIRROR_CELL[index];
+    }
+    return this.estimate(positions);
+  }
+}
+
+class ExamplesPatternDatabase {
+  // five groups of three tiles, small enough to build in a test
+  static final int[][] SMALL = { { 1, 2, 3 }, { 4, 7, 8 }, { 5, 6, 9 }, { 10, 11, 12 },
+      { 13, 14, 15 } };
+
+  PatternDatabase small = PatternDatabase.build(SMALL);
+
+  // tests for rank and unrank
+  void testRank(Tester t) {
+    int[] cells = { 0, 1, 2 };
+    t.checkExpect(PatternDatabase.rank(cells, 3), 0);
+    cells = new int[] { 15, 14, 13 };
+    t.checkExpect(PatternDatabase.rank(cells, 3), PatternDatabase.tableSize(3) - 1);
+    t.checkExpect(PatternDatabase.tableSize(3), 3360);
+    t.checkExpect(PatternDatabase.tableSize(6), 5765760);
+
+    int[] back = new int[4];
+    for (int rank = 0; rank < PatternDatabase.tableSize(4); rank += 97) {
+      PatternDatabase.unrank(rank, back, 4);
+      t.checkExpect(PatternDatabase.rank(back, 4), rank);
+    }
+    t.checkExpect(PatternDatabase.unrank(PatternDatabase.rank(cells, 3), back, 3), 0xE000);
+    t.checkException(new IllegalArgumentException("Groups can hold at most 8 tiles"),
+        new PatternDatabase(SMALL, new ByteBuffer[5]), "tableSize", 9);
+  }
+
+  // tests for neighbors
+  void testNeighbors(Tester t) {
+    t.checkExpect(PatternDatabase.neighbors(1 << 0), (1 << 1) | (1 << 4));
+    t.checkExpect(PatternDatabase.neighbors(1 << 3), (1 << 2) | (1 << 7));
+    t.checkExpect(PatternDatabase.neighbors(1 << 4), (1 << 0) | (1 << 5) | (1 << 8));
+    t.checkExpect(PatternDatabase.neighbors(1 << 15), (1 << 11) | (1 << 14));
+  }
+
+  // tests for the mirror tables
+  void testMirror(Tester t) {
+    t.checkExpect(PatternDatabase.MIRROR_CELL[1], 4);
+    t.checkExpect(PatternDatabase.MIRROR_CELL[15], 15);
+    t.checkExpect(PatternDatabase.MIRROR_TILE[2], 5);
+    t.checkExpect(PatternDatabase.MIRROR_TILE[0], 0);
+    t.checkExpect(PatternDatabase.MIRROR_TILE[15], 12);
+  }
+
+  // tests for estimate
+  void testEstimate(Tester t) {
+    t.checkExpect(this.small.estimate(PackedBoard.SOLVED), 0);
+    t.checkExpect(this.small.mirroredEstimate(PackedBoard.SOLVED), 0);
+    // one move away
+    t.checkExpect(this.small.estimate(0xF0EDCBA987654321L), 1);
+
+    // never more than the optimal solution
+    Solver solver = new Solver();
+    java.util.Random r = new java.util.Random(11);
+    for (int i = 0; i < 10; i++) {
+      PackedBoard b = new PackedBoard(PackedBoard.SOLVED);
+      for (int k = 0; k < 40; k++) {
+        b.move(Direction.ALL[r.nextInt(4)]);
+      }
+      int optimal = solver.solve(b.cells).size();
+      t.checkExpect(this.small.estimate(b.cells) <= optimal, true);
+      t.checkExpect(this.small.mirroredEstimate(b.cells) <= optimal, true);
+    }
+  }
+
+  // tests for save and load
+  void testSaveLoad(Tester t) throws IOException {
+    Path file = Files.createTempFile("fifteen", ".pdb");
+    try {
+      this.small.save(file);
+      PatternDatabase mapped = PatternDatabase.load(file);
+      t.checkExpect(mapped.groups, SMALL);
+      t.checkExpect(mapped.tables[3].capacity(), 3360);
+      t.checkExpect(mapped.estimate(0x0FEDCBA987654312L), this.small.estimate(0x0FEDCBA987654312L));
+      t.checkExpect(mapped.estimate(0xCFE08BAD47693215L), this.small.estimate(0xCFE08BAD47693215L));
+
+      Files.write(file, new byte[] { 1, 2, 3 });
+      t.checkException(new IllegalArgumentException("Not a pattern database file: " + file),
+          new PatternDatabase(SMALL, new ByteBuffer[5]), "load", file);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
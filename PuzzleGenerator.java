@@ -0,0 +1,412 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import tester.*;
+
+//Deals random boards as packed longs, or as boards of any shape
+//boards are solvable unless the generator is in legacy mode, which deals any
+//permutation exactly the way the original FifteenGame(Random) constructor did
+class PuzzleGenerator {
+  // the longest solution nextWithLength deals boards for: a random walk this long
+  // still reaches boards of its length often enough, and solving them stays quick
+  static final int MAX_LENGTH = 40;
+  // bands that end below this are dealt by random walks, since few dealt boards
+  // have estimates that low
+  static final int WALK_BAND = 30;
+  // the highest estimate a band can start at: about one dealt board in 33000 has
+  // an estimate of 56, and higher ones are too rare to wait for
+  static final int MAX_BAND_ESTIMATE = 56;
+  // the most moves a walk for a band takes before it starts over from the goal
+  static final int MAX_BAND_WALK = 1000;
+
+  // the source of randomness for solvable boards
+  SplittableRandom random;
+  // the source of randomness in legacy mode, or null
+  Random legacy;
+  // used to measure and check difficulty, created when first needed
+  Solver solver;
+
+  // Constructor for a generator of solvable boards with the given seed
+  PuzzleGenerator(long seed) {
+    this.random = new SplittableRandom(seed);
+  }
+
+  // Constructor for a generator of solvable boards seeded from the given Random
+  PuzzleGenerator(Random r) {
+    this(r.nextLong());
+  }
+
+  // Constructor that takes in a Random and whether to deal boards the legacy way
+  // legacy boards can be unsolvable
+  PuzzleGenerator(Random r, boolean legacy) {
+    if (legacy) {
+      this.legacy = r;
+    }
+    else {
+      this.random = new SplittableRandom(r.nextLong());
+    }
+  }
+
+  // Constructor for a generator that measures difficulty with the given solver
+  PuzzleGenerator(long seed, Solver solver) {
+    this(seed);
+    this.solver = solver;
+  }
+
+  // returns the next board
+  long next() {
+    if (this.legacy != null) {
+      return PackedBoard.dealLegacy(this.legacy);
+    }
+
+    // shuffle the values in place, one nibble at a time
+    long cells = PackedBoard.ALL_VALUES;
+    for (int i = 15; i > 0; i--) {
+      int j = this.random.nextInt(i + 1);
+      long diff = ((cells >>> (i * 4)) ^ (cells >>> (j * 4))) & 0xF;
+      cells ^= (diff << (i * 4)) | (diff << (j * 4));
+    }
+
+    // swapping two tiles changes the number of inversions by an odd amount,
+    // which pairs every unsolvable board with exactly one solvable one
+    if (!PackedBoard.isSolvable(cells)) {
+      int first = (cells & 0xF) == 0 || (cells & 0xF0) == 0 ? 2 : 0;
+      long diff = ((cells >>> (first * 4)) ^ (cells >>> (first * 4 + 4))) & 0xF;
+      cells ^= (diff << (first * 4)) | (diff << (first * 4 + 4));
+    }
+    return cells;
+  }
+
+  // returns the next board of the given shape
+  // 4x4 boards are the same ones next deals
+  ABoard deal(BoardShape shape) {
+    if (shape.sameShape(BoardShape.FOUR_BY_FOUR)) {
+      return new PackedBoard(this.next());
+    }
+
+    int[] values = new int[shape.size];
+    if (this.legacy != null) {
+      // choose a random element from the values that are left, like the original
+      ArrayList<Integer> nums = new ArrayList<Integer>();
+      for (int value = 0; value < shape.size; value++) {
+        nums.add(value);
+      }
+      for (int index = 0; index < shape.size; index++) {
+        values[index] = nums.remove(this.legacy.nextInt(nums.size()));
+      }
+      return ABoard.create(shape, values);
+    }
+
+    for (int index = 0; index < shape.size; index++) {
+      values[index] = index;
+    }
+    for (int i = shape.size - 1; i > 0; i--) {
+      int j = this.random.nextInt(i + 1);
+      int value = values[i];
+      values[i] = values[j];
+      values[j] = value;
+    }
+
+    ABoard board = ABoard.create(shape, values);
+    if (!board.isSolvable()) {
+      // swapping two tiles, neither of them the space, pairs every unsolvable
+      // board with exactly one solvable one
+      int first = board.blank < 2 ? 2 : 0;
+      board.swap(first, first + 1);
+    }
+    return board;
+  }
+
+  // returns a stream of the given number of boards
+  LongStream stream(long count) {
+    return LongStream.generate(this::next).limit(count);
+  }
+
+  // returns the given number of boards, no two of them the same
+  long[] distinct(int count) {
+    LongHashSet seen = new LongHashSet(count);
+    long[] boards = new long[count];
+    int found = 0;
+    while (found < count) {
+      long cells = this.next();
+      if (seen.add(cells)) {
+        boards[found] = cells;
+        found++;
+      }
+    }
+    return boards;
+  }
+
+  // returns the solver used to measure difficulty
+  Solver solver() {
+    if (this.solver == null) {
+      this.solver = new Solver();
+    }
+    return this.solver;
+  }
+
+  // returns the solver's estimate of the moves needed to solve the given board
+  int estimate(long cells) {
+    Solver s = this.solver();
+    s.reset(cells);
+    return s.heuristic();
+  }
+
+  // returns the next solvable board whose estimate is from low to high, inclusive
+  // bands that end below WALK_BAND come from random walks, the others from dealt
+  // boards, so bands must start at MAX_BAND_ESTIMATE or below
+  long nextInBand(int low, int high) {
+    if (low > high || high < 0 || low > MAX_BAND_ESTIMATE) {
+      throw new IllegalArgumentException("Band must contain an estimate from 0 to "
+          + MAX_BAND_ESTIMATE);
+    }
+    if (high < WALK_BAND) {
+      return this.walkInBand(Math.max(low, 0), high);
+    }
+
+    long cells = this.next();
+    int h = this.estimate(cells);
+    while (h < low || h > high) {
+      cells = this.next();
+      h = this.estimate(cells);
+    }
+    return cells;
+  }
+
+  // returns a board reached by a random walk from the goal that stopped once its
+  // estimate reached a target picked from the band
+  // a walk that overshoots the band keeps going, since the estimate goes down as
+  // well as up, and starts over if it takes too long
+  long walkInBand(int low, int high) {
+    int target = low + this.nextInt(high - low + 1);
+    long cells = PackedBoard.SOLVED;
+    int blank = 15;
+    int previous = -1;
+
+    for (int step = 0; true; step++) {
+      int h = this.estimate(cells);
+      if (h >= target && h <= high) {
+        return cells;
+      }
+      if (step == MAX_BAND_WALK) {
+        cells = PackedBoard.SOLVED;
+        blank = 15;
+        previous = -1;
+        step = 0;
+      }
+      int d = this.nextInt(4);
+      int other = PackedBoard.NEIGHBORS[(blank << 2) | d];
+      while (other < 0 || (d ^ 1) == previous) {
+        d = this.nextInt(4);
+        other = PackedBoard.NEIGHBORS[(blank << 2) | d];
+      }
+      cells = PackedBoard.slide(cells, blank, other);
+      blank = other;
+      previous = d;
+    }
+  }
+
+  // returns a random int from 0 up to the given bound, from whichever source of
+  // randomness the generator has
+  int nextInt(int bound) {
+    return this.legacy != null ? this.legacy.nextInt(bound) : this.random.nextInt(bound);
+  }
+
+  // returns the next solvable board whose optimal solution takes exactly the given
+  // number of moves
+  // candidates come from random walks of that many moves back from the goal, and
+  // each one is solved to check it
+  // longer targets are not dealt: random boards need about 50 moves, so boards far
+  // from that are rare, and solving each candidate takes too long
+  long nextWithLength(int moves) {
+    if (moves < 0 || moves > MAX_LENGTH) {
+      throw new IllegalArgumentException("Length must be from 0 to " + MAX_LENGTH);
+    }
+
+    while (true) {
+      long cells = this.walk(moves);
+      int h = this.estimate(cells);
+      // every move changes the Manhattan distance by one and linear conflicts come
+      // in pairs, so the estimate has the same parity as the optimal length
+      if (h <= moves && (h & 1) == (moves & 1) && h >= moves / 2
+          && this.solver().solve(cells).size() == moves) {
+        return cells;
+      }
+    }
+  }
+
+  // returns the board reached by the given number of random moves from the goal,
+  // never undoing the move before
+  long walk(int moves) {
+    long cells = PackedBoard.SOLVED;
+    int blank = 15;
+    int previous = -1;
+
+    for (int i = 0; i < moves; i++) {
+      int d = this.random.nextInt(4);
+      int other = PackedBoard.NEIGHBORS[(blank << 2) | d];
+      while (other < 0 || (d ^ 1) == previous) {
+        d = this.random.nextInt(4);
+        other = PackedBoard.NEIGHBORS[(blank << 2) | d];
+      }
+      long tile = (cells >>> (other * 4)) & 0xF;
+      cells = (cells & ~(0xFL << (other * 4))) | (tile << (blank * 4));
+      blank = other;
+      previous = d;
+    }
+    return cells;
+  }
+
+  // returns the board of the given shape reached by the given number of random
+  // moves from the goal, never undoing the move before
+  ABoard walk(BoardShape shape, int moves) {
+    int[] values = new int[shape.size];
+    for (int index = 0; index < shape.size; index++) {
+      values[index] = shape.goal(index);
+    }
+    ABoard board = ABoard.create(shape, values);
+    int previous = -1;
+
+    for (int i = 0; i < moves; i++) {
+      int d = this.random.nextInt(4);
+      while (shape.neighbors[(board.blank << 2) | d] < 0 || (d ^ 1) == previous) {
+        d = this.random.nextInt(4);
+      }
+      board.move(Direction.ALL[d]);
+      previous = d;
+    }
+    return board;
+  }
+}
+
+class ExamplesPuzzleGenerator {
+  // tests for next
+  void testNext(Tester t) {
+    PuzzleGenerator gen = new PuzzleGenerator(42);
+    boolean allSolvable = true;
+    boolean allPermutations = true;
+    for (int i = 0; i < 10000; i++) {
+      long cells = gen.next();
+      allSolvable = allSolvable && PackedBoard.isSolvable(cells);
+      int seen = 0;
+      for (int index = 0; index < 16; index++) {
+        seen |= 1 << new PackedBoard(cells).get(index);
+      }
+      allPermutations = allPermutations && seen == 0xFFFF;
+    }
+    t.checkExpect(allSolvable, true);
+    t.checkExpect(allPermutations, true);
+
+    // the same seed deals the same boards
+    t.checkExpect(new PuzzleGenerator(7).next(), new PuzzleGenerator(7).next());
+    t.checkExpect(new PuzzleGenerator(7).stream(3).toArray(),
+        new PuzzleGenerator(7).stream(3).toArray());
+    t.checkExpect(new PuzzleGenerator(7).next() == new PuzzleGenerator(8).next(), false);
+  }
+
+  // tests for deal
+  void testDeal(Tester t) {
+    PuzzleGenerator gen = new PuzzleGenerator(11);
+    BoardShape[] shapes = { new BoardShape(3, 3), new BoardShape(2, 4), new BoardShape(5, 5),
+        new BoardShape(6, 6), new BoardShape(5, 7) };
+    boolean allSolvable = true;
+    for (BoardShape shape : shapes) {
+      for (int i = 0; i < 200; i++) {
+        ABoard board = gen.deal(shape);
+        allSolvable = allSolvable && board.isSolvable() && board.shape == shape;
+      }
+    }
+    t.checkExpect(allSolvable, true);
+    t.checkExpect(new PuzzleGenerator(7).deal(BoardShape.FOUR_BY_FOUR),
+        new PackedBoard(new PuzzleGenerator(7).next()));
+    t.checkExpect(new PuzzleGenerator(7).deal(new BoardShape(5, 5)) instanceof ByteBoard, true);
+
+    // legacy mode draws the values the way the original constructor did
+    Random r = new Random(20);
+    ABoard legacy = new PuzzleGenerator(new Random(20), true).deal(new BoardShape(3, 3));
+    ArrayList<Integer> nums = new ArrayList<Integer>();
+    for (int value = 0; value < 9; value++) {
+      nums.add(value);
+    }
+    for (int index = 0; index < 9; index++) {
+      t.checkExpect(legacy.get(index), nums.remove(r.nextInt(nums.size())));
+    }
+  }
+
+  // tests for walk on other shapes
+  void testWalk(Tester t) {
+    ABoard board = new PuzzleGenerator(4).walk(new BoardShape(5, 5), 1);
+    t.checkExpect(board.misplaced, 2);
+    t.checkExpect(board.isSolvable(), true);
+    t.checkExpect(new PuzzleGenerator(4).walk(new BoardShape(4, 6), 0).isSolved(), true);
+  }
+
+  // tests for legacy mode
+  void testLegacy(Tester t) {
+    PuzzleGenerator gen = new PuzzleGenerator(new Random(20), true);
+    Random r = new Random(20);
+    t.checkExpect(gen.next(), PackedBoard.dealLegacy(r));
+    t.checkExpect(gen.next(), PackedBoard.dealLegacy(r));
+  }
+
+  // tests for distinct
+  void testDistinct(Tester t) {
+    long[] boards = new PuzzleGenerator(9).distinct(2000);
+    LongHashSet seen = new LongHashSet();
+    boolean allSolvable = true;
+    for (long cells : boards) {
+      seen.add(cells);
+      allSolvable = allSolvable && PackedBoard.isSolvable(cells);
+    }
+    t.checkExpect(seen.size(), 2000);
+    t.checkExpect(allSolvable, true);
+    // boards only repeat once in a great while, so these are the first ones dealt
+    t.checkExpect(boards, new PuzzleGenerator(9).stream(2000).toArray());
+  }
+
+  // tests for nextInBand
+  void testNextInBand(Tester t) {
+    PuzzleGenerator gen = new PuzzleGenerator(3);
+    for (int i = 0; i < 20; i++) {
+      long cells = gen.nextInBand(30, 34);
+      t.checkNumRange(Solver.estimate(cells), 30, 35);
+      t.checkExpect(PackedBoard.isSolvable(cells), true);
+    }
+    // low bands come from walks, and the rare top of the range from dealt boards
+    boolean inBand = true;
+    for (int i = 0; i < 20; i++) {
+      int low = i % 2 == 0 ? 0 : 10;
+      int e = Solver.estimate(gen.nextInBand(low, low + 5));
+      inBand &= e >= low && e <= low + 5;
+    }
+    t.checkExpect(inBand, true);
+    t.checkExpect(Solver.estimate(gen.nextInBand(0, 0)), 0);
+    t.checkNumRange(Solver.estimate(gen.nextInBand(-5, 1)), 0, 2);
+    t.checkNumRange(Solver.estimate(gen.nextInBand(20, 22)), 20, 23);
+    t.checkExpect(Solver.estimate(gen.nextInBand(56, 56)), 56);
+    t.checkNumRange(Solver.estimate(new PuzzleGenerator(new Random(3), true).nextInBand(4, 8)),
+        4, 9);
+    t.checkException(new IllegalArgumentException("Band must contain an estimate from 0 to 56"),
+        gen, "nextInBand", 10, 5);
+    t.checkException(new IllegalArgumentException("Band must contain an estimate from 0 to 56"),
+        gen, "nextInBand", 62, 66);
+    t.checkException(new IllegalArgumentException("Band must contain an estimate from 0 to 56"),
+        gen, "nextInBand", -5, -1);
+  }
+
+  // tests for nextWithLength
+  void testNextWithLength(Tester t) {
+    PuzzleGenerator gen = new PuzzleGenerator(5);
+    Solver solver = new Solver();
+    t.checkExpect(gen.nextWithLength(0), PackedBoard.SOLVED);
+    t.checkExpect(solver.solve(gen.nextWithLength(1)).size(), 1);
+    t.checkExpect(solver.solve(gen.nextWithLength(15)).size(), 15);
+    t.checkExpect(solver.solve(gen.nextWithLength(28)).size(), 28);
+    t.checkExpect(solver.solve(gen.nextWithLength(40)).size(), 40);
+    t.checkException(new IllegalArgumentException("Length must be from 0 to 40"), gen,
+        "nextWithLength", 41);
+    t.checkException(new IllegalArgumentException("Length must be from 0 to 40"), gen,
+        "nextWithLength", -1);
+  }
+}
@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import tester.*;
+
+//The 4x4 boards of many concurrent game sessions, packed one long per session
+//a move reads the board, computes the next one and swaps it in with a single
+//compare-and-set, so moves never lock, and moves on one session never retry
+//because of moves on another
+//every board sits on its own 64-byte cache line, so sessions do not slow each
+//other down by sharing one
+class SessionTable {
+  // the number of longs between two sessions' boards, one cache line
+  static final int STRIDE = 8;
+
+  // the most sessions open at once
+  int capacity;
+  // the board of every session, at index id * STRIDE, or 0 if the session is closed
+  // no board holds every value, so 0 is never a board
+  AtomicLongArray boards;
+  // the next id that was never used
+  AtomicInteger nextId = new AtomicInteger();
+  // ids of closed sessions, for reuse
+  ConcurrentLinkedQueue<Integer> freeIds = new ConcurrentLinkedQueue<Integer>();
+  // the number of open sessions
+  AtomicInteger open = new AtomicInteger();
+  // the number of moves made in every session, counted without contention
+  LongAdder moves = new LongAdder();
+
+  // Constructor that takes in the most sessions open at once
+  SessionTable(int capacity) {
+    if (capacity < 1 || capacity > Integer.MAX_VALUE / STRIDE) {
+      throw new IllegalArgumentException("Capacity must be from 1 to "
+          + Integer.MAX_VALUE / STRIDE);
+    }
+    this.capacity = capacity;
+    this.boards = new AtomicLongArray(capacity * STRIDE);
+  }
+
+  // opens a session with the given board and returns its id
+  int openSession(long cells) {
+    Integer free = this.freeIds.poll();
+    int id;
+    if (free != null) {
+      id = free;
+    }
+    else {
+      id = this.nextId.getAndIncrement();
+      if (id >= this.capacity) {
+        this.nextId.decrementAndGet();
+        throw new IllegalArgumentException("Too many sessions");
+      }
+    }
+    this.boards.set(id * STRIDE, cells);
+    this.open.incrementAndGet();
+    return id;
+  }
+
+  // returns the board of the given session
+  long get(int id) {
+    long cells = id >= 0 && id < this.capacity ? this.boards.get(id * STRIDE) : 0;
+    if (cells == 0) {
+      throw new IllegalArgumentException("No session " + id);
+    }
+    return cells;
+  }
+
+  // slides the tile next to the space of the given session in the given direction
+  // returns the board after the move, which is unchanged if there was no tile
+  long move(int id, Direction d) {
+    while (true) {
+      long cells = this.get(id);
+      int blank = PackedBoard.indexOf(cells, 0);
+      int other = PackedBoard.NEIGHBORS[(blank << 2) | d.ordinal()];
+      if (other < 0) {
+        return cells;
+      }
+
+      long tile = (cells >>> (other * 4)) & 0xF;
+      long next = (cells & ~(0xFL << (other * 4))) | (tile << (blank * 4));
+      // another move on the same session came first, so try again from its board
+      if (this.boards.compareAndSet(id * STRIDE, cells, next)) {
+        this.moves.increment();
+        return next;
+      }
+    }
+  }
+
+  // closes the given session, so its id can be reused
+  void close(int id) {
+    this.get(id);
+    if (this.boards.getAndSet(id * STRIDE, 0) != 0) {
+      this.open.decrementAndGet();
+      this.freeIds.add(id);
+    }
+  }
+}
+
+class ExamplesSessionTable {
+  // tests for opening, moving and closing sessions
+  void testSessions(Tester t) {
+    SessionTable table = new SessionTable(2);
+    int first = table.openSession(PackedBoard.SOLVED);
+    int second = table.openSession(PackedBoard.ALL_VALUES);
+    t.checkExpect(first, 0);
+    t.checkExpect(second, 1);
+    t.checkExpect(table.open.get(), 2);
+    t.checkException(new IllegalArgumentException("Too many sessions"), table, "openSession",
+        PackedBoard.SOLVED);
+
+    t.checkExpect(table.move(first, Direction.UP), PackedBoard.SOLVED);
+    t.checkExpect(table.move(first, Direction.DOWN), 0xCFED0BA987654321L);
+    t.checkExpect(table.get(first), 0xCFED0BA987654321L);
+    t.checkExpect(table.get(second), PackedBoard.ALL_VALUES);
+    t.checkExpect(table.moves.sum(), 1L);
+
+    table.close(first);
+    t.checkExpect(table.open.get(), 1);
+    t.checkException(new IllegalArgumentException("No session 0"), table, "get", 0);
+    t.checkException(new IllegalArgumentException("No session 0"), table, "move", 0,
+        Direction.UP);
+    t.checkException(new IllegalArgumentException("No session 7"), table, "get", 7);
+    t.checkExpect(table.openSession(PackedBoard.SOLVED), 0);
+    t.checkConstructorException(
+        new IllegalArgumentException("Capacity must be from 1 to 268435455"), "SessionTable", 0);
+  }
+
+  // tests that concurrent moves on one session are never lost
+  void testConcurrentMoves(Tester t) throws InterruptedException {
+    SessionTable table = new SessionTable(4);
+    int shared = table.openSession(PackedBoard.SOLVED);
+    int own = table.openSession(PackedBoard.SOLVED);
+    ArrayList<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 4; i++) {
+      Thread thread = new Thread(() -> {
+        for (int j = 0; j < 10000; j++) {
+          table.move(shared, Direction.ALL[j & 3]);
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    // a solved board moved down then up is solved again
+    for (int j = 0; j < 1000; j++) {
+      table.move(own, Direction.DOWN);
+      table.move(own, Direction.UP);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    PackedBoard board = new PackedBoard(table.get(shared));
+    int seen = 0;
+    for (int index = 0; index < 16; index++) {
+      seen |= 1 << board.get(index);
+    }
+    t.checkExpect(seen, 0xFFFF);
+    t.checkExpect(PackedBoard.isSolvable(board.cells), true);
+    t.checkExpect(table.get(own), PackedBoard.SOLVED);
+  }
+}
@@ -0,0 +1,269 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import tester.*;
+
+//Plays large numbers of games with an agent, on every core, without a display
+//usage: java SimulationRunner <random|greedy|solver|bidirectional> <games>
+//           [max moves] [workers] [rows] [cols] [seed] [pattern database file]
+//game i is dealt and played from seed + i, so the results do not depend on the
+//number of workers
+class SimulationRunner {
+  // the shape of the boards to deal
+  BoardShape shape;
+  // the number of workers playing games
+  int workers;
+  // the most moves an agent makes in one game before it counts as unsolved
+  long maxMoves;
+  // makes an agent for every worker
+  Supplier<IAgent> agents;
+
+  // Constructor that takes in the shape of the boards, the number of workers, the
+  // moves allowed in a game and how to make an agent for every worker
+  SimulationRunner(BoardShape shape, int workers, long maxMoves, Supplier<IAgent> agents) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("There must be at least one worker");
+    }
+    this.shape = shape;
+    this.workers = workers;
+    this.maxMoves = maxMoves;
+    this.agents = agents;
+  }
+
+  // returns how to make the agent with the given name
+  static Supplier<IAgent> agent(String name, PatternDatabase patterns) {
+    switch (name) {
+      case "random":
+        return () -> new RandomWalkAgent();
+      case "greedy":
+        return () -> new GreedyAgent();
+      case "solver":
+        return () -> new SolverAgent(patterns);
+      case "bidirectional":
+        return () -> new SolverAgent(new BidirectionalSolver(patterns));
+      default:
+        throw new IllegalArgumentException("Unknown agent: " + name);
+    }
+  }
+
+  // runs the simulation from the command line
+  public static void main(String[] args)
+      throws IOException, InterruptedException, ExecutionException {
+    if (args.length < 2) {
+      System.err.println("usage: java SimulationRunner <random|greedy|solver|bidirectional>"
+          + " <games> [max moves] [workers] [rows] [cols] [seed] [pattern database]");
+      System.exit(2);
+    }
+
+    long games = Long.parseLong(args[1]);
+    long maxMoves = args.length > 2 ? Long.parseLong(args[2]) : 10000;
+    int workers = args.length > 3 ? Integer.parseInt(args[3])
+        : Runtime.getRuntime().availableProcessors();
+    int rows = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+    int cols = args.length > 5 ? Integer.parseInt(args[5]) : rows;
+    long seed = args.length > 6 ? Long.parseLong(args[6]) : System.nanoTime();
+    PatternDatabase patterns = args.length > 7
+        ? PatternDatabase.loadOrBuild(Paths.get(args[7]), PatternDatabase.GROUPS_663)
+        : null;
+
+    SimulationRunner runner = new SimulationRunner(BoardShape.of(rows, cols), workers, maxMoves,
+        SimulationRunner.agent(args[0], patterns));
+    System.out.println(runner.run(games, seed).report());
+  }
+
+  // plays the given number of games and returns their statistics
+  SimulationStats run(long games, long seed) throws InterruptedException, ExecutionException {
+    ExecutorService pool = Executors.newFixedThreadPool(this.workers);
+    ArrayList<Future<SimulationStats>> parts = new ArrayList<Future<SimulationStats>>();
+    long start = System.nanoTime();
+
+    try {
+      for (int w = 0; w < this.workers; w++) {
+        int worker = w;
+        parts.add(pool.submit(() -> this.playShare(worker, games, seed)));
+      }
+
+      SimulationStats total = new SimulationStats();
+      for (Future<SimulationStats> part : parts) {
+        total.add(part.get());
+      }
+      total.nanos = System.nanoTime() - start;
+      return total;
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  // plays every game whose number leaves the given remainder when divided by the
+  // number of workers, and returns their statistics
+  // each worker counts into its own statistics, so workers never contend
+  SimulationStats playShare(int worker, long games, long seed) {
+    IAgent agent = this.agents.get();
+    SimulationStats stats = new SimulationStats();
+    for (long i = worker; i < games; i += this.workers) {
+      SplittableRandom random = new SplittableRandom(seed + i);
+      GameCore game = new GameCore(new PuzzleGenerator(random.nextLong()).deal(this.shape), false);
+      this.play(game, agent, random, stats);
+    }
+    return stats;
+  }
+
+  // plays one game to the end, or until the agent gives up, runs out of moves or
+  // tries a move off the board
+  void play(GameCore game, IAgent agent, SplittableRandom random, SimulationStats stats) {
+    agent.start(game, random);
+    long moves = 0;
+    while (!game.isWon() && moves < this.maxMoves) {
+      Direction d = agent.next(game);
+      if (d == null) {
+        break;
+      }
+      if (!game.move(d)) {
+        // a move off the board would never end the game
+        break;
+      }
+      moves++;
+    }
+    stats.record(game.isWon(), moves);
+  }
+}
+
+//The totals of a simulation
+class SimulationStats {
+  // the number of games played and won
+  long games;
+  long solved;
+  // the number of moves made in every game, and in the games that were won
+  long moves;
+  long solvedMoves;
+  // the fewest and most moves taken to win a game
+  long shortestSolve = Long.MAX_VALUE;
+  long longestSolve;
+  // the time the simulation took, in nanoseconds
+  long nanos;
+
+  // counts a game that was won or not after the given number of moves
+  void record(boolean won, long gameMoves) {
+    this.games++;
+    this.moves += gameMoves;
+    if (won) {
+      this.solved++;
+      this.solvedMoves += gameMoves;
+      this.shortestSolve = Math.min(this.shortestSolve, gameMoves);
+      this.longestSolve = Math.max(this.longestSolve, gameMoves);
+    }
+  }
+
+  // adds the counts of the given statistics to these
+  void add(SimulationStats other) {
+    this.games += other.games;
+    this.solved += other.solved;
+    this.moves += other.moves;
+    this.solvedMoves += other.solvedMoves;
+    this.shortestSolve = Math.min(this.shortestSolve, other.shortestSolve);
+    this.longestSolve = Math.max(this.longestSolve, other.longestSolve);
+  }
+
+  // returns the fraction of games that were won
+  double solveRate() {
+    return this.games == 0 ? 0 : (double) this.solved / this.games;
+  }
+
+  // returns the average number of moves in the games that were won
+  double meanSolveMoves() {
+    return this.solved == 0 ? 0 : (double) this.solvedMoves / this.solved;
+  }
+
+  // returns the number of moves made per second
+  double movesPerSecond() {
+    return this.nanos == 0 ? 0 : this.moves / (this.nanos / 1e9);
+  }
+
+  // returns a summary of the statistics
+  String report() {
+    return String.format("%d games, %d solved (%.1f%%), %d moves in %.3f s: %.0f moves/s%n"
+        + "moves to solve: mean %.1f, min %d, max %d", this.games, this.solved,
+        this.solveRate() * 100, this.moves, this.nanos / 1e9, this.movesPerSecond(),
+        this.meanSolveMoves(), this.solved == 0 ? 0 : this.shortestSolve, this.longestSolve);
+  }
+}
+
+class ExamplesSimulationRunner {
+  // tests that the solver agent wins every game in the fewest moves
+  void testSolverAgent(Tester t) throws Exception {
+    BoardShape three = new BoardShape(3, 3);
+    SimulationStats stats = new SimulationRunner(three, 2, 1000,
+        SimulationRunner.agent("solver", null)).run(20, 1);
+    t.checkExpect(stats.games, 20L);
+    t.checkExpect(stats.solved, 20L);
+    t.checkExpect(stats.solveRate(), 1.0);
+    t.checkNumRange(stats.longestSolve, 0L, 32L);
+    t.checkExpect(stats.moves, stats.solvedMoves);
+  }
+
+  // tests that the bidirectional solver agent wins in as few moves as the solver agent
+  void testBidirectionalAgent(Tester t) throws Exception {
+    BoardShape three = new BoardShape(3, 3);
+    SimulationStats ida = new SimulationRunner(three, 1, 1000,
+        SimulationRunner.agent("solver", null)).run(10, 5);
+    SimulationStats bidirectional = new SimulationRunner(three, 1, 1000,
+        SimulationRunner.agent("bidirectional", null)).run(10, 5);
+    t.checkExpect(bidirectional.solved, 10L);
+    t.checkExpect(bidirectional.moves, ida.moves);
+  }
+
+  // tests that the results do not depend on the number of workers
+  void testWorkers(Tester t) throws Exception {
+    BoardShape three = new BoardShape(3, 3);
+    SimulationStats one = new SimulationRunner(three, 1, 2000,
+        SimulationRunner.agent("greedy", null)).run(30, 7);
+    SimulationStats threeWorkers = new SimulationRunner(three, 3, 2000,
+        SimulationRunner.agent("greedy", null)).run(30, 7);
+    t.checkExpect(one.games, 30L);
+    t.checkExpect(threeWorkers.solved, one.solved);
+    t.checkExpect(threeWorkers.moves, one.moves);
+    t.checkExpect(threeWorkers.shortestSolve, one.shortestSolve);
+  }
+
+  // tests that games stop after the most moves allowed
+  void testMaxMoves(Tester t) throws Exception {
+    SimulationStats stats = new SimulationRunner(BoardShape.FOUR_BY_FOUR, 2, 50,
+        SimulationRunner.agent("random", null)).run(10, 3);
+    t.checkExpect(stats.games, 10L);
+    t.checkExpect(stats.moves <= 500, true);
+    t.checkExpect(stats.moves >= 10, true);
+  }
+
+  // tests for SimulationStats
+  void testStats(Tester t) {
+    SimulationStats stats = new SimulationStats();
+    stats.record(true, 10);
+    stats.record(false, 100);
+    SimulationStats other = new SimulationStats();
+    other.record(true, 20);
+    stats.add(other);
+    t.checkExpect(stats.games, 3L);
+    t.checkExpect(stats.solved, 2L);
+    t.checkExpect(stats.moves, 130L);
+    t.checkExpect(stats.meanSolveMoves(), 15.0);
+    t.checkExpect(stats.shortestSolve, 10L);
+    t.checkExpect(stats.longestSolve, 20L);
+    stats.nanos = 1000000000L;
+    t.checkExpect(stats.movesPerSecond(), 130.0);
+  }
+
+  // tests for errors
+  void testErrors(Tester t) {
+    t.checkConstructorException(new IllegalArgumentException("There must be at least one worker"),
+        "SimulationRunner", BoardShape.FOUR_BY_FOUR, 0, 10L, null);
+    t.checkException(new IllegalArgumentException("Unknown agent: lucky"),
+        new SimulationRunner(BoardShape.FOUR_BY_FOUR, 1, 10, null), "agent", "lucky", null);
+  }
+}
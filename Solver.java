@@ -0,0 +1,463 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import tester.*;
+
+//Finds optimal solutions to a board with IDA*
+//the heuristic is Manhattan distance plus linear conflict, and it is updated
+//after every move from tables instead of being recomputed over the board
+//when given a pattern database, the larger of its value on the board, its value
+//on the board's reflection and Manhattan distance plus linear conflict is used
+//when given an IHeuristic, that is used instead, and told of every move
+class Solver implements ISolver {
+  // returned by search when the goal was reached
+  static final int FOUND = -1;
+
+  // the longest solution the search will look for
+  // every solvable 4x4 board can be solved in 80 moves
+  static final int MAX_MOVES = 80;
+
+  // the Manhattan distance of every tile from every index
+  // indexed by tile * 16 + index, and 0 for the space
+  static final int[] MANHATTAN = Solver.buildManhattan();
+
+  // the linear conflict of every possible content of every row
+  // indexed by row * 65536 + the 16 bits of the row
+  static final byte[] ROW_CONFLICTS = Solver.buildConflicts(true);
+
+  // the linear conflict of every possible content of every column
+  // indexed by column * 65536 + the nibbles of the column, top row lowest
+  static final byte[] COLUMN_CONFLICTS = Solver.buildConflicts(false);
+
+  // the board being searched
+  long cells;
+  // the index of the space on the board being searched
+  int blank;
+  // the Manhattan distance of the board being searched
+  int manhattan;
+  // the linear conflict of each row and column of the board being searched
+  int[] rowConflicts = new int[4];
+  int[] columnConflicts = new int[4];
+  // the sum of all row and column conflicts
+  int conflicts;
+
+  // the pattern database, or null to use only Manhattan distance plus linear conflict
+  PatternDatabase patterns;
+  // the index of every tile on the board being searched and on its reflection
+  int[] positions = new int[16];
+  int[] mirrorPositions = new int[16];
+  // the pattern database value of every group on the board and on its reflection
+  int[] groupValues;
+  int[] mirrorValues;
+  // the sums of the group values on the board and on its reflection
+  int patternSum;
+  int mirrorSum;
+
+  // the heuristic used instead of the built-in ones, or null
+  IHeuristic estimator;
+  // the estimate of the board being searched, when there is a heuristic
+  int estimated;
+
+  // the directions of the moves made so far
+  byte[] path = new byte[MAX_MOVES];
+  // the number of moves in the solution that was found
+  int length;
+  // the number of states expanded by the last solve
+  long nodes;
+
+  // Constructor for a solver that uses Manhattan distance plus linear conflict
+  Solver() {
+    this((PatternDatabase) null);
+  }
+
+  // Constructor for a solver that also uses the given pattern database
+  Solver(PatternDatabase patterns) {
+    this.patterns = patterns;
+    if (patterns != null) {
+      this.groupValues = new int[patterns.groups.length];
+      this.mirrorValues = new int[patterns.groups.length];
+    }
+  }
+
+  // Constructor for a solver that uses the given heuristic on 4x4 boards
+  Solver(IHeuristic estimator) {
+    this((PatternDatabase) null);
+    this.estimator = estimator;
+  }
+
+  // builds the table of Manhattan distances
+  static int[] buildManhattan() {
+    int[] table = new int[16 * 16];
+
+    for (int tile = 1; tile < 16; tile++) {
+      for (int index = 0; index < 16; index++) {
+        table[tile * 16 + index] = Math.abs((tile - 1) / 4 - index / 4)
+            + Math.abs((tile - 1) % 4 - index % 4);
+      }
+    }
+    return table;
+  }
+
+  // builds the table of linear conflicts for rows, or for columns
+  static byte[] buildConflicts(boolean rows) {
+    byte[] table = new byte[4 * 65536];
+    int[] goals = new int[4];
+
+    for (int line = 0; line < 4; line++) {
+      for (int bits = 0; bits < 65536; bits++) {
+        // the goal positions along the line of the tiles that belong in it
+        int count = 0;
+
+        for (int k = 0; k < 4; k++) {
+          int tile = (bits >>> (k * 4)) & 0xF;
+          if (tile != 0) {
+            int goalRow = (tile - 1) / 4;
+            int goalCol = (tile - 1) % 4;
+            if (rows && goalRow == line) {
+              goals[count] = goalCol;
+              count++;
+            }
+            else if (!rows && goalCol == line) {
+              goals[count] = goalRow;
+              count++;
+            }
+          }
+        }
+        // every tile outside the longest increasing run must leave the line and
+        // come back, which costs two extra moves
+        table[line * 65536 + bits] = (byte) (2 * (count - Solver.longestIncreasing(goals, count)));
+      }
+    }
+    return table;
+  }
+
+  // returns the length of the longest increasing subsequence of the first count values
+  static int longestIncreasing(int[] values, int count) {
+    int[] best = new int[count];
+    int result = 0;
+
+    for (int i = 0; i < count; i++) {
+      best[i] = 1;
+      for (int j = 0; j < i; j++) {
+        if (values[j] < values[i] && best[j] + 1 > best[i]) {
+          best[i] = best[j] + 1;
+        }
+      }
+      result = Math.max(result, best[i]);
+    }
+    return result;
+  }
+
+  // returns the nibbles of the given column, top row lowest
+  static int columnBits(long cells, int col) {
+    long shifted = cells >>> (col * 4);
+    return (int) ((shifted & 0xF) | ((shifted >>> 12) & 0xF0) | ((shifted >>> 24) & 0xF00)
+        | ((shifted >>> 36) & 0xF000));
+  }
+
+  // returns the Manhattan distance plus linear conflict of the given board
+  static int estimate(long cells) {
+    Solver s = new Solver();
+    s.reset(cells);
+    return s.manhattan + s.conflicts;
+  }
+
+  // returns an optimal list of keys that solves the game
+  ArrayList<String> solve(FifteenGame game) {
+    return this.solve(game.core.board);
+  }
+
+  // returns an optimal list of keys that solves the given board
+  // boards that are not 4x4 are searched by a GridSolver of their shape
+  public ArrayList<String> solve(ABoard board) {
+    if (board instanceof PackedBoard && board.shape.sameShape(BoardShape.FOUR_BY_FOUR)) {
+      return this.solve(((PackedBoard) board).cells);
+    }
+    else {
+      GridSolver grid = new GridSolver(board.shape);
+      ArrayList<String> keys = grid.solve(board.copy());
+      this.nodes = grid.nodes;
+      return keys;
+    }
+  }
+
+  // returns the number of states expanded by the last solve
+  public long nodes() {
+    return this.nodes;
+  }
+
+  // returns an optimal list of keys that solves the given tiles
+  ArrayList<String> solve(ArrayList<ArrayList<Tile>> tiles) {
+    return this.solve(new FifteenGame(tiles));
+  }
+
+  // returns an optimal list of keys that solves the given packed board
+  ArrayList<String> solve(long cells) {
+    if (!PackedBoard.isSolvable(cells)) {
+      throw new IllegalArgumentException("Board is not solvable");
+    }
+
+    long start = GameMetrics.ENABLED ? System.nanoTime() : 0;
+    this.reset(cells);
+    this.nodes = 0;
+    int bound = this.heuristic();
+    int result = this.search(0, bound, -1);
+
+    while (result != FOUND) {
+      bound = result;
+      result = this.search(0, bound, -1);
+    }
+    if (GameMetrics.ENABLED) {
+      GameMetrics.GLOBAL.solved(BoardShape.FOUR_BY_FOUR, this.length, this.nodes, start);
+    }
+
+    ArrayList<String> keys = new ArrayList<String>();
+    for (int i = 0; i < this.length; i++) {
+      keys.add(Direction.ALL[this.path[i]].key);
+    }
+    return keys;
+  }
+
+  // sets up the search state for the given board
+  void reset(long cells) {
+    this.cells = cells;
+    this.blank = PackedBoard.indexOf(cells, 0);
+    this.manhattan = 0;
+    this.conflicts = 0;
+    this.length = 0;
+    if (this.estimator != null) {
+      this.estimated = this.estimator.reset(cells);
+      return;
+    }
+
+    for (int index = 0; index < 16; index++) {
+      this.manhattan += MANHATTAN[((int) (cells >>> (index * 4)) & 0xF) * 16 + index];
+    }
+    for (int line = 0; line < 4; line++) {
+      this.rowConflicts[line] = ROW_CONFLICTS[line * 65536
+          + ((int) (cells >>> (line * 16)) & 0xFFFF)];
+      this.columnConflicts[line] = COLUMN_CONFLICTS[line * 65536
+          + Solver.columnBits(cells, line)];
+      this.conflicts += this.rowConflicts[line] + this.columnConflicts[line];
+    }
+
+    if (this.patterns != null) {
+      for (int index = 0; index < 16; index++) {
+        int tile = (int) (cells >>> (index * 4)) & 0xF;
+        this.positions[tile] = index;
+        this.mirrorPositions[PatternDatabase.MIRROR_TILE[tile]] =
+            PatternDatabase.MIRROR_CELL[index];
+      }
+      this.patternSum = 0;
+      this.mirrorSum = 0;
+      for (int g = 0; g < this.groupValues.length; g++) {
+        this.groupValues[g] = this.patterns.lookup(g, this.positions);
+        this.mirrorValues[g] = this.patterns.lookup(g, this.mirrorPositions);
+        this.patternSum += this.groupValues[g];
+        this.mirrorSum += this.mirrorValues[g];
+      }
+    }
+  }
+
+  // returns the estimated number of moves left from the board being searched
+  int heuristic() {
+    if (this.estimator != null) {
+      return this.estimated;
+    }
+    int h = this.manhattan + this.conflicts;
+    if (this.patterns != null) {
+      h = Math.max(h, Math.max(this.patternSum, this.mirrorSum));
+    }
+    return h;
+  }
+
+  // searches below the current board, which is g moves away from the start
+  // returns FOUND if the goal was reached, otherwise the smallest estimated
+  // total cost that was over the bound
+  int search(int g, int bound, int previous) {
+    int h = this.heuristic();
+    int f = g + h;
+
+    if (f > bound) {
+      return f;
+    }
+    // Manhattan distance is part of every estimate, and a heuristic must be 0 only
+    // for the goal, so only the goal has none
+    if (h == 0) {
+      this.length = g;
+      return FOUND;
+    }
+
+    this.nodes++;
+    int min = Integer.MAX_VALUE;
+    int space = this.blank;
+
+    for (int d = 0; d < 4; d++) {
+      int other = PackedBoard.NEIGHBORS[(space << 2) | d];
+      // skip moves off the board and moves that undo the previous one
+      if (other >= 0 && (d ^ 1) != previous) {
+        this.slide(other);
+        this.path[g] = (byte) d;
+        int result = this.search(g + 1, bound, d);
+        if (result == FOUND) {
+          return FOUND;
+        }
+        this.slide(space);
+        if (result < min) {
+          min = result;
+        }
+      }
+    }
+    return min;
+  }
+
+  // slides the tile at the given index into the space and updates the heuristic
+  void slide(int from) {
+    int to = this.blank;
+    long tile = (this.cells >>> (from * 4)) & 0xF;
+    this.cells = (this.cells & ~(0xFL << (from * 4))) | (tile << (to * 4));
+    this.blank = from;
+    if (this.estimator != null) {
+      this.estimated = this.estimator.slide(this.cells, (int) tile, from, to);
+      return;
+    }
+    this.manhattan += MANHATTAN[(int) tile * 16 + to] - MANHATTAN[(int) tile * 16 + from];
+
+    // a tile that moves along a row keeps its order within the row, so only the
+    // two columns it left and entered change, and the same goes for columns
+    if (from / 4 == to / 4) {
+      this.updateColumn(from % 4);
+      this.updateColumn(to % 4);
+    }
+    else {
+      this.updateRow(from / 4);
+      this.updateRow(to / 4);
+    }
+
+    if (this.patterns != null) {
+      // only the group of the moved tile changes, on the board and on its reflection
+      int t = (int) tile;
+      this.positions[t] = to;
+      int group = this.patterns.groupOf[t];
+      if (group >= 0) {
+        int value = this.patterns.lookup(group, this.positions);
+        this.patternSum += value - this.groupValues[group];
+        this.groupValues[group] = value;
+      }
+
+      int mirrored = PatternDatabase.MIRROR_TILE[t];
+      this.mirrorPositions[mirrored] = PatternDatabase.MIRROR_CELL[to];
+      group = this.patterns.groupOf[mirrored];
+      if (group >= 0) {
+        int value = this.patterns.lookup(group, this.mirrorPositions);
+        this.mirrorSum += value - this.mirrorValues[group];
+        this.mirrorValues[group] = value;
+      }
+    }
+  }
+
+  // recomputes the linear conflict of the given row
+  void updateRow(int row) {
+    int conflict = ROW_CONFLICTS[row * 65536
+        + ((int) (this.cells >>> (row * 16)) & 0xFFFF)];
+    this.conflicts += conflict - this.rowConflicts[row];
+    this.rowConflicts[row] = conflict;
+  }
+
+  // recomputes the linear conflict of the given column
+  void updateColumn(int col) {
+    int conflict = COLUMN_CONFLICTS[col * 65536 + Solver.columnBits(this.cells, col)];
+    this.conflicts += conflict - this.columnConflicts[col];
+    this.columnConflicts[col] = conflict;
+  }
+}
+
+class ExamplesSolver {
+  Solver solver = new Solver();
+
+  // tests for the heuristic tables
+  void testTables(Tester t) {
+    t.checkExpect(Solver.MANHATTAN[1 * 16 + 0], 0);
+    t.checkExpect(Solver.MANHATTAN[1 * 16 + 15], 6);
+    t.checkExpect(Solver.MANHATTAN[15 * 16 + 0], 5);
+    t.checkExpect(Solver.MANHATTAN[0 * 16 + 0], 0);
+    t.checkExpect(Solver.columnBits(PackedBoard.SOLVED, 0), 0xD951);
+    t.checkExpect(Solver.columnBits(PackedBoard.SOLVED, 3), 0x0C84);
+
+    // 2 1 in the first row conflict, 3 4 do not
+    t.checkExpect(Solver.ROW_CONFLICTS[0x4312], (byte) 2);
+    // 4 3 2 1 needs three of them to leave the row
+    t.checkExpect(Solver.ROW_CONFLICTS[0x1234], (byte) 6);
+    // tiles from other rows never conflict
+    t.checkExpect(Solver.ROW_CONFLICTS[65536 + 0x4312], (byte) 0);
+    // 5 above 1 in the first column
+    t.checkExpect(Solver.COLUMN_CONFLICTS[0x0015], (byte) 2);
+  }
+
+  // tests for estimate
+  void testEstimate(Tester t) {
+    t.checkExpect(Solver.estimate(PackedBoard.SOLVED), 0);
+    // 1 2 3 4 / 5 6 7 8 / 9 10 11 12 / 13 14 0 15
+    t.checkExpect(Solver.estimate(0xF0EDCBA987654321L), 1);
+    // 2 1 swapped in the first row: two tiles off by one plus a conflict
+    t.checkExpect(Solver.estimate(0x0FEDCBA987654312L), 4);
+  }
+
+  // tests for solve
+  void testSolve(Tester t) {
+    t.checkExpect(this.solver.solve(PackedBoard.SOLVED), new ArrayList<String>());
+
+    FifteenGame game = new FifteenGame(new PackedBoard(PackedBoard.SOLVED));
+    game.onKeyEvent("down");
+    t.checkExpect(this.solver.solve(game), new ArrayList<String>(Arrays.asList("up")));
+
+    // a board 30 random moves away from the goal
+    Random r = new Random(7);
+    game = new FifteenGame(new PackedBoard(PackedBoard.SOLVED));
+    for (int i = 0; i < 30; i++) {
+      game.move(Direction.ALL[r.nextInt(4)]);
+    }
+    ArrayList<String> keys = this.solver.solve(game);
+    t.checkExpect(keys.size() <= 30, true);
+    t.checkExpect(MoveSequence.solves(game.core.board, keys), true);
+
+    // a 4x4 board made with its own shape takes the packed path too
+    game = new FifteenGame(ABoard.create(new BoardShape(4, 4),
+        new int[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 0, 15 }));
+    t.checkExpect(this.solver.solve(game), new ArrayList<String>(Arrays.asList("left")));
+
+    // games of other shapes are solved too
+    game = new FifteenGame(new PuzzleGenerator(5).walk(new BoardShape(3, 3), 20));
+    keys = this.solver.solve(game);
+    t.checkExpect(keys.size() <= 20, true);
+    t.checkExpect(MoveSequence.solves(game.core.board, keys), true);
+
+    // 2 1 3 4 / 5 6 7 8 / 9 10 11 12 / 13 14 15 0 is not solvable
+    t.checkException(new IllegalArgumentException("Board is not solvable"), this.solver, "solve",
+        0x0FEDCBA987654312L);
+  }
+
+  // tests that a pattern database gives the same solution lengths
+  void testSolveWithPatterns(Tester t) {
+    Solver withPatterns = new Solver(PatternDatabase.build(ExamplesPatternDatabase.SMALL));
+    Random r = new Random(5);
+    for (int i = 0; i < 5; i++) {
+      PackedBoard b = new PackedBoard(PackedBoard.SOLVED);
+      for (int k = 0; k < 40; k++) {
+        b.move(Direction.ALL[r.nextInt(4)]);
+      }
+      ArrayList<String> keys = withPatterns.solve(b.cells);
+      t.checkExpect(keys.size(), this.solver.solve(b.cells).size());
+      t.checkExpect(MoveSequence.solves(b, keys), true);
+    }
+  }
+
+  // tests that solutions are optimal on a board with a known solution length
+  void testSolveOptimal(Tester t) {
+    // 5 1 2 3 / 9 6 7 4 / 13 10 11 8 / 0 14 15 12 takes 9 moves
+    long cells = 0xCFE08BAD47693215L;
+    ArrayList<String> keys = this.solver.solve(cells);
+    t.checkExpect(keys.size(), 9);
+    t.checkExpect(MoveSequence.solves(new PackedBoard(cells), keys), true);
+  }
+}
@@ -0,0 +1,322 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import tester.*;
+
+//The walking distance tables of the 4x4 board, for the goal Tile.atCorrectPosition
+//defines: tile v belongs at index v - 1
+//walking distance looks at the board one axis at a time. Along the rows, all it
+//keeps is how many tiles of each goal row are in each row; a move takes a tile
+//from the row next to the space's into the space's row. The fewest such moves
+//that bring every tile to its goal row, plus the same along the columns, never
+//overestimates, and unlike Manhattan distance it counts tiles that must get out
+//of each other's way
+//the columns have the same goal as the rows, turned, so one table serves both.
+//It has 24964 states: for every one, its fewest moves to the goal and the state
+//after each move
+class WalkingDistance {
+  // the first int of every walking distance file
+  static final int MAGIC = 0x46574454;
+  // the format of the file
+  static final int VERSION = 1;
+  // the bytes before the tables: magic, version and the number of states
+  static final int HEADER_SIZE = 12;
+  // where loadDefault looks for the tables
+  static final String DEFAULT_FILE = "fifteen.wd";
+  // the state after a move that cannot be made
+  static final short NONE = -1;
+
+  // how many tiles of every goal row are in every row, three bits each, at bit
+  // (row * 4 + goal row) * 3, of every state in increasing order
+  long[] codes;
+  // the fewest moves to the goal from every state
+  byte[] distances;
+  // the state after every move from every state, indexed by state * 8, plus 0 when
+  // the tile moves up into the space's row and 4 when it moves down, plus its goal row
+  short[] next;
+
+  // Constructor that takes in the tables
+  WalkingDistance(long[] codes, byte[] distances, short[] next) {
+    this.codes = codes;
+    this.distances = distances;
+    this.next = next;
+  }
+
+  // returns the number of states
+  int size() {
+    return this.codes.length;
+  }
+
+  // builds the tables breadth-first from the goal
+  static WalkingDistance build() {
+    LongLongMap indexes = new LongLongMap();
+    long[] codes = new long[1024];
+    byte[] distances = new byte[1024];
+    short[] next = new short[1024 * 8];
+    int[] counts = new int[16];
+
+    long goal = 0;
+    for (int row = 0; row < 4; row++) {
+      goal += (long) (row < 3 ? 4 : 3) << ((row * 4 + row) * 3);
+    }
+    codes[0] = goal;
+    indexes.put(goal, 0);
+    int size = 1;
+
+    for (int state = 0; state < size; state++) {
+      long code = codes[state];
+      int blankRow = WalkingDistance.decode(code, counts);
+      for (int down = 0; down < 2; down++) {
+        // the tile comes from the row below the space when it moves up
+        int from = down == 0 ? blankRow + 1 : blankRow - 1;
+        for (int goalRow = 0; goalRow < 4; goalRow++) {
+          int slot = state * 8 + down * 4 + goalRow;
+          if (from < 0 || from > 3 || counts[from * 4 + goalRow] == 0) {
+            next[slot] = NONE;
+            continue;
+          }
+          long moved = code - (1L << ((from * 4 + goalRow) * 3))
+              + (1L << ((blankRow * 4 + goalRow) * 3));
+          int index = (int) indexes.getOrDefault(moved, -1);
+          if (index < 0) {
+            if (size == codes.length) {
+              codes = Arrays.copyOf(codes, size * 2);
+              distances = Arrays.copyOf(distances, size * 2);
+              next = Arrays.copyOf(next, size * 2 * 8);
+            }
+            index = size;
+            codes[index] = moved;
+            distances[index] = (byte) (distances[state] + 1);
+            indexes.put(moved, index);
+            size++;
+          }
+          next[slot] = (short) index;
+        }
+      }
+    }
+
+    // renumber the states in the order of their codes, so a board's state can be
+    // found by binary search
+    long[] sorted = Arrays.copyOf(codes, size);
+    Arrays.sort(sorted);
+    byte[] sortedDistances = new byte[size];
+    short[] sortedNext = new short[size * 8];
+    for (int state = 0; state < size; state++) {
+      int index = Arrays.binarySearch(sorted, codes[state]);
+      sortedDistances[index] = distances[state];
+      for (int slot = 0; slot < 8; slot++) {
+        short to = next[state * 8 + slot];
+        sortedNext[index * 8 + slot] = to == NONE ? NONE
+            : (short) Arrays.binarySearch(sorted, codes[to]);
+      }
+    }
+    return new WalkingDistance(sorted, sortedDistances, sortedNext);
+  }
+
+  // puts how many tiles of every goal row are in every row of the given code into
+  // the given counts, and returns the row of the space
+  static int decode(long code, int[] counts) {
+    int blankRow = -1;
+    for (int row = 0; row < 4; row++) {
+      int sum = 0;
+      for (int goalRow = 0; goalRow < 4; goalRow++) {
+        counts[row * 4 + goalRow] = (int) (code >>> ((row * 4 + goalRow) * 3)) & 7;
+        sum += counts[row * 4 + goalRow];
+      }
+      if (sum == 3) {
+        blankRow = row;
+      }
+    }
+    return blankRow;
+  }
+
+  // returns the state of the given packed board along its rows, or along its columns
+  int stateOf(long cells, boolean rows) {
+    long code = 0;
+    for (int index = 0; index < 16; index++) {
+      int tile = (int) (cells >>> (index * 4)) & 0xF;
+      if (tile != 0) {
+        int line = rows ? index / 4 : index % 4;
+        int goal = rows ? (tile - 1) / 4 : (tile - 1) % 4;
+        code += 1L << ((line * 4 + goal) * 3);
+      }
+    }
+    return Arrays.binarySearch(this.codes, code);
+  }
+
+  // returns the walking distance of the given packed board
+  int estimate(long cells) {
+    return this.distances[this.stateOf(cells, true)]
+        + this.distances[this.stateOf(cells, false)];
+  }
+
+  // writes the tables to the given file
+  // the file is written next to its destination and moved into place, so a
+  // reader never sees a partly written file
+  void save(Path file) throws IOException {
+    int size = this.size();
+    ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + size * (8 + 1 + 8 * 2));
+    data.putInt(MAGIC).putInt(VERSION).putInt(size);
+    data.asLongBuffer().put(this.codes);
+    data.position(data.position() + size * 8);
+    data.put(this.distances);
+    data.asShortBuffer().put(this.next);
+    data.clear();
+
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (data.hasRemaining()) {
+        out.write(data);
+      }
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // reads the tables in the given file
+  // they are small and read on every move of the search, so they are copied onto
+  // the heap rather than mapped
+  static WalkingDistance load(Path file) throws IOException {
+    ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+    if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+      throw new IllegalArgumentException("Not a walking distance file: " + file);
+    }
+    int size = data.getInt(8);
+    if (size < 1 || size > Short.MAX_VALUE
+        || data.limit() < HEADER_SIZE + (long) size * (8 + 1 + 8 * 2)) {
+      throw new IllegalArgumentException("Walking distance file is truncated: " + file);
+    }
+
+    long[] codes = new long[size];
+    byte[] distances = new byte[size];
+    short[] next = new short[size * 8];
+    data.position(HEADER_SIZE);
+    data.asLongBuffer().get(codes);
+    data.position(HEADER_SIZE + size * 8);
+    data.get(distances);
+    data.asShortBuffer().get(next);
+    return new WalkingDistance(codes, distances, next);
+  }
+
+  // reads the given file, building and writing it first if it does not exist yet
+  static WalkingDistance loadOrBuild(Path file) throws IOException {
+    if (!Files.exists(file)) {
+      WalkingDistance.build().save(file);
+    }
+    return WalkingDistance.load(file);
+  }
+
+  // reads the default file, building it first if needed
+  static WalkingDistance loadDefault() throws IOException {
+    return WalkingDistance.loadOrBuild(Paths.get(DEFAULT_FILE));
+  }
+}
+
+//Walking distance as a heuristic, following the state of the board along its rows
+//and along its columns: a move along a column changes only the row state, and a
+//move along a row only the column state, each by one table lookup
+class WalkingDistanceHeuristic implements IHeuristic {
+  // the tables
+  WalkingDistance table;
+  // the state of the board being followed along its rows and along its columns
+  int rows;
+  int columns;
+
+  // Constructor that takes in the tables
+  WalkingDistanceHeuristic(WalkingDistance table) {
+    this.table = table;
+  }
+
+  // starts following the given board, and returns its walking distance
+  public int reset(long cells) {
+    this.rows = this.table.stateOf(cells, true);
+    this.columns = this.table.stateOf(cells, false);
+    return this.table.distances[this.rows] + this.table.distances[this.columns];
+  }
+
+  // follows the slide of the given tile, and returns the new walking distance
+  public int slide(long cells, int tile, int from, int to) {
+    int down = to > from ? 4 : 0;
+    if (from / 4 == to / 4) {
+      this.columns = this.table.next[this.columns * 8 + down + (tile - 1) % 4];
+    }
+    else {
+      this.rows = this.table.next[this.rows * 8 + down + (tile - 1) / 4];
+    }
+    return this.table.distances[this.rows] + this.table.distances[this.columns];
+  }
+}
+
+class ExamplesWalkingDistance {
+  WalkingDistance table = WalkingDistance.build();
+
+  // tests for build
+  void testBuild(Tester t) {
+    t.checkExpect(this.table.size(), 24964);
+    t.checkExpect(this.table.estimate(PackedBoard.SOLVED), 0);
+    // 1 2 3 4 / 5 6 7 8 / 9 10 11 12 / 13 14 0 15
+    t.checkExpect(this.table.estimate(0xF0EDCBA987654321L), 1);
+    // 2 1 swapped in the first row: Manhattan distance is 2, but along the columns
+    // the space has to come over from the last column to let them pass
+    t.checkExpect(this.table.estimate(0x0FEDCBA987654312L), 6);
+
+    boolean admissible = true;
+    PuzzleGenerator generator = new PuzzleGenerator(12);
+    for (int length = 0; length <= 40; length += 4) {
+      long cells = generator.nextWithLength(length);
+      int h = this.table.estimate(cells);
+      admissible &= h <= length && h >= new ManhattanHeuristic().reset(cells)
+          && (h == 0) == (length == 0);
+    }
+    t.checkExpect(admissible, true);
+
+    // every move changes the distance of its axis by one
+    boolean consistent = true;
+    for (int state = 0; state < this.table.size(); state++) {
+      for (int slot = 0; slot < 8; slot++) {
+        int to = this.table.next[state * 8 + slot];
+        consistent &= to == WalkingDistance.NONE
+            || Math.abs(this.table.distances[to] - this.table.distances[state]) == 1;
+      }
+    }
+    t.checkExpect(consistent, true);
+  }
+
+  // tests for save and load
+  void testSaveLoad(Tester t) throws IOException {
+    Path file = Files.createTempFile("fifteen", ".wd");
+    try {
+      Files.delete(file);
+      WalkingDistance loaded = WalkingDistance.loadOrBuild(file);
+      t.checkExpect(Files.size(file), (long) WalkingDistance.HEADER_SIZE + 24964 * 25);
+      t.checkExpect(Arrays.equals(loaded.codes, this.table.codes), true);
+      t.checkExpect(Arrays.equals(loaded.distances, this.table.distances), true);
+      t.checkExpect(Arrays.equals(loaded.next, this.table.next), true);
+      // a second load reads the file rather than building again
+      t.checkExpect(WalkingDistance.loadOrBuild(file).size(), 24964);
+
+      Files.write(file, new byte[] { 1, 2, 3 });
+      t.checkException(new IllegalArgumentException("Not a walking distance file: " + file),
+          this, "load", file);
+      ByteBuffer header = ByteBuffer.allocate(WalkingDistance.HEADER_SIZE + 10);
+      header.putInt(WalkingDistance.MAGIC).putInt(WalkingDistance.VERSION).putInt(24964);
+      Files.write(file, header.array());
+      t.checkException(new IllegalArgumentException("Walking distance file is truncated: " + file),
+          this, "load", file);
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // reads the tables in the given file
+  WalkingDistance load(Path file) throws IOException {
+    return WalkingDistance.load(file);
+  }
+}
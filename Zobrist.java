@@ -0,0 +1,84 @@
+import java.util.SplittableRandom;
+import tester.*;
+
+//Random keys for Zobrist hashing of boards of any shape
+//the hash of a board is the XOR of the key of every value at its index, so a swap
+//changes it by XORing four keys, and it does not depend on how the board was reached
+//the keys come from a fixed seed, so a board has the same hash in every run and
+//hashes can be stored
+class Zobrist {
+  // the seed of the keys
+  static final long SEED = 0x5EED15L;
+
+  // the key of every value at every index, indexed by value * MAX_CELLS + index
+  static final long[] KEYS = Zobrist.buildKeys();
+
+  // builds the keys
+  static long[] buildKeys() {
+    SplittableRandom random = new SplittableRandom(SEED);
+    long[] keys = new long[BoardShape.MAX_CELLS * BoardShape.MAX_CELLS];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = random.nextLong();
+    }
+    return keys;
+  }
+
+  // returns the key of the given value at the given index
+  static long key(int value, int index) {
+    return KEYS[(value << 8) | index];
+  }
+
+  // returns the hash of the given board, computed from every cell
+  static long hash(ABoard board) {
+    long hash = 0;
+    for (int index = 0; index < board.shape.size; index++) {
+      hash ^= Zobrist.key(board.get(index), index);
+    }
+    return hash;
+  }
+}
+
+class ExamplesZobrist {
+  // tests that the hash kept by swap matches the one computed from the board
+  void testIncremental(Tester t) {
+    PuzzleGenerator generator = new PuzzleGenerator(3);
+    ABoard packed = generator.walk(BoardShape.FOUR_BY_FOUR, 200);
+    ABoard bytes = generator.walk(new BoardShape(6, 7), 500);
+    t.checkExpect(packed.hash, Zobrist.hash(packed));
+    t.checkExpect(bytes.hash, Zobrist.hash(bytes));
+
+    long before = bytes.hash;
+    bytes.swap(0, 41);
+    bytes.swap(3, 3);
+    t.checkExpect(bytes.hash == before, false);
+    t.checkExpect(bytes.hash, Zobrist.hash(bytes));
+    bytes.swap(41, 0);
+    t.checkExpect(bytes.hash, before);
+    t.checkExpect(bytes.copy().hash, before);
+  }
+
+  // tests that the same board has the same hash however it was reached
+  void testSameBoard(Tester t) {
+    PackedBoard board = new PackedBoard(PackedBoard.SOLVED);
+    long solved = board.hash;
+    board.move(Direction.DOWN);
+    t.checkExpect(board.hash == solved, false);
+    board.move(Direction.RIGHT);
+    board.move(Direction.UP);
+    board.move(Direction.LEFT);
+    t.checkExpect(board.hash == solved, false);
+    board.move(Direction.DOWN);
+    board.move(Direction.RIGHT);
+    board.move(Direction.UP);
+    board.move(Direction.LEFT);
+    board.move(Direction.DOWN);
+    board.move(Direction.RIGHT);
+    board.move(Direction.UP);
+    board.move(Direction.LEFT);
+    // three times around a 2x2 block puts every tile back
+    t.checkExpect(board.cells, PackedBoard.SOLVED);
+    t.checkExpect(board.hash, solved);
+    t.checkExpect(new PackedBoard(PackedBoard.SOLVED).hash, solved);
+    t.checkExpect(Zobrist.key(0, 0) == Zobrist.key(0, 1), false);
+  }
+}
@@ -0,0 +1,135 @@
+import fifteen.bench.Fixtures;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+
+//Game objects for the benchmarks, set up from a seed
+public class GameFixtures implements Fixtures {
+  // the band of estimates the solver boards are dealt from
+  static final int SOLVER_BAND_LOW = 34;
+  static final int SOLVER_BAND_HIGH = 38;
+  // the number of solver boards
+  static final int SOLVER_BOARDS = 8;
+  // the fewest moves the 3x3 solver boards need
+  static final int SMALL_BOARD_MOVES = 24;
+
+  // a scrambled game with the space at index 5, so every key in KEYS moves a tile
+  FifteenGame game;
+  // the tiles of the game as lists, for findIndex
+  ArrayList<ArrayList<Tile>> tiles;
+  // one tile of every value
+  Tile[] tileValues = new Tile[16];
+  // the fixed set of boards for the solver benchmarks
+  long[] boards = new long[SOLVER_BOARDS];
+  Solver solver = new Solver();
+  // created the first time a pattern database benchmark runs
+  Solver patternSolver;
+  // the fixed set of 3x3 boards for the strategy benchmarks
+  ABoard[] smallBoards = new ABoard[SOLVER_BOARDS];
+  // the solvers of the strategy benchmarks, by name
+  HashMap<String, ISolver> strategies = new HashMap<String, ISolver>();
+  // the parallel solvers, by the number of threads of their pools
+  HashMap<Integer, ParallelSolver> parallelSolvers = new HashMap<Integer, ParallelSolver>();
+  // the solvers of the heuristic benchmarks, by the name of their heuristic
+  HashMap<String, Solver> heuristicSolvers = new HashMap<String, Solver>();
+
+  // Constructor that takes in the seed for every board
+  public GameFixtures(long seed) {
+    PuzzleGenerator generator = new PuzzleGenerator(seed);
+    PackedBoard board = new PackedBoard(generator.next());
+    board.swap(board.blank, 5);
+    this.game = new FifteenGame(board);
+    this.tiles = this.game.tiles();
+
+    for (int value = 0; value < 16; value++) {
+      this.tileValues[value] = new Tile(value);
+    }
+    for (int i = 0; i < SOLVER_BOARDS; i++) {
+      this.boards[i] = generator.nextInBand(SOLVER_BAND_LOW, SOLVER_BAND_HIGH);
+    }
+    BoardShape three = new BoardShape(3, 3);
+    for (int i = 0; i < SOLVER_BOARDS; i++) {
+      ABoard small = generator.deal(three);
+      while (this.solver.solve(small).size() < SMALL_BOARD_MOVES) {
+        small = generator.deal(three);
+      }
+      this.smallBoards[i] = small;
+    }
+  }
+
+  public int onKeyEvent(int step) {
+    this.game.onKeyEvent(KEYS[step & 3]);
+    return this.game.core.board.blank;
+  }
+
+  public int swap(int step) {
+    this.game.swap(step & 15, (step + 5) & 15);
+    return this.game.core.board.blank;
+  }
+
+  public boolean hasWorldEnded() {
+    return this.game.hasWorldEnded();
+  }
+
+  public Object makeScene() {
+    return this.game.makeScene();
+  }
+
+  public Object drawTile(int step) {
+    return this.tileValues[step & 15].drawTile((step & 16) == 0);
+  }
+
+  public int findIndex(int step) {
+    return new ArrayUtils().findIndex(this.tiles, this.tileValues[step & 15]);
+  }
+
+  public int boardCount() {
+    return SOLVER_BOARDS;
+  }
+
+  public int solve(int board, boolean patterns) {
+    if (patterns && this.patternSolver == null) {
+      try {
+        this.patternSolver = new Solver(PatternDatabase.loadDefault());
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    Solver s = patterns ? this.patternSolver : this.solver;
+    return s.solve(this.boards[board]).size();
+  }
+
+  public int solveWith(String solver, String shape, int board) {
+    ISolver s = this.strategies.computeIfAbsent(solver, name -> ISolver.named(name, null).get());
+    ABoard b = shape.equals("3x3") ? this.smallBoards[board] : new PackedBoard(this.boards[board]);
+    return s.solve(b).size();
+  }
+
+  public int solveParallel(int threads, int board) {
+    ParallelSolver s = this.parallelSolvers.computeIfAbsent(threads,
+        n -> new ParallelSolver(new ForkJoinPool(n), null));
+    return s.solve(this.boards[board]).size();
+  }
+
+  public long solveWithHeuristic(String heuristic, int board) {
+    Solver s = this.heuristicSolvers.get(heuristic);
+    if (s == null) {
+      boolean patterns = heuristic.equals("patterns") || heuristic.equals("all");
+      boolean walking = heuristic.startsWith("walking") || heuristic.equals("all");
+      try {
+        s = new Solver(IHeuristic.named(heuristic,
+            patterns ? PatternDatabase.loadDefault() : null,
+            walking ? WalkingDistance.loadDefault() : null).get());
+      }
+      catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      this.heuristicSolvers.put(heuristic, s);
+    }
+    s.solve(this.boards[board]);
+    return s.nodes();
+  }
+}
@@ -0,0 +1,43 @@
+package fifteen.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+//Runs the benchmarks in one of the saved configurations
+//  gc       the game benchmarks with the allocation profiler, to catch garbage on
+//           the per-keypress and per-frame paths
+//  solver   the solver and search strategy benchmarks with the allocation profiler
+//  parallel the parallel solver on pools of 1 to 64 threads
+//  heuristic IDA* with each heuristic
+//  all      every benchmark, without profilers (the default)
+public class BenchmarkRunner {
+  public static void main(String[] args) throws RunnerException {
+    String config = args.length > 0 ? args[0] : "all";
+    ChainedOptionsBuilder options = new OptionsBuilder();
+
+    switch (config) {
+      case "gc":
+        options.include(GameBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class);
+        break;
+      case "solver":
+        options.include(SolverBenchmark.class.getSimpleName())
+            .include(StrategyBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class);
+        break;
+      case "parallel":
+        options.include(ParallelBenchmark.class.getSimpleName());
+        break;
+      case "heuristic":
+        options.include(HeuristicBenchmark.class.getSimpleName());
+        break;
+      case "all":
+        options.include(".*");
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown configuration: " + config);
+    }
+    new Runner(options.build()).run();
+  }
+}
@@ -0,0 +1,65 @@
+package fifteen.bench;
+
+//The game code that the benchmarks measure
+//the game lives in the default package, which code in a named package cannot
+//refer to, and JMH only accepts benchmarks in a named package. GameFixtures, in
+//the default package of this module, implements this interface and is loaded by
+//name once per trial, so every measured call is a plain interface call
+public interface Fixtures {
+  // the keys the move benchmarks cycle through, which bring the space back to
+  // where it started every four moves
+  String[] KEYS = { "up", "left", "down", "right" };
+
+  // creates the fixtures for the given seed
+  static Fixtures create(long seed) {
+    try {
+      return (Fixtures) Class.forName("GameFixtures").getConstructor(long.class)
+          .newInstance(seed);
+    }
+    catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot create GameFixtures", e);
+    }
+  }
+
+  // sends the key for the given step to FifteenGame.onKeyEvent
+  // returns the index of the space afterwards
+  int onKeyEvent(int step);
+
+  // swaps two tiles chosen by the given step with FifteenGame.swap
+  // returns the index of the space afterwards
+  int swap(int step);
+
+  // calls FifteenGame.hasWorldEnded on a game that has not ended
+  boolean hasWorldEnded();
+
+  // calls FifteenGame.makeScene
+  Object makeScene();
+
+  // calls Tile.drawTile on the tile chosen by the given step
+  Object drawTile(int step);
+
+  // calls ArrayUtils.findIndex for the tile chosen by the given step
+  int findIndex(int step);
+
+  // the number of boards in the fixed solver set
+  int boardCount();
+
+  // solves the given board of the fixed set, with or without the pattern database
+  // returns the number of moves in the solution
+  int solve(int board, boolean patterns);
+
+  // solves the given board of the fixed set of the given shape, "3x3" or "4x4", with
+  // the ISolver of the given name
+  // returns the number of moves in the solution
+  int solveWith(String solver, String shape, int board);
+
+  // solves the given board of the fixed set with a ParallelSolver on a pool of the
+  // given number of threads
+  // returns the number of moves in the solution
+  int solveParallel(int threads, int board);
+
+  // solves the given board of the fixed set with IDA* and the heuristic of the given
+  // name, loading or building its tables the first time
+  // returns the number of states expanded
+  long solveWithHeuristic(String heuristic, int board);
+}
@@ -0,0 +1,62 @@
+package fifteen.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//Benchmarks for the per-keypress and per-frame paths of the game
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GameBenchmark {
+  Fixtures fixtures;
+  // advanced by every call so that each one works on a different move or tile
+  int step;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.fixtures = Fixtures.create(2024);
+  }
+
+  @Benchmark
+  public int onKeyEvent() {
+    return this.fixtures.onKeyEvent(this.step++);
+  }
+
+  @Benchmark
+  public int swap() {
+    return this.fixtures.swap(this.step++);
+  }
+
+  @Benchmark
+  public boolean hasWorldEnded() {
+    return this.fixtures.hasWorldEnded();
+  }
+
+  @Benchmark
+  public Object makeScene() {
+    return this.fixtures.makeScene();
+  }
+
+  @Benchmark
+  public Object drawTile() {
+    return this.fixtures.drawTile(this.step++);
+  }
+
+  @Benchmark
+  public int findIndex() {
+    return this.fixtures.findIndex(this.step++);
+  }
+}
@@ -0,0 +1,61 @@
+package fifteen.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//Benchmarks for solving the 4x4 solver set with IDA* and each heuristic (see
+//IHeuristic.named), to weigh the memory of its tables against its speed
+//the score is nanoseconds per solve, and the nodes counter is nanoseconds per
+//state expanded; the score divided by the counter is the states expanded per solve
+//the patterns and all heuristics build the pattern database file first if needed
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HeuristicBenchmark {
+  // the name of the heuristic
+  @Param({ "manhattan", "conflict", "walking", "walking-conflict", "patterns", "all" })
+  public String heuristic;
+
+  Fixtures fixtures;
+  int board;
+
+  // the states expanded in the current iteration
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Nodes {
+    public long nodes;
+
+    @Setup(Level.Iteration)
+    public void clear() {
+      this.nodes = 0;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.fixtures = Fixtures.create(2024);
+  }
+
+  @Benchmark
+  public long solve(Nodes counter) {
+    long nodes = this.fixtures.solveWithHeuristic(this.heuristic, this.board);
+    counter.nodes += nodes;
+    this.board = (this.board + 1) % this.fixtures.boardCount();
+    return nodes;
+  }
+}
@@ -0,0 +1,47 @@
+package fifteen.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//Benchmarks for solving the 4x4 solver set with the parallel solver on pools of
+//each size, to measure its speedup
+//each call solves the next board of the set, so a score is the mean over the set;
+//divide the score for 1 thread by the others for the speedup
+//threads past the number of cores only measure the cost of oversubscription
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParallelBenchmark {
+  // the parallelism of the ForkJoinPool
+  @Param({ "1", "2", "4", "8", "16", "32", "64" })
+  public int threads;
+
+  Fixtures fixtures;
+  int board;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.fixtures = Fixtures.create(2024);
+  }
+
+  @Benchmark
+  public int solve() {
+    int result = this.fixtures.solveParallel(this.threads, this.board);
+    this.board = (this.board + 1) % this.fixtures.boardCount();
+    return result;
+  }
+}
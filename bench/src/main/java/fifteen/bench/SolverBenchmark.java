@@ -0,0 +1,47 @@
+package fifteen.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//Benchmarks for solving a fixed, seeded set of boards
+//each call solves the next board of the set, so a score is the mean over the set
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SolverBenchmark {
+  // "manhattan" for Manhattan distance plus linear conflict,
+  // "patterns" to add the default pattern database
+  @Param({ "manhattan", "patterns" })
+  public String heuristic;
+
+  Fixtures fixtures;
+  int board;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.fixtures = Fixtures.create(2024);
+    // map or build the pattern database before measuring
+    this.fixtures.solve(0, this.heuristic.equals("patterns"));
+  }
+
+  @Benchmark
+  public int solve() {
+    int result = this.fixtures.solve(this.board, this.heuristic.equals("patterns"));
+    this.board = (this.board + 1) % this.fixtures.boardCount();
+    return result;
+  }
+}
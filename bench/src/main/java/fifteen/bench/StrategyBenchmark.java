@@ -0,0 +1,48 @@
+package fifteen.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//Benchmarks for solving fixed, seeded sets of deep boards with each search strategy
+//"3x3" boards need 24 moves or more; "4x4" boards are the set SolverBenchmark uses
+//each call solves the next board of the set, so a score is the mean over the set
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx1g" })
+public class StrategyBenchmark {
+  // the name of the ISolver, as ISolver.named takes it
+  @Param({ "ida", "bidirectional" })
+  public String solver;
+
+  @Param({ "3x3", "4x4" })
+  public String shape;
+
+  Fixtures fixtures;
+  int board;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    this.fixtures = Fixtures.create(2024);
+  }
+
+  @Benchmark
+  public int solve() {
+    int result = this.fixtures.solveWith(this.solver, this.shape, this.board);
+    this.board = (this.board + 1) % this.fixtures.boardCount();
+    return result;
+  }
+}